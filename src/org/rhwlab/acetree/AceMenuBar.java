@@ -110,6 +110,7 @@ public class AceMenuBar extends JMenuBar implements ActionListener, ItemListener
     JMenuItem iSetEndTime;
     JMenuItem iIncrementEndTime;
     JMenuItem iUndo;
+    JMenuItem iRedo;
     JMenuItem iATVTree;
     JMenuItem iAncestralTree;
     JMenuItem iSulstonTree;
@@ -328,6 +329,9 @@ public class AceMenuBar extends JMenuBar implements ActionListener, ItemListener
 	        iUndo = new JMenuItem(UNDO);
 	        iUndo.addActionListener(this);
 	        menu.add(iUndo);
+	        iRedo = new JMenuItem(REDO);
+	        iRedo.addActionListener(this);
+	        menu.add(iRedo);
 	        menu.addSeparator();
 	        iSetEndTime = new JMenuItem(SETENDTIME);
 	        iSetEndTime.addActionListener(this);
@@ -799,6 +803,8 @@ public class AceMenuBar extends JMenuBar implements ActionListener, ItemListener
             iAceTree.incrementEndTime();
         } else if (iUndo == o) {
             iAceTree.undo();
+        } else if (iRedo == o) {
+            iAceTree.redo();
         } else if (iAncestralTree == o) {
             iAceTree.ancestral();
         } else if (iSulstonTree == o) {
@@ -963,6 +969,7 @@ public class AceMenuBar extends JMenuBar implements ActionListener, ItemListener
         ,SETENDTIME = "Set end time"
         ,INCREMENTENDTIME = "Increment end time"
         ,UNDO = "Undo"
+        ,REDO = "Redo"
         ,VIEW = "View"
         ,THREED = "3D old View"
         ,THREED3 = "3D Sister View"
@@ -24,6 +24,7 @@ import org.rhwlab.image.CellMovementImage;
 
 import org.rhwlab.image.ImageAllCentroids;
 import org.rhwlab.image.ImageWindow;
+import org.rhwlab.image.StackReader;
 import org.rhwlab.image.DepthViews;
 import org.rhwlab.nucedit.EditLog;
 import org.rhwlab.nucedit.KillCellsDialog;
@@ -43,7 +44,6 @@ import org.rhwlab.nucedit.SetEndTimeDialog;
 import org.rhwlab.nucedit.Siamese;
 import org.rhwlab.nucedit.Zafer1;
 import org.rhwlab.snight.Config;
-import org.rhwlab.snight.NucZipper;
 import org.rhwlab.snight.NucleiMgr;
 import org.rhwlab.snight.Nucleus;
 import org.rhwlab.tree.AncesTree;
@@ -56,6 +56,7 @@ import org.rhwlab.utils.AuxFrame;
 import org.rhwlab.utils.C;
 import org.rhwlab.utils.EUtils;
 import org.rhwlab.utils.Log;
+import org.rhwlab.utils.ZipPool;
 import java.awt.event.MouseAdapter;
 import ij.ImagePlus;
 import java.awt.BorderLayout;
@@ -157,6 +158,8 @@ public class AceTree extends JPanel
     private JTextPane   iText2;
     private JTextPane   iText3;
     protected JFrame      iMainFrame;
+    private NucleiSaver iNucleiSaver;
+    private boolean iTreeCleared;  // clearTree took the AncesTree apart
 //    private Vector      iTempV;
 //    private String      iFilePath;
 //    private boolean     iRootEstablished;
@@ -523,11 +526,13 @@ public class AceTree extends JPanel
 	            int k = bringUpSeriesData(configFileName);
 	            if (k != 0) return; //problem finding the zipNuclei
 	        }
+	        NucleiMgr previous = iNucleiMgr;
 	        iNucleiMgr = iNucleiMgrHash.get(shortName);
 	        if (iNucleiMgr == null) {
 	            System.out.println(HELPMSG + configFileName);
 	            System.exit(1);
 	        }
+	        parkSeries(previous);
 	        iEditLog = iNucleiMgr.getEditLog();
 	        iNucleiMgr.sendStaticParametersToImageWindow();
 	        ImageWindow.setNucleiMgr(iNucleiMgr);
@@ -567,11 +572,13 @@ public class AceTree extends JPanel
             int k = bringUpSeriesData(config);
             if (k != 0) return; //problem finding the zipNuclei
         }
+        NucleiMgr previous = iNucleiMgr;
         iNucleiMgr = iNucleiMgrHash.get(shortName);
         if (iNucleiMgr == null) {
             System.out.println(HELPMSG + configFileName);
             System.exit(1);
         }
+        parkSeries(previous);
         iEditLog = iNucleiMgr.getEditLog();
         iNucleiMgr.sendStaticParametersToImageWindow();
         ImageWindow.setNucleiMgr(iNucleiMgr);
@@ -611,6 +618,8 @@ public class AceTree extends JPanel
         
         // this is the only place where we construct a NucleiMgr
         System.out.println("Building a NucleiMgr and setting ImageWindow useStack, splitMode flags: " + iUseStack + ", " + iSplit);
+        ZipPool.closeAll();
+        StackReader.closeAll();
         NucleiMgr nucMgr = new NucleiMgr(configFileName);
         ImageWindow.setUseStack(iUseStack);
         ImageWindow.setSplitMode(iSplit);
@@ -642,6 +651,8 @@ public class AceTree extends JPanel
         iMainFrame.setTitle(ss);
 
         // this is the only place where we construct a NucleiMgr
+        ZipPool.closeAll();
+        StackReader.closeAll();
         NucleiMgr nucMgr = new NucleiMgr(config);
         ImageWindow.setUseStack(iUseStack);
         ImageWindow.setSplitMode(iSplit);
@@ -693,6 +704,17 @@ public class AceTree extends JPanel
 
     }
 
+    /**
+     * packs the nuclei of the series just left, if it is still open and
+     * its config asks for it; see NucleiMgr.park
+     */
+    private void parkSeries(NucleiMgr previous) {
+        if (previous == null || previous == iNucleiMgr) return;
+        if (previous.getConfig().iParkNuclei != 1) return;
+        if (!iNucleiMgrHash.containsValue(previous)) return;
+        previous.park();
+    }
+
     public void removeRecent(String item) {
         iNucleiMgrHash.remove(item);
         System.gc();
@@ -764,6 +786,7 @@ public class AceTree extends JPanel
         Hashtable x = iAncesTree.getCells();
         if (x != null)
         	x.clear();
+        iTreeCleared = true;
         iTree.updateUI();
     }
 
@@ -834,8 +857,10 @@ public class AceTree extends JPanel
         setShowAnnotations(false);
         iShowCentroids = false;
         iShowC.setText(SHOWC);
-        if (doIdentity) 
+        if (doIdentity) {
         	iNucleiMgr.processNuclei(doIdentity, iNamingMethod);
+        	iTreeCleared = false;
+        }
 
         if (iEditLog != null) {
             //iEditLog.append(new GregorianCalendar().getTime().toString());
@@ -882,9 +907,36 @@ public class AceTree extends JPanel
 
         if (iEditTraverse != null) iEditTraverse.buildNotification();
         setShowAnnotations(iShowAnnotationsSave);
+        // an open tree lays itself out again once the cells have changed
+        if (iSulstonTree != null) iSulstonTree.repaint();
 
     }
 
+    /**
+     * brings the tree up to date after an edit of the nuclei
+     * <br>when NucleiMgr.updateNuclei can, names and cells are redone
+     * only from the first edited time on and the cells before it are
+     * kept; otherwise the tree is cleared and built again
+     */
+    public void updateTree() {
+        if (iAncesTree == null || iTreeCleared || iAncesTree != iNucleiMgr.getAncesTree()
+                || !iNucleiMgr.updateNuclei()) {
+            clearTree();
+            buildTree(true);
+            return;
+        }
+        if (iEditLog != null) {
+            iEditLog.append("updateTree() start = " + iStartingIndex + " end = " + iEndingIndex
+                + iEditLog.getTime());
+        }
+        iCellsByName = iAncesTree.getCellsByName();
+        updateRoot(iAncesTree.getRootCells());
+        iTree.updateUI();
+        setStartingCell(walkUpToAGoodCell(), iStartTime);
+        if (iEditTraverse != null) iEditTraverse.buildNotification();
+        if (iSulstonTree != null) iSulstonTree.repaint();
+    }
+
     private Cell walkUpToAGoodCell() {
         Cell c = null;
         if (iRoot.getChildCount() <= 1) return iRoot;
@@ -930,7 +982,9 @@ public class AceTree extends JPanel
             System.out.println("SORRY: " + shortName + " is not hashed");
             return;
         }
+        NucleiMgr previous = iNucleiMgr;
         iNucleiMgr = nucMgr;
+        parkSeries(previous);
         iEditLog = iNucleiMgr.getEditLog();
         grabConfigStuff();
         iPlaneEnd = iNucleiMgr.getPlaneEnd();
@@ -3026,15 +3080,10 @@ public class AceTree extends JPanel
 
         //Vector nuclei = iNucleiMgr.getNucleiRecord()[iImageTime + iTimeInc - 1];
         //Vector nuclei = (Vector)iNucleiMgr.getNucleiRecord().elementAt(iImageTime + iTimeInc - 1);
-        /*
-         * TODO
-         * types from NucleiMgr
-         */
-        Vector nuclei = iNucleiMgr.getElementAt(iImageTime + iTimeInc - 1);
         String currentName = parent.getName();
         StringBuffer dummy = new StringBuffer();
-        Nucleus anterior = NucUtils.getCurrentCellData(nuclei, anteriorCell.getName());
-        Nucleus posterior = NucUtils.getCurrentCellData(nuclei, posteriorCell.getName());
+        Nucleus anterior = iNucleiMgr.getCurrentCellData(anteriorCell.getName(), iImageTime + iTimeInc);
+        Nucleus posterior = iNucleiMgr.getCurrentCellData(posteriorCell.getName(), iImageTime + iTimeInc);
         //System.out.println("makeDaughterDisplay: anterior: " + anterior);
         //System.out.println("makeDaughterDisplay: posterior: " + posterior);
         if (anterior != null && posterior != null) {
@@ -3327,10 +3376,14 @@ public class AceTree extends JPanel
     	// Done in AceMenuBar
         System.out.println("saveNuclei: " + file);
         //iEditLog.showMe();
-        NucZipper nz = new NucZipper(file, iNucleiMgr);
-        nz = null;
+        // written in the background; see NucleiSaver
+        getNucleiSaver().save(file, iNucleiMgr);
         //iEditLog.setModified(false);
-        System.out.println("Finished saving nuclei.");
+    }
+
+    public NucleiSaver getNucleiSaver() {
+        if (iNucleiSaver == null) iNucleiSaver = new NucleiSaver(iMainFrame);
+        return iNucleiSaver;
     }
 
     public void viewNuclei() {
@@ -3368,14 +3421,15 @@ public class AceTree extends JPanel
             n = (Nucleus)nuclei.elementAt(j);
             if (!n.identity.equals(name))
             	continue;
+            iNucleiMgr.makeBackupNucleiRecord();
+            iNucleiMgr.markEdited(currenttime + 1);
             n.status = Nucleus.NILLI;
             break;
         }
         prevImage();
 
         // added rebuild code
-        clearTree();
-        buildTree(true);
+        updateTree();
         // add find self at previous time code from relink
         AncesTree ances = getAncesTree();
 		Hashtable h = ances.getCellsByName();
@@ -3393,6 +3447,7 @@ public class AceTree extends JPanel
     }
 
     public void killDeepNucs(int zLim) {
+        iNucleiMgr.makeBackupNucleiRecord();
         Vector nucRec = iNucleiMgr.getNucleiRecord();
         for (int i=0; i < nucRec.size(); i++) {
         	Vector nuclei = (Vector)nucRec.get(i);
@@ -3401,11 +3456,11 @@ public class AceTree extends JPanel
         		if (n.status == Nucleus.NILLI) continue;
         		if (n.z < zLim) continue;
         		println("killDeepNucs, " + i + CS + n);
+        		iNucleiMgr.markEdited(i + 1);
         		n.status = Nucleus.NILLI;
         	}
         }
-        clearTree();
-        buildTree(true);
+        updateTree();
 
     }
 
@@ -3457,13 +3512,22 @@ public class AceTree extends JPanel
 
     public void undo() {
         iEditLog.append("UNDO");
-        iNucleiMgr.restoreNucleiRecord();
+        if (!iNucleiMgr.restoreNucleiRecord()) return;
+        afterUndoRedo();
+    }
+
+    public void redo() {
+        iEditLog.append("REDO");
+        if (!iNucleiMgr.redoNucleiRecord()) return;
+        afterUndoRedo();
+    }
+
+    private void afterUndoRedo() {
         iNucleiMgr.clearAllHashkeys();
         clearTree();
         buildTree(true);
         setStartingCell((Cell)iRoot.getFirstChild(), iStartTime);
         iEditLog.setModified(true);
-
     }
 
     ///////////////////// editing end ///////////////////////////////////
@@ -3992,6 +4056,13 @@ public class AceTree extends JPanel
             iMainFrame.dispose();
             if (iImgWin != null) 
             	iImgWin.dispose();
+            // a save still running is waited for here, on the event thread,
+            // so exiting cannot cut the zip short
+            if (iNucleiSaver != null) {
+                if (iNucleiSaver.isSaving())
+                    System.out.println("AceTree waiting for the nuclei save to finish");
+            	iNucleiSaver.finish();
+            }
             if (iCmdLineRun) 
             	System.exit(0);
         }
@@ -1,17 +1,53 @@
 package org.rhwlab.acetree;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
 import java.text.DecimalFormat;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.rhwlab.analyze.RedCorrector2;
 import org.rhwlab.snight.NucZipper;
 import org.rhwlab.snight.NucleiMgr;
+import org.rhwlab.snight.NucleiMgrHeadless;
 
 
+/**
+ * runs series through loading, naming, red weight correction and saving
+ * without a display
+ * <br>usage: AceTreeBatch [-threads n] [-nocorrect] [-nosave]
+ * [-report file] config ...
+ * <br>each config is a config xml, or a file listing config files one
+ * per line as ConfigFileList reads them
+ * <br>series are processed side by side on at most n threads, by default
+ * as many as there are cores and as memory allows at SERIESMB per series;
+ * a series is dropped as soon as it is saved, so memory is bounded by the
+ * number of threads
+ * <br>naming and saving take turns: Identity3 keeps the series being
+ * named in statics, and NucZipper picks its temp file by looking for a
+ * free name
+ * <br>a line of timings and status is printed for each series, and
+ * written to the report file if one is given
+ */
 public class AceTreeBatch {
-    
+
     String      iConfigName;
     NucleiMgr   iNucleiMgr;
-    
+
+    private static final Object cNamingLock = new Object();
+    private static final Object cSaveLock = new Object();
+
     @SuppressWarnings("unused")
 	public AceTreeBatch(String configName) {
         iConfigName = configName;
@@ -27,15 +63,15 @@ public class AceTreeBatch {
         println("AceTreeBatch, " + realSave);
         println("AceTreeBatch, saved");
 
-        
-        
+
+
     }
-    
+
     @SuppressWarnings("unused")
 	public int bringUpSeriesData(String configFileName) {
         System.out.println("bringUpSeriesData: " + configFileName);
         File fx = new File(configFileName);
-        
+
         // this is the only place where we construct a NucleiMgr
         NucleiMgr nucMgr = new NucleiMgr(configFileName);
         if (!nucMgr.iGoodNucleiMgr) {
@@ -47,18 +83,165 @@ public class AceTreeBatch {
         System.gc();
         return 0;
     }
-    
 
+    /**
+     * loads, names, corrects and saves one series
+     * @return the report line for the series
+     */
+    public static String runSeries(String configName, boolean correct, boolean save) {
+        long start = System.currentTimeMillis();
+        long load = 0, name = 0, corr = 0, saving = 0;
+        String status = "ok";
+        try {
+            long t = System.currentTimeMillis();
+            NucleiMgr nucMgr = new NucleiMgrHeadless(configName);
+            load = System.currentTimeMillis() - t;
+            if (!nucMgr.iGoodNucleiMgr) {
+                status = "load failed";
+            } else {
+                t = System.currentTimeMillis();
+                synchronized(cNamingLock) {
+                    nucMgr.processNuclei(true, nucMgr.getConfig().iNamingMethod);
+                }
+                name = System.currentTimeMillis() - t;
+                if (correct) {
+                    t = System.currentTimeMillis();
+                    int m = nucMgr.getConfig().iStartingIndex;
+                    int q = nucMgr.getConfig().iEndingIndex;
+                    for (int i=m; i <= q; i++) RedCorrector2.correctNuclei(nucMgr, i);
+                    corr = System.currentTimeMillis() - t;
+                }
+                if (save) {
+                    t = System.currentTimeMillis();
+                    File file = new File(nucMgr.getConfig().iZipFileName);
+                    NucZipper nz;
+                    synchronized(cSaveLock) {
+                        nz = new NucZipper(file, nucMgr, nucMgr.getNucleiRecord(),
+                                nucMgr.getEditedTimes(), null);
+                    }
+                    saving = System.currentTimeMillis() - t;
+                    if (!nz.saved()) status = "save failed";
+                }
+            }
+        } catch(Throwable e) {
+            e.printStackTrace();
+            status = "failed: " + e;
+        }
+        long total = System.currentTimeMillis() - start;
+        return configName + CS + load + CS + name + CS + corr + CS + saving + CS + total + CS + status;
+    }
+
+    /**
+     * runs the series on at most threads threads and prints, and writes
+     * to report if it is not null, a line for each as it finishes
+     */
+    public static void runAll(Vector<String> configs, int threads, final boolean correct,
+            final boolean save, PrintWriter report) {
+        String header = "config, load ms, name ms, correct ms, save ms, total ms, status";
+        println(header);
+        if (report != null) report.println(header);
+        if (configs.size() == 0) return;
+        threads = Math.max(1, Math.min(threads, configs.size()));
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 5, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, "AceTreeBatch");
+                    }
+                });
+        long start = System.currentTimeMillis();
+        Vector<Future<String>> futures = new Vector<Future<String>>();
+        for (int i=0; i < configs.size(); i++) {
+            final String configName = configs.get(i);
+            futures.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    String s = runSeries(configName, correct, save);
+                    println("AceTreeBatch, " + s);
+                    return s;
+                }
+            }));
+        }
+        int good = 0;
+        for (int i=0; i < futures.size(); i++) {
+            String s;
+            try {
+                s = futures.get(i).get();
+            } catch(InterruptedException ie) {
+                s = configs.get(i) + CS + "interrupted";
+            } catch(ExecutionException ee) {
+                s = configs.get(i) + CS + "failed: " + ee.getCause();
+            }
+            if (s.endsWith(CS + "ok")) good++;
+            if (report != null) {
+                report.println(s);
+                report.flush();
+            }
+        }
+        executor.shutdown();
+        String s = "AceTreeBatch, " + good + " of " + configs.size() + " series ok in "
+            + (System.currentTimeMillis() - start) + " ms";
+        println(s);
+        if (report != null) report.println(s);
+    }
+
+    /**
+     * @return the config files named by arg: arg itself if it is a
+     * config xml, else the lines of the list file arg
+     */
+    public static Vector<String> readConfigs(String arg) throws IOException {
+        Vector<String> v = new Vector<String>();
+        if (arg.endsWith(".xml") || arg.endsWith(".dat")) {
+            v.add(arg);
+            return v;
+        }
+        BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(arg)));
+        String sr = br.readLine();
+        while (sr != null && sr.length() > 2) {
+            v.add(sr.trim());
+            sr = br.readLine();
+        }
+        br.close();
+        return v;
+    }
 
     /**
      * @param args
      */
     public static void main(String[] args) {
-        String configName = args[0];
-        configName = "/nfs/waterston1/annots/murray/20060716_cnd1_3/dats/20060716_cnd1_3.xml";
-        println("AceTreeBatch.main, " + configName);
-        new AceTreeBatch(configName);
-        //Config config = new Config(configName);
+        System.setProperty("java.awt.headless", "true");
+        long mb = Runtime.getRuntime().maxMemory() / (1024 * 1024);
+        int threads = (int)Math.min(Runtime.getRuntime().availableProcessors(), mb / SERIESMB);
+        boolean correct = true;
+        boolean save = true;
+        String reportName = null;
+        Vector<String> configs = new Vector<String>();
+        try {
+            for (int i=0; i < args.length; i++) {
+                if (args[i].equals("-threads")) threads = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-nocorrect")) correct = false;
+                else if (args[i].equals("-nosave")) save = false;
+                else if (args[i].equals("-report")) reportName = args[++i];
+                else configs.addAll(readConfigs(args[i]));
+            }
+        } catch(Exception e) {
+            println("AceTreeBatch, " + e);
+            configs.clear();
+        }
+        if (configs.size() == 0) {
+            println(USAGE);
+            System.exit(1);
+        }
+        PrintWriter report = null;
+        try {
+            if (reportName != null) report = new PrintWriter(new FileOutputStream(reportName), true);
+        } catch(IOException ioe) {
+            println("AceTreeBatch, " + ioe);
+            System.exit(1);
+        }
+        runAll(configs, threads, correct, save, report);
+        if (report != null) report.close();
+        System.exit(0);
 
     }
     private static void println(String s) {System.out.println(s);}
@@ -71,4 +254,12 @@ public class AceTreeBatch {
     private static String fmt1(double d) {return DF1.format(d);}
     private static String fmt0(double d) {return DF0.format(d);}
 
+    private static final int
+         SERIESMB = 1024
+        ;
+
+    private static final String
+         USAGE = "usage: AceTreeBatch [-threads n] [-nocorrect] [-nosave] [-report file] config ..."
+        ;
+
 }
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.acetree;
+
+import java.awt.Component;
+import java.io.File;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.Vector;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
+
+import org.rhwlab.help.AceTreeHelp;
+import org.rhwlab.snight.NucZipper;
+import org.rhwlab.snight.NucleiMgr;
+import org.rhwlab.snight.Nucleus;
+
+/**
+ * runs NucZipper off the event thread so editing can go on during a save
+ * <br>save() copies every nucleus by value and takes over the edit marks
+ * right away, and the copy is written on a single worker thread, one
+ * save at a time; renames and the expression tools change nuclei
+ * without marking them edited, so no time point can be shared with the
+ * record while the writer reads it
+ * <br>a save asked for while an earlier one to the same file is still
+ * waiting replaces it, so a burst of saves costs one write
+ * <br>if a save fails its edit marks are handed back to the NucleiMgr
+ */
+public class NucleiSaver {
+    Component                   iParent;
+    ThreadPoolExecutor          iExecutor;
+    LinkedList<Request>         iPending;
+
+    public NucleiSaver(Component parent) {
+        iParent = parent;
+        iPending = new LinkedList<Request>();
+        // not a daemon, so a save in progress keeps the vm alive; the
+        // thread goes away once idle
+        iExecutor = new ThreadPoolExecutor(1, 1, 5, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, "NucleiSaver");
+                    }
+                });
+        iExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * queues a save of the current nuclei to file
+     * <br>to be called on the event thread, like the edits themselves
+     */
+    public void save(File file, NucleiMgr nucleiMgr) {
+        Request req = new Request();
+        req.iFile = file;
+        req.iNucleiMgr = nucleiMgr;
+        req.iEdited = nucleiMgr.getEditedTimes();
+        req.iNuclei = snapshot(nucleiMgr.getNucleiRecord());
+        nucleiMgr.clearEdited();
+        synchronized(iPending) {
+            for (int i=0; i < iPending.size(); i++) {
+                Request old = iPending.get(i);
+                if (old.iFile.equals(file) && old.iNucleiMgr == nucleiMgr) {
+                    req.iEdited.or(old.iEdited);
+                    iPending.set(i, req);
+                    println("NucleiSaver.save, replaced pending save of " + file);
+                    return;
+                }
+            }
+            iPending.add(req);
+        }
+        iExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Request r;
+                synchronized(iPending) {
+                    r = iPending.poll();
+                }
+                if (r != null) write(r);
+            }
+        });
+    }
+
+    public boolean isSaving() {
+        return iExecutor.getActiveCount() > 0 || !iExecutor.getQueue().isEmpty();
+    }
+
+    /**
+     * waits for queued saves to finish; used before the vm is shut down
+     * <br>blocks the calling thread, the event thread when AceTree closes,
+     * so the progress monitor of the save is not shown meanwhile
+     */
+    public void finish() {
+        iExecutor.shutdown();
+        try {
+            while (!iExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
+                println("NucleiSaver.finish, waiting for save");
+            }
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(final Request req) {
+        println("NucleiSaver.write, " + req.iFile);
+        final ProgressMonitor [] monitor = new ProgressMonitor[1];
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                monitor[0] = new ProgressMonitor(iParent, "Saving nuclei",
+                        req.iFile.getName(), 0, req.iNuclei.size());
+            }
+        });
+        NucZipper nz = new NucZipper(req.iFile, req.iNucleiMgr, req.iNuclei, req.iEdited,
+                new NucZipper.Progress() {
+                    @Override
+                    public void progress(final int done, final int total) {
+                        // one update per percent is plenty for the monitor
+                        if (done % Math.max(1, total / 100) != 0 && done != total) return;
+                        SwingUtilities.invokeLater(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (monitor[0] == null) return;
+                                monitor[0].setMaximum(total);
+                                monitor[0].setProgress(done);
+                            }
+                        });
+                    }
+                });
+        final boolean saved = nz.saved();
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                if (monitor[0] != null) monitor[0].close();
+                if (saved) {
+                    println("Finished saving nuclei to " + req.iFile);
+                } else {
+                    req.iNucleiMgr.markEdited(req.iEdited);
+                    new AceTreeHelp("/org/rhwlab/help/messages/PermissionError.html", 200, 200);
+                }
+            }
+        });
+    }
+
+    /**
+     * the record with every nucleus copied so later edits cannot reach it
+     */
+    private static Vector<Vector<Nucleus>> snapshot(Vector<Vector<Nucleus>> record) {
+        Vector<Vector<Nucleus>> copy = new Vector<Vector<Nucleus>>(record.size());
+        for (int i=0; i < record.size(); i++) {
+            Vector<Nucleus> nuclei = record.get(i);
+            Vector<Nucleus> v = new Vector<Nucleus>(nuclei.size());
+            for (int j=0; j < nuclei.size(); j++) v.add(nuclei.get(j).copy());
+            copy.add(v);
+        }
+        return copy;
+    }
+
+    static class Request {
+        File                    iFile;
+        NucleiMgr               iNucleiMgr;
+        Vector<Vector<Nucleus>> iNuclei;
+        BitSet                  iEdited;
+    }
+
+    private static void println(String s) {System.out.println(s);}
+}
@@ -15,10 +15,6 @@ import java.awt.Dimension;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.ByteArrayInputStream;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.zip.ZipEntry;
 
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
@@ -36,7 +32,7 @@ import org.rhwlab.acetree.AceTree;
 import org.rhwlab.image.AuxImageWindowXZ;
 import org.rhwlab.image.AuxImageWindowYZ;
 import org.rhwlab.image.ImageWindow;
-import org.rhwlab.image.ZipImage;
+import org.rhwlab.image.Volume;
 import org.rhwlab.snight.NucleiMgr;
 
 /**
@@ -112,17 +108,9 @@ public class Analysis11 extends JPanel implements ActionListener {
 
     private ImagePlus getOneYZ(int time, int x) {
         int planeEnd = iNucleiMgr.getPlaneEnd();
-        ByteProcessor bp = new ByteProcessor(11 * planeEnd - 1, ImageWindow.cImageHeight);
-        for (int m=1; m <= planeEnd; m++) {
-            ImageProcessor ip = getImage(time, m);
-            //println("test2: " + ip);
-            for (int i=0; i < ip.getHeight(); i++) {
-                int p = ip.getPixel(x, i);
-                for (int k=0; k < 11; k++) {
-                    bp.putPixel(k + m*11, i, p);
-                }
-            }
-        }
+        Volume v = Volume.getVolume(iAceTree, time, planeEnd);
+        iImageName = v.getImageName();
+        ByteProcessor bp = v.getYZ(x, 11, ImageWindow.cImageHeight, planeEnd);
         String s = time + "_" + x;
         ImagePlus iplus = new ImagePlus(s, bp);
         return iplus;
@@ -131,83 +119,15 @@ public class Analysis11 extends JPanel implements ActionListener {
 
     private ImagePlus getOneXZ(int time, int y) {
         int planeEnd = iNucleiMgr.getPlaneEnd();
-        ByteProcessor bp = new ByteProcessor(ImageWindow.cImageWidth, 11 * planeEnd - 1);
-        for (int m=1; m <= planeEnd; m++) {
-            ImageProcessor ip = getImage(time, m);
-            //println("test2: " + ip + CS + time + CS + m + CS + planeEnd);
-            for (int i=0; i < ip.getWidth(); i++) {
-                int p = ip.getPixel(i, y);
-                for (int k=0; k < 11; k++) {
-                    bp.putPixel(i, k + m*11, p);
-                    //bp.putPixel(k + m*11, i, p);
-                }
-            }
-        }
+        Volume v = Volume.getVolume(iAceTree, time, planeEnd);
+        iImageName = v.getImageName();
+        ByteProcessor bp = v.getXZ(y, 11, ImageWindow.cImageWidth, planeEnd);
         String s = time + "_" + y;
         ImagePlus iplus = new ImagePlus(s, bp);
         return iplus;
         
     }
 
-    private ImageProcessor getImage(int time, int plane) {
-        String imageFile = ImageWindow.cZipTifFilePath;
-        imageFile += "/" + ImageWindow.cTifPrefix;
-        imageFile += iAceTree.makeImageName(time, plane);
-        int k = imageFile.lastIndexOf("/");
-        String s = imageFile.substring(k + 1);
-        k = s.lastIndexOf("-");
-        s = s.substring(0, k);
-        //println("getImage: " + s);
-        iImageName = s;
-        ImageProcessor ip = getRedData(imageFile);
-        return ip;
-    }
-    
-    private ImageProcessor getRedData(String greenName) {
-        //System.out.println("getRedData: " + greenName + C.CS + ImageWindow.cUseZip);
-        if (ImageWindow.cUseZip == 2) return getRedZipData(greenName);
-        FileInputStream fis;
-        ImagePlus ip = null;
-        //String ss = "/home/biowolp/AncesTree/temp2/images/050405-t050-p15.tif";
-        try {
-            fis = new FileInputStream(greenName);
-            byte [] ba = ImageWindow.readByteArray(fis);
-            ip = ImageWindow.openTiff(new ByteArrayInputStream(ba), false);
-            fis.close();
-	    if(ImageWindow.imagewindowUseStack==1) {
-		int markerChannel=1;
-		ip=ImageWindow.splitImage(ip,markerChannel);
-	    }
-            //ip = readData(fis);
-        } catch(IOException ioe) {
-            //System.out.println("ImageWindow.test3 exception ");
-            //System.out.println(ioe);
-        }
-        if (ip != null) return ip.getProcessor();
-        else return null;
-    }
-
-    
-    private ImageProcessor getRedZipData(String redName) {
-        ZipImage zipImage = new ZipImage(redName);
-        int k1 = redName.lastIndexOf("/") + 1;
-        String ss = redName.substring(k1);
-        int k2 = ss.indexOf(".");
-        ss = ss.substring(0, k2);
-        //System.out.println("using: " + ss);
-        ZipEntry ze = null;
-        if (zipImage != null) ze = zipImage.getZipEntry(ss + ".tif");
-        //System.out.println("ZipEntry: " + ze);
-        //if (cZipImage == null) cZipImage = new ZipImage(cZipTifFilePath);
-        //ZipEntry ze = cZipImage.getZipEntry(s);
-        ImagePlus ip = null;
-        ip = zipImage.readData(ze, true);
-        if (ip != null) return ip.getProcessor();
-        else return null;
-    }
-    
-    
-    
     public void showMe() {
         //iFrame = new JFrame(iLog.iTitle);
         iFrame.setTitle("ImageViews");
@@ -41,7 +41,6 @@ import javax.swing.WindowConstants;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import org.rhwlab.acetree.AceTree;
-import org.rhwlab.acetree.NucUtils;
 import org.rhwlab.image.ImageWindow;
 import org.rhwlab.snight.NucleiMgr;
 import org.rhwlab.snight.Nucleus;
@@ -307,7 +306,7 @@ public class Analysis5 extends JPanel implements ActionListener, ListSelectionLi
         Vector nuclei = (Vector)nuclei_record.get(iTime - 1);
         Vector nuclei2 = (Vector)nuclei_record.get(iTime);
         //iTime++; //point at the next time
-        Nucleus nn = NucUtils.getCurrentCellData(nuclei, iCellName);
+        Nucleus nn = iNucleiMgr.getCurrentCellData(iCellName, iTime);
         double zPixRes = iNucleiMgr.getZPixRes();
         int x = nn.x;
         int y = nn.y;
@@ -372,7 +371,7 @@ public class Analysis5 extends JPanel implements ActionListener, ListSelectionLi
 
         //println("iZPixRes: " + iNucleiMgr.getZPixRes());
         double zPixRes = iNucleiMgr.getZPixRes();
-        Nucleus nn = NucUtils.getCurrentCellData(nuclei, iCellName);
+        Nucleus nn = iNucleiMgr.getCurrentCellData(iCellName, iTime);
         //println("nn: " + nn);
 
         //Nucleus p = (Nucleus)nuclei2.get(nn.predecessor - 1);
@@ -817,7 +816,7 @@ public class Analysis5 extends JPanel implements ActionListener, ListSelectionLi
         iTime = t;
         Vector nuclei = (Vector)nuclei_record.get(t - 1);
         Vector nuclei2 = (Vector)nuclei_record.get(t);
-        Nucleus nn = NucUtils.getCurrentCellData(nuclei, testName);
+        Nucleus nn = iNucleiMgr.getCurrentCellData(testName, t);
         println("nn: " + nn);
         //c.showParameters();
         println("iZPixRes: " + iNucleiMgr.getZPixRes());
@@ -893,7 +892,7 @@ public class Analysis5 extends JPanel implements ActionListener, ListSelectionLi
         iTime = t;
         Vector nuclei = (Vector)nuclei_record.get(t - 1);
         Vector nuclei2 = (Vector)nuclei_record.get(t);
-        Nucleus nn = NucUtils.getCurrentCellData(nuclei, testName);
+        Nucleus nn = iNucleiMgr.getCurrentCellData(testName, t);
         println("nn: " + nn);
 
         Nucleus dd1 = (Nucleus)nuclei2.get(nn.successor1 - 1);
@@ -41,6 +41,7 @@ import org.rhwlab.tree.Cell;
 import org.rhwlab.utils.C;
 import org.rhwlab.utils.EUtils;
 import org.rhwlab.utils.Log;
+import org.rhwlab.utils.TimePointRunner;
 
 
 /**
@@ -125,6 +126,7 @@ JCheckBox       redChannelButton;
         Enumeration e = allCircles.elements();
         int plane = 0;
         ImageProcessor ipRed = null;
+        int [] redPixels = null;
         while (e.hasMoreElements()) {
             Centroid c = (Centroid)e.nextElement();
             if (c.plane > plane) {
@@ -138,6 +140,7 @@ JCheckBox       redChannelButton;
                 imageFile += iAceTree.makeImageName(c.time, c.plane);
 		}
                 ipRed = getRedData(imageFile,c.plane);
+                if (ipRed != null) redPixels = RedBatch.getPixels(ipRed);
                 //System.out.println("YimageFile: " + (new File(imageFile).getName()));
 
             }
@@ -145,7 +148,7 @@ JCheckBox       redChannelButton;
             c.rcount = 1;
             if (ipRed != null) {
                 //int [] ia = processImageUsingRoi(ipRed, c);
-                int [] ia = processImageUsingPolygon(ipRed, c);
+                int [] ia = processImageUsingPolygon(redPixels, ipRed.getWidth(), ipRed.getHeight(), c);
                 c.rsum = ia[0];
                 c.rcount = ia[1];
             }
@@ -181,51 +184,58 @@ JCheckBox       redChannelButton;
     }
 
     // get color data for all time points
-    @SuppressWarnings("unused")
-	public void test2() {
-        long start = System.currentTimeMillis();
+    // the time points are processed in parallel by TimePointRunner
+    public void test2() {
+        final long start = System.currentTimeMillis();
         //int k = Integer.parseInt(iTextField.getText());
         int m = iNucleiMgr.getConfig().iStartingIndex;
         int q = iNucleiMgr.getConfig().iEndingIndex;
-        for (int i=m; i <= q; i++) {
-            Vector circles = new Vector();
-            Vector allCircles = new Vector();
-            Vector nuclei = (Vector)nuclei_record.elementAt(i - 1);
-            circles = new Vector();
-            Nucleus n = null;
-            Enumeration e = nuclei.elements();
-            for (int j=0; j < nuclei.size(); j++) {
-                n = (Nucleus)nuclei.elementAt(j);
-                //if (!n.identity.equals("ABplaaaaa")) continue;
-                if (n.status == Nucleus.NILLI) continue;
-                Vector v = new Vector(); // vector to hold all centroids for this cell
-                for (int plane = 1; plane <= iNucleiMgr.getPlaneEnd(); plane++) {
-                    double d = iNucleiMgr.nucDiameter(n, plane);
-                    if (d > 0) {
-                        //append(String.valueOf(plane) + C.CS + String.valueOf(d));
-                        Centroid c = new Centroid();
-                        c.index = j + 1;
-                        c.time = i;
-                        c.plane = plane;
-                        c.x = n.x;
-                        c.y = n.y;
-                        c.d = d;
-                        c.name = n.identity;
-                        c.weight = n.weight;
-                        c.n = n;
-                        v.add(c);
-                        allCircles.add(c);
+        TimePointRunner.run(m, q, new TimePointRunner.Job() {
+            @Override
+            public Object process(int i) {
+                Vector circles = new Vector();
+                Vector allCircles = new Vector();
+                Vector nuclei = (Vector)nuclei_record.elementAt(i - 1);
+                Nucleus n = null;
+                for (int j=0; j < nuclei.size(); j++) {
+                    n = (Nucleus)nuclei.elementAt(j);
+                    //if (!n.identity.equals("ABplaaaaa")) continue;
+                    if (n.status == Nucleus.NILLI) continue;
+                    Vector v = new Vector(); // vector to hold all centroids for this cell
+                    for (int plane = 1; plane <= iNucleiMgr.getPlaneEnd(); plane++) {
+                        double d = iNucleiMgr.nucDiameter(n, plane);
+                        if (d > 0) {
+                            //append(String.valueOf(plane) + C.CS + String.valueOf(d));
+                            Centroid c = new Centroid();
+                            c.index = j + 1;
+                            c.time = i;
+                            c.plane = plane;
+                            c.x = n.x;
+                            c.y = n.y;
+                            c.d = d;
+                            c.name = n.identity;
+                            c.weight = n.weight;
+                            c.n = n;
+                            v.add(c);
+                            allCircles.add(c);
+                        }
                     }
+                    circles.add(v);
                 }
-                circles.add(v);
+                processAllCircles(allCircles, circles, false);
+                return Integer.valueOf(circles.size());
             }
-            processAllCircles(allCircles, circles, false);
-            if (i % 10 == 0) {
-                long elapsed = System.currentTimeMillis() - start;
-                System.out.println("elapsedTime: " + elapsed + C.CS  + circles.size() + C.CS + i);
-                System.out.flush();
+
+            @Override
+            public boolean finished(int i, Object result) {
+                if (i % 10 == 0) {
+                    long elapsed = System.currentTimeMillis() - start;
+                    System.out.println("elapsedTime: " + elapsed + C.CS  + result + C.CS + i);
+                    System.out.flush();
+                }
+                return true;
             }
-        }
+        });
         long elapsed = System.currentTimeMillis() - start;
         append("elapsedTime: " + elapsed);
     }
@@ -310,23 +320,25 @@ JCheckBox       redChannelButton;
     }
 
     public  int [] processImageUsingPolygon(ImageProcessor ipRed, Centroid c) {
-        int rad = (int)Math.round(c.d / 2);
-        Polygon inner = EUtils.pCircle(c.x, c.y, rad);
-        Rectangle r = inner.getBounds();
+        return processImageUsingPolygon(RedBatch.getPixels(ipRed), ipRed.getWidth(), ipRed.getHeight(), c);
+    }
+
+    /*
+     * sums the pixels inside EUtils.pCircle of the centroid
+     * pixels off the image count as zero, as getPixel gives them
+     */
+    public  int [] processImageUsingPolygon(int [] redPixels, int width, int height, Centroid c) {
+        RedBatch.Circle inner = RedBatch.getCircle((int)Math.round(c.d / 2));
         double nucleusRed = 0;
-        double nucleusRedCount = 0;
-        for (int y=r.y; y < (r.y + r.height); y++) {
-            for (int x = r.x; x <= (r.x + r.width); x++) {
-                if (inner.contains(x, y)) {
-                    int p = ipRed.getPixel(x, y);
-                    nucleusRed += p;
-                    nucleusRedCount ++;
-                }
-            }
+        for (int k=0; k < inner.iDx.length; k++) {
+            int x = c.x + inner.iDx[k];
+            int y = c.y + inner.iDy[k];
+            if (x < 0 || y < 0 || x >= width || y >= height) continue;
+            nucleusRed += redPixels[y * width + x];
         }
         int [] ia = new int[2];
         ia[0] = (int)Math.round(nucleusRed);
-        ia[1] = (int)Math.round(nucleusRedCount);
+        ia[1] = inner.iDx.length;
         return ia;
     }
 
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.analyze;
+
+import ij.process.ByteProcessor;
+import ij.process.ImageProcessor;
+import ij.process.PolygonFiller;
+import ij.process.ShortProcessor;
+
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import org.rhwlab.utils.EUtils;
+
+/**
+ * the parts shared by the red expression tools, ExtractRed and
+ * RedBkgComp2: circle masks kept by radius and the pixels of a plane as
+ * an int array; the time points themselves are spread over the cores by
+ * TimePointRunner
+ * <br>a Circle lists the pixels, relative to the center, that
+ * EUtils.pCircle(x, y, r).contains and that ImageProcessor.fillPolygon of
+ * that polygon sets, so sums over a mask are the sums the polygon loops
+ * gave
+ */
+public class RedBatch {
+    private static Hashtable<Integer, Circle> cCircles = new Hashtable<Integer, Circle>();
+
+    /**
+     * @return the masks of the circle of radius r
+     */
+    public static Circle getCircle(int r) {
+        Integer key = Integer.valueOf(r);
+        Circle c = cCircles.get(key);
+        if (c == null) {
+            c = new Circle(r);
+            cCircles.put(key, c);
+        }
+        return c;
+    }
+
+    /**
+     * @return the pixels of ip as getPixel gives them, row after row
+     */
+    public static int [] getPixels(ImageProcessor ip) {
+        int w = ip.getWidth();
+        int h = ip.getHeight();
+        int [] pix = new int[w * h];
+        if (ip instanceof ByteProcessor) {
+            byte [] b = (byte [])ip.getPixels();
+            for (int i=0; i < pix.length; i++) pix[i] = b[i] & 0xff;
+        } else if (ip instanceof ShortProcessor) {
+            short [] s = (short [])ip.getPixels();
+            for (int i=0; i < pix.length; i++) pix[i] = s[i] & 0xffff;
+        } else {
+            for (int y=0; y < h; y++) {
+                for (int x=0; x < w; x++) pix[y * w + x] = ip.getPixel(x, y);
+            }
+        }
+        return pix;
+    }
+
+    public static class Circle {
+        public final int [] iDx;        // pixels inside the polygon
+        public final int [] iDy;
+        public final int [] iFillDx;    // pixels filled by fillPolygon
+        public final int [] iFillDy;
+
+        Circle(int r) {
+            Polygon p = EUtils.pCircle(0, 0, r);
+            Rectangle b = p.getBounds();
+            Vector<int []> v = new Vector<int []>();
+            for (int y=b.y; y < (b.y + b.height); y++) {
+                for (int x = b.x; x <= (b.x + b.width); x++) {
+                    if (p.contains(x, y)) v.add(new int [] {x, y});
+                }
+            }
+            iDx = new int[v.size()];
+            iDy = new int[v.size()];
+            for (int i=0; i < iDx.length; i++) {
+                iDx[i] = v.get(i)[0];
+                iDy[i] = v.get(i)[1];
+            }
+            // as ImageProcessor.setRoi(Polygon) builds the mask fillPolygon uses
+            v.clear();
+            if (b.width > 0 && b.height > 0) {
+                int [] xs = new int[p.npoints];
+                int [] ys = new int[p.npoints];
+                for (int i=0; i < p.npoints; i++) {
+                    xs[i] = p.xpoints[i] - b.x;
+                    ys[i] = p.ypoints[i] - b.y;
+                }
+                ImageProcessor mask = new PolygonFiller(xs, ys, p.npoints).getMask(b.width, b.height);
+                byte [] m = (byte [])mask.getPixels();
+                for (int y=0; y < b.height; y++) {
+                    for (int x=0; x < b.width; x++) {
+                        if (m[y * b.width + x] != 0) v.add(new int [] {x + b.x, y + b.y});
+                    }
+                }
+            }
+            iFillDx = new int[v.size()];
+            iFillDy = new int[v.size()];
+            for (int i=0; i < iFillDx.length; i++) {
+                iFillDx[i] = v.get(i)[0];
+                iFillDy[i] = v.get(i)[1];
+            }
+        }
+    }
+}
@@ -40,6 +40,7 @@ import org.rhwlab.tree.Cell;
 import org.rhwlab.utils.C;
 import org.rhwlab.utils.EUtils;
 import org.rhwlab.utils.Log;
+import org.rhwlab.utils.TimePointRunner;
 
 /**
  * @author biowolp
@@ -64,7 +65,7 @@ public class RedBkgComp2 extends Log {
     int             iStartTime;
     int             iEndTime;
     RedBkgComp      iRedBkgComp;
-    boolean         iStopRequested;
+    volatile boolean    iStopRequested;
     boolean         iFeedbackRequested;
     Vector          iFeedbackVector;
 
@@ -104,33 +105,49 @@ public class RedBkgComp2 extends Log {
     }
 
 
-    Vector iKeys;
+    /*
+     * time points are processed in parallel by TimePointRunner; results are
+     * set into the nuclei and reported, and a stop request honored, in time
+     * order, so no time point after the stop is written
+     */
     public void test1() {
         iRedBkgComp.append("beginning..");
         long startTime = System.currentTimeMillis();
-        for (int time = iStartTime; time <= iEndTime; time++) {
-            Vector hashPlanes = new Vector();
-            for (int plane = 1; plane <= iNucleiMgr.getPlaneEnd(); plane++) {
-                Hashtable h = createHashForPlane(time, plane);
-                // hashtable h has one entry for each cell which has a large diameter
-                // intersection with this plane
-                // the entry is a Centroid object
-                // the plane member has the value of this plane
-                hashPlanes.add(h);
-            }
-            processHashPlanes(time, hashPlanes);
-            if (iFeedbackRequested) {
-                Collections.sort(iFeedbackVector);
-                for (int i=0; i < iFeedbackVector.size(); i++) {
-                    iRedBkgComp.append((String)iFeedbackVector.get(i));
+        TimePointRunner.run(iStartTime, iEndTime, new TimePointRunner.Job() {
+            @Override
+            public Object process(int time) {
+                if (iStopRequested) return null;
+                Vector hashPlanes = new Vector();
+                for (int plane = 1; plane <= iNucleiMgr.getPlaneEnd(); plane++) {
+                    Hashtable h = createHashForPlane(time, plane);
+                    // hashtable h has one entry for each cell which has a large diameter
+                    // intersection with this plane
+                    // the entry is a Centroid object
+                    // the plane member has the value of this plane
+                    hashPlanes.add(h);
                 }
+                return processHashPlanes(time, hashPlanes);
             }
-            if (iStopRequested) {
-                iStopRequested = false;
-                iRedBkgComp.append("at time=" + time + ", stopped at user request");
-                break;
+
+            @Override
+            public boolean finished(int time, Object result) {
+                if (iStopRequested) {
+                    iStopRequested = false;
+                    // this time point and those after it are left as they were
+                    iRedBkgComp.append("at time=" + (time - 1) + ", stopped at user request");
+                    return false;
+                }
+                Vector feedback = applyTotals(time, (Vector)result);
+                if (iFeedbackRequested) {
+                    iFeedbackVector.addAll(feedback);
+                    Collections.sort(iFeedbackVector);
+                    for (int i=0; i < iFeedbackVector.size(); i++) {
+                        iRedBkgComp.append((String)iFeedbackVector.get(i));
+                    }
+                }
+                return true;
             }
-        }
+        });
         long endTime = System.currentTimeMillis();
 
         String s = "run elapsed millisec, " + (endTime - startTime);
@@ -138,21 +155,20 @@ public class RedBkgComp2 extends Log {
 
     }
 
-    @SuppressWarnings("unused")
-	public void processHashPlanes(int time, Vector hashPlanes) {
+    /*
+     * works out the red totals of the nuclei of this time point;
+     * applyTotals sets them into the nuclei
+     */
+    public Vector processHashPlanes(int time, Vector hashPlanes) {
         Vector nuclei = (Vector)nuclei_record.elementAt(time - 1);
-        Vector circles = new Vector();
-        iKeys = new Vector();
+        Vector totals = new Vector();
         Nucleus n = null;
-        Hashtable totals = new Hashtable();
-        iKeys = new Vector();
-        Enumeration e = nuclei.elements();
         for (int j=0; j < nuclei.size(); j++) {
             n = (Nucleus)nuclei.elementAt(j);
             if (n.status == Nucleus.NILLI) continue;
             Totals t = new Totals();
             t.name = n.identity;
-            iKeys.add(n.identity);
+            t.n = n;
             for (int i=0; i < hashPlanes.size(); i++) {
                 Hashtable h = (Hashtable)hashPlanes.get(i);
                 Centroid c = (Centroid)h.get(n.identity);
@@ -166,33 +182,35 @@ public class RedBkgComp2 extends Log {
             double fri = 1000 * t.nuclearRed / t.nuclearArea;
             t.fri = fri;
             t.bri = bri;
-            totals.put(n.identity, t);
-            n.rweight = (int)Math.round(fri - bri);
-            n.rsum = (int)Math.round(t.nuclearArea);
-            n.rcount = (int)Math.round(bri);
             //println("processHashPlanes, " + fri + CS + bri + CS + time + CS + n.identity);
+            totals.add(t);
+        }
+        return totals;
+    }
+
+    /*
+     * sets the red values worked out by processHashPlanes
+     * and returns the feedback lines for them
+     */
+    private Vector applyTotals(int time, Vector totals) {
+        Vector feedback = new Vector();
+        for (int i=0; i < totals.size(); i++) {
+            Totals t = (Totals)totals.get(i);
+            Nucleus n = t.n;
+            n.rweight = (int)Math.round(t.fri - t.bri);
+            n.rsum = (int)Math.round(t.nuclearArea);
+            n.rcount = (int)Math.round(t.bri);
             if (iFeedbackRequested) {
                 String s = n.identity + CS + n.rweight + CS + n.rcount + CS + n.rsum + CS + time;
-                iFeedbackVector.add(s);
+                feedback.add(s);
             }
         }
-        /*
-        Collections.sort(iKeys);
-        for (int i=0; i < iKeys.size(); i++) {
-            Totals t = (Totals)totals.get(iKeys.get(i));
-
-            println("processHashPlanes, " + t);
-        }
-        */
+        return feedback;
     }
 
-    @SuppressWarnings("unused")
-	public Hashtable createHashForPlane(int time, int plane) {
+    public Hashtable createHashForPlane(int time, int plane) {
         Vector nuclei = (Vector)nuclei_record.elementAt(time - 1);
-        Vector circles = new Vector();
-        iKeys = new Vector();
         Nucleus n = null;
-        Enumeration e = nuclei.elements();
         Hashtable h = new Hashtable(); // vector to hold all centroids for this cell
         for (int j=0; j < nuclei.size(); j++) {
             n = (Nucleus)nuclei.elementAt(j);
@@ -216,12 +234,10 @@ public class RedBkgComp2 extends Log {
                 c.weight = n.weight;
                 c.n = n;
                 h.put(n.identity, c);
-                iKeys.add(n.identity);
                 //println("test1, " + c);
             }
         }
         process(h, time, plane);
-        Collections.sort(iKeys);
         return h;
 
     }
@@ -230,26 +246,22 @@ public class RedBkgComp2 extends Log {
      * this function processes the image associated with the plane
      * represented by the Centroids in hashtable h
      * three representations of that image are used
-     * ipData deals with the nuclear red information
-     * ipCopy gets middle circles zeroed out so it sort of has
+     * data holds the nuclear red information
+     * copy gets middle circles zeroed out so it sort of has
      * only background information
-     * ipTemplate is a dummy page whose size corresponds to
-     * that of ipData. It is used to estimate the usable
-     * area of the annuli in which background red will
-     * be estimated
+     * zeroed marks those circles; the pixels of the image it
+     * leaves unmarked are the usable area of the annuli in
+     * which background red will be estimated
      *
      * the first loop is used to zero out the middle sized
-     * circles in ipCopy and ipTemplate
+     * circles in copy and mark them in zeroed
      *
      * the second loop adds to the Centroid object
      * the information about total red signal
      * and "area" of the two regions:
      * nucleus and annulus
      */
-    @SuppressWarnings("unused")
-	public void process(Hashtable h, int time, int plane) {
-        //int time = 200;
-        //int plane = 10;
+    public void process(Hashtable h, int time, int plane) {
         String imageFile = ImageWindow.cZipTifFilePath;
         imageFile += "/" + ImageWindow.cTifPrefixR;
         imageFile += iAceTree.makeImageName(time, plane);
@@ -259,39 +271,31 @@ public class RedBkgComp2 extends Log {
         // implies we are beyond the last plane
         // even tho the NucleiMgr does not know that
 
-        ImagePlus iplus = new ImagePlus(iTitle, ipData);
-        //iImgCanvas = new ImageCanvas(iplus);
-        //ij.gui.ImageWindow iwin = new ij.gui.ImageWindow(iplus);
-        ImageProcessor ipCopy = getRedData(imageFile);
-        ImagePlus iplus2 = new ImagePlus(iTitle, ipCopy);
-        //iImgCanvas = new ImageCanvas(iplus);
-        //ij.gui.ImageWindow iwin2 = new ij.gui.ImageWindow(iplus2);
-
-        ByteProcessor ipTemplate = new ByteProcessor(ipData.getWidth(), ipData.getHeight());
-        ipTemplate.setValue(255);
-        ipTemplate.fill();
-        ImagePlus iplus3 = new ImagePlus(iTitle, ipTemplate);
-        //ij.gui.ImageWindow iwin3 = new ij.gui.ImageWindow(iplus3);
+        int width = ipData.getWidth();
+        int height = ipData.getHeight();
+        int [] data = RedBatch.getPixels(ipData);
+        int [] copy = data.clone();
+        boolean [] zeroed = new boolean[data.length];
 
         // now zero out inlarged nucleus in copy and template
-        Enumeration e = h.keys();
+        Enumeration e = h.elements();
         while (e.hasMoreElements()) {
-            String key = (String)e.nextElement();
-            Centroid c = (Centroid)h.get(key);
-            int r = (int)Math.round(c.dm / 2);
-            Polygon middle = EUtils.pCircle(c.x, c.y, r);
-            c.middle = middle;
-            ipCopy.setValue(0);
-            ipCopy.fillPolygon(middle);
-            ipTemplate.setValue(0);
-            ipTemplate.fillPolygon(middle);
+            Centroid c = (Centroid)e.nextElement();
+            RedBatch.Circle middle = RedBatch.getCircle((int)Math.round(c.dm / 2));
+            for (int k=0; k < middle.iFillDx.length; k++) {
+                int x = c.x + middle.iFillDx[k];
+                int y = c.y + middle.iFillDy[k];
+                if (x < 0 || y < 0 || x >= width || y >= height) continue;
+                copy[y * width + x] = 0;
+                zeroed[y * width + x] = true;
+            }
         }
 
         // now obtain totals for nuclear red and "annulus" red
-        for (int i=0; i < iKeys.size(); i++) {
-            String key = (String)iKeys.get(i);
-            Centroid c = (Centroid)h.get(key);
-            getInfo(ipData, ipCopy, ipTemplate, c);
+        e = h.elements();
+        while (e.hasMoreElements()) {
+            Centroid c = (Centroid)e.nextElement();
+            getInfo(data, copy, zeroed, width, height, c);
         }
 
     }
@@ -303,56 +307,34 @@ public class RedBkgComp2 extends Log {
      * we examine a region corresponding to the large
      * circle and within it we locate background and
      * nuclear information
+     * pixels off the image count as zero, as getPixel gives them
      */
-    @SuppressWarnings("unused")
-	private void getInfo(ImageProcessor ipData, ImageProcessor ipCopy, ImageProcessor ipTemplate, Centroid c) {
-        int rad = (int)Math.round(c.d / 2);
-        Polygon inner = EUtils.pCircle(c.x, c.y, rad);
-        rad = (int)Math.round(c.dl / 2);
-        Polygon outer = EUtils.pCircle(c.x, c.y, rad);
-        Rectangle r = outer.getBounds();
+    private void getInfo(int [] data, int [] copy, boolean [] zeroed, int width, int height, Centroid c) {
+        RedBatch.Circle inner = RedBatch.getCircle((int)Math.round(c.d / 2));
+        RedBatch.Circle outer = RedBatch.getCircle((int)Math.round(c.dl / 2));
         double templateArea = 0;
         double backgroundRed = 0;
-        double backgroundRedCount = 0;
         double nucleusRed = 0;
-        double nucleusRedCount = 0;
-        for (int y=r.y; y < (r.y + r.height); y++) {
-            for (int x = r.x; x <= (r.x + r.width); x++) {
-
-                if (outer.contains(x, y)) {
-                    int p = ipTemplate.getPixel(x, y);
-                    templateArea += p;
-                    p = ipCopy.getPixel(x, y);
-                    backgroundRed += p;
-                    backgroundRedCount++;
-                }
-
-                if (inner.contains(x, y)) {
-                    int p = ipData.getPixel(x, y);
-                    nucleusRed += p;
-                    nucleusRedCount ++;
-                }
-            }
+        for (int k=0; k < outer.iDx.length; k++) {
+            int x = c.x + outer.iDx[k];
+            int y = c.y + outer.iDy[k];
+            if (x < 0 || y < 0 || x >= width || y >= height) continue;
+            int i = y * width + x;
+            if (!zeroed[i]) templateArea++;
+            backgroundRed += copy[i];
+        }
+        for (int k=0; k < inner.iDx.length; k++) {
+            int x = c.x + inner.iDx[k];
+            int y = c.y + inner.iDy[k];
+            if (x < 0 || y < 0 || x >= width || y >= height) continue;
+            nucleusRed += data[y * width + x];
         }
         c.nuclearRed = nucleusRed;
-        c.nuclearArea = nucleusRedCount;
+        c.nuclearArea = inner.iDx.length;
         c.annulusRed = backgroundRed;
-        c.annulusArea = templateArea/255;
-        c.outer = outer;
-        c.inner = inner;
+        c.annulusArea = templateArea;
     }
 
-    @SuppressWarnings("unused")
-	private void showInfo(ImageProcessor ipCopy, ImageProcessor ipTemplate, Centroid c) {
-        ipTemplate.setValue(0);
-        ipTemplate.drawPolygon(c.outer);
-        ipCopy.setValue(255);
-        ipCopy.drawPolygon(c.middle);
-        ipCopy.drawPolygon(c.outer);
-        double templateArea = c.annulusArea;
-    }
-
-
     @SuppressWarnings("unused")
 	private double [] processStuff(ImageProcessor ipData, ImageProcessor ipCopy, ImageProcessor ipTemplate, Centroid c) {
         double [] rtn = new double[3];
@@ -501,6 +483,7 @@ public class RedBkgComp2 extends Log {
 
     private class Totals {
         String name;
+        Nucleus n;
         double nuclearRed;
         double nuclearArea;
         double annulusRed;
@@ -537,9 +520,6 @@ public class RedBkgComp2 extends Log {
         public int rcount;
         public double dl;   //the large diameter in "this" plane
         public double dm;   //the small diameter in "this" plane
-        public Polygon inner;
-        public Polygon middle;
-        public Polygon outer;
         public double nuclearRed;
         public double nuclearArea;
         public double annulusRed;
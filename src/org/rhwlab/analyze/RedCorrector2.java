@@ -53,11 +53,12 @@ public class RedCorrector2 {
             cellNames.add(name);
         }
         Collections.sort(cellNames);
-        cCellNames = cellNames;
-        cCells = new Hashtable();
+        // the statics are set only once this time point is done, since
+        // the batch runner corrects several series at once
+        Hashtable cells = new Hashtable();
         for (int i=0; i < cellNames.size(); i++) {
             String name = (String)cellNames.get(i);
-            cCells.put(name, new Integer(i));
+            cells.put(name, Integer.valueOf(i));
         }
         
         
@@ -65,6 +66,7 @@ public class RedCorrector2 {
         
         double zpixres = nucMgr.getZPixRes();
         int m = workingNuclei.size();
+        if (m == 0) return;
         Matrix M = new Matrix(m, m);
         for (int i=0; i < m; i++) {
             String name = (String)cellNames.get(i);
@@ -96,6 +98,8 @@ public class RedCorrector2 {
             //n.rwcorr4 = (int)Math.round(x[i]);
         }
         //showResults(nucMgr, time);
+        cCellNames = cellNames;
+        cCells = cells;
         cM = M;
         cNuclei = workingNuclei;
     }
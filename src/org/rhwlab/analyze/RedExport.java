@@ -0,0 +1,234 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.analyze;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Vector;
+
+import org.rhwlab.acetree.AceTreeBatch;
+import org.rhwlab.snight.NucleiMgr;
+import org.rhwlab.snight.NucleiMgrHeadless;
+import org.rhwlab.snight.Nucleus;
+import org.rhwlab.tree.AncesTree;
+import org.rhwlab.tree.Cell;
+import org.rhwlab.tree.CellData;
+
+/**
+ * the red expression of every cell of a series, written in one walk of
+ * the AncesTree
+ * <br>a cell is written with the rweight, rwraw and rwcorr1 to rwcorr4 of
+ * each time point it lives, parents before their daughters; cells with no
+ * nuclei are left out
+ * <br>as csv there is one row per cell and time:
+ * cell,time,rweight,rwraw,rwcorr1,rwcorr2,rwcorr3,rwcorr4
+ * <br>as binary, through a DataOutputStream: MAGIC, VERSION and the
+ * number of cells, then for each cell its name (writeUTF), first time and
+ * number of time points n, then the n values of each field, field after
+ * field in the csv order
+ * <br>usage: RedExport [-binary] [-dir d] config ...
+ * <br>each config is a config xml, or a list of them as AceTreeBatch
+ * reads it; the series is written to dir/series-red.csv, or
+ * dir/series-red.dat
+ */
+public class RedExport {
+    Writer      iWriter;
+    char []     iDigits;
+
+    private RedExport(Writer w) {
+        iWriter = w;
+        iDigits = new char[12];
+    }
+
+    /**
+     * @return the cells of the tree holding nuclei, parents first
+     */
+    public static Vector<Cell> getCells(AncesTree tree) {
+        Vector<Cell> cells = new Vector<Cell>();
+        Vector<Cell> stack = new Vector<Cell>();
+        stack.add(tree.getRoot());
+        while (stack.size() > 0) {
+            Cell c = stack.remove(stack.size() - 1);
+            if (c.getCellData().size() > 0) cells.add(c);
+            for (int i=c.getChildCount() - 1; i >= 0; i--) stack.add((Cell)c.getChildAt(i));
+        }
+        return cells;
+    }
+
+    public static void writeCSV(AncesTree tree, File f) throws IOException {
+        Writer w = new BufferedWriter(new FileWriter(f), BUFFER);
+        try {
+            writeCSV(tree, w);
+        } finally {
+            w.close();
+        }
+    }
+
+    public static void writeCSV(AncesTree tree, Writer w) throws IOException {
+        RedExport re = new RedExport(w);
+        w.write(HEADER);
+        w.write(NL);
+        Vector<Cell> cells = getCells(tree);
+        for (int i=0; i < cells.size(); i++) re.writeCell(cells.get(i));
+        w.flush();
+    }
+
+    private void writeCell(Cell c) throws IOException {
+        String name = c.getName();
+        Vector v = c.getCellData();
+        int time = c.getTime();
+        for (int j=0; j < v.size(); j++, time++) {
+            Nucleus n = ((CellData)v.get(j)).iNucleus;
+            iWriter.write(name);
+            writeInt(time);
+            writeInt(n.rweight);
+            writeInt(n.rwraw);
+            writeInt(n.rwcorr1);
+            writeInt(n.rwcorr2);
+            writeInt(n.rwcorr3);
+            writeInt(n.rwcorr4);
+            iWriter.write(NL);
+        }
+    }
+
+    // a comma and the digits of k, without making a String
+    private void writeInt(int k) throws IOException {
+        int p = iDigits.length;
+        long x = k;
+        boolean negative = x < 0;
+        if (negative) x = -x;
+        do {
+            iDigits[--p] = (char)('0' + (int)(x % 10));
+            x /= 10;
+        } while (x > 0);
+        if (negative) iDigits[--p] = '-';
+        iDigits[--p] = ',';
+        iWriter.write(iDigits, p, iDigits.length - p);
+    }
+
+    public static void writeBinary(AncesTree tree, File f) throws IOException {
+        OutputStream os = new FileOutputStream(f);
+        try {
+            writeBinary(tree, os);
+        } finally {
+            os.close();
+        }
+    }
+
+    public static void writeBinary(AncesTree tree, OutputStream os) throws IOException {
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os, BUFFER));
+        Vector<Cell> cells = getCells(tree);
+        dos.writeInt(MAGIC);
+        dos.writeInt(VERSION);
+        dos.writeInt(cells.size());
+        for (int i=0; i < cells.size(); i++) {
+            Cell c = cells.get(i);
+            Vector v = c.getCellData();
+            int n = v.size();
+            dos.writeUTF(c.getName());
+            dos.writeInt(c.getTime());
+            dos.writeInt(n);
+            for (int field=0; field < FIELDS; field++) {
+                for (int j=0; j < n; j++) dos.writeInt(getField(((CellData)v.get(j)).iNucleus, field));
+            }
+        }
+        dos.flush();
+    }
+
+    private static int getField(Nucleus n, int field) {
+        switch(field) {
+        case 0:
+            return n.rweight;
+        case 1:
+            return n.rwraw;
+        case 2:
+            return n.rwcorr1;
+        case 3:
+            return n.rwcorr2;
+        case 4:
+            return n.rwcorr3;
+        default:
+            return n.rwcorr4;
+        }
+    }
+
+    /**
+     * loads and names one series and writes its cells
+     * @return the file written, or null
+     */
+    public static File exportSeries(String configName, boolean binary, String dir) {
+        NucleiMgr nucMgr = new NucleiMgrHeadless(configName);
+        if (!nucMgr.iGoodNucleiMgr) {
+            println("RedExport, " + configName + CS + "load failed");
+            return null;
+        }
+        nucMgr.processNuclei(true, nucMgr.getConfig().iNamingMethod);
+        String series = nucMgr.getConfig().getShortName();
+        int k = series.lastIndexOf(".");
+        if (k > 0) series = series.substring(0, k);
+        File f = new File(dir, series + "-red" + (binary ? ".dat" : ".csv"));
+        try {
+            if (binary) writeBinary(nucMgr.getAncesTree(), f);
+            else writeCSV(nucMgr.getAncesTree(), f);
+        } catch(IOException ioe) {
+            println("RedExport, " + f.getPath() + CS + ioe);
+            return null;
+        }
+        return f;
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        boolean binary = false;
+        String dir = ".";
+        Vector<String> configs = new Vector<String>();
+        try {
+            for (int i=0; i < args.length; i++) {
+                if (args[i].equals("-binary")) binary = true;
+                else if (args[i].equals("-dir")) dir = args[++i];
+                else configs.addAll(AceTreeBatch.readConfigs(args[i]));
+            }
+        } catch(Exception e) {
+            println("RedExport, " + e);
+            configs.clear();
+        }
+        if (configs.size() == 0) {
+            println(USAGE);
+            System.exit(1);
+        }
+        for (int i=0; i < configs.size(); i++) {
+            long start = System.currentTimeMillis();
+            File f = exportSeries(configs.get(i), binary, dir);
+            if (f != null) println("RedExport, " + f.getPath() + CS + (System.currentTimeMillis() - start) + " ms");
+        }
+        System.exit(0);
+    }
+
+    private static void println(String s) {System.out.println(s);}
+    private static final String CS = ", ";
+    private static final String NL = "\n";
+
+    public static final int
+         MAGIC = 0x41524544    // "ARED"
+        ,VERSION = 1
+        ,FIELDS = 6
+        ;
+
+    private static final int
+         BUFFER = 1 << 16
+        ;
+
+    private static final String
+         HEADER = "cell,time,rweight,rwraw,rwcorr1,rwcorr2,rwcorr3,rwcorr4"
+        ,USAGE = "usage: RedExport [-binary] [-dir d] config ..."
+        ;
+}
@@ -67,10 +67,7 @@ public class AuxImageWindowXZ extends JFrame {
         iYLoc = y;
         iNucleiMgr = iAceTree.getNucleiMgr();
         iZPixRes = iNucleiMgr.getZPixRes();
-        String s = iTitle.split(" @")[0];
-        int k = s.lastIndexOf("-t");
-        s = s.substring(k + 2);
-        iTime = Integer.parseInt(s);
+        iTime = parseTime(iTitle);
         iDataProc = dataProc; 
         iImgPlus = new ImagePlus();
         /*note I have set default behavior to not display circles 
@@ -111,6 +108,27 @@ public class AuxImageWindowXZ extends JFrame {
         iImgCanvas.addMouseListener(iMouseHandler);
     }
     
+    /**
+     * shows another slice in this window, as DepthViews does when its
+     * time or location changes
+     */
+    public void setSlice(String title, ImageProcessor dataProc, int y) {
+        iTitle = title;
+        setTitle(title);
+        iTime = parseTime(title);
+        iYLoc = y;
+        iDataProc = dataProc;
+        iAnnotsShown.clear();
+        updateImagePlus();
+    }
+
+    private static int parseTime(String title) {
+        String s = title.split(" @")[0];
+        int k = s.lastIndexOf("-t");
+        s = s.substring(k + 2);
+        return Integer.parseInt(s);
+    }
+
     protected void updateImagePlus() {
         byte [] bpix = (byte [])iDataProc.getPixels();
         byte [] R = new byte[bpix.length];
@@ -69,10 +69,7 @@ public class AuxImageWindowYZ extends JFrame {
         iNucleiMgr = iAceTree.getNucleiMgr();
         iZPixRes = iNucleiMgr.getZPixRes();
         //iTime = Integer.parseInt((iTitle.split("@"))[0]);
-        String s = iTitle.split(" @")[0];
-        int k = s.lastIndexOf("-t");
-        s = s.substring(k + 2);
-        iTime = Integer.parseInt(s);
+        iTime = parseTime(iTitle);
         iDataProc = dataProc; 
         iImgPlus = new ImagePlus();
         /*note I have set default behavior to not display circles 
@@ -111,6 +108,27 @@ public class AuxImageWindowYZ extends JFrame {
         iImgCanvas.addMouseListener(iMouseHandler);
     }
     
+    /**
+     * shows another slice in this window, as DepthViews does when its
+     * time or location changes
+     */
+    public void setSlice(String title, ImageProcessor dataProc, int x) {
+        iTitle = title;
+        setTitle(title);
+        iTime = parseTime(title);
+        iXLoc = x;
+        iDataProc = dataProc;
+        iAnnotsShown.clear();
+        updateImagePlus();
+    }
+
+    private static int parseTime(String title) {
+        String s = title.split(" @")[0];
+        int k = s.lastIndexOf("-t");
+        s = s.substring(k + 2);
+        return Integer.parseInt(s);
+    }
+
     private void updateImagePlus() {
         byte [] bpix = (byte [])iDataProc.getPixels();
         byte [] R = new byte[bpix.length];
@@ -15,10 +15,6 @@ import java.awt.Dimension;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.ByteArrayInputStream;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.zip.ZipEntry;
 
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
@@ -31,12 +27,13 @@ import javax.swing.SpinnerModel;
 import javax.swing.SpinnerNumberModel;
 import javax.swing.WindowConstants;
 import javax.swing.border.Border;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 import org.rhwlab.acetree.AceTree;
 import org.rhwlab.image.AuxImageWindowXZ;
 import org.rhwlab.image.AuxImageWindowYZ;
 import org.rhwlab.image.ImageWindow;
-import org.rhwlab.image.ZipImage;
 import org.rhwlab.snight.NucleiMgr;
 import java.lang.Math;
 /**
@@ -52,6 +49,8 @@ public class DepthViews extends JPanel implements ActionListener {
     JSpinner    iXYLocation;
     JButton     iXZView;
     JButton     iYZView;
+    AuxImageWindowXZ    iXZWindow;
+    AuxImageWindowYZ    iYZWindow;
 
     AceTree     iAceTree;
     NucleiMgr   iNucleiMgr;
@@ -93,6 +92,14 @@ public class DepthViews extends JPanel implements ActionListener {
         iXZView = new JButton("XZ View");
         iXZView.addActionListener(this);
         add(iXZView);
+        ChangeListener cl = new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                updateViews();
+            }
+        };
+        iTime.addChangeListener(cl);
+        iXYLocation.addChangeListener(cl);
     }
 
     private void yzView(int time, int x) {
@@ -100,32 +107,40 @@ public class DepthViews extends JPanel implements ActionListener {
         println("yzView, " + iplus.getWidth() + CS + iplus.getHeight() + CS + ImageWindow.cImageHeight + CS + iNucleiMgr.getPlaneEnd());
         ImageProcessor iproc = iplus.getProcessor();
         String s2 = iImageName +" @ x = " + x;
-        new AuxImageWindowYZ(s2, iproc, iAceTree, x);
+        iYZWindow = new AuxImageWindowYZ(s2, iproc, iAceTree, x);
     }
 
     private void xzView(int time, int y) {
         ImagePlus iplus = getOneXZ(time, y);
         ImageProcessor iproc = iplus.getProcessor();
         String s2 = iImageName +" @ y=" + y;
-        new AuxImageWindowXZ(s2, iproc, iAceTree, y);
+        iXZWindow = new AuxImageWindowXZ(s2, iproc, iAceTree, y);
 
     }
 
+    /**
+     * cuts new slices into the last views opened when the time or
+     * location changes
+     */
+    private void updateViews() {
+        int time = ((Integer)(iTime.getValue())).intValue();
+        int xy = ((Integer)(iXYLocation.getValue())).intValue();
+        if (iYZWindow != null && iYZWindow.isDisplayable()) {
+            ImagePlus iplus = getOneYZ(time, xy);
+            iYZWindow.setSlice(iImageName +" @ x = " + xy, iplus.getProcessor(), xy);
+        }
+        if (iXZWindow != null && iXZWindow.isDisplayable()) {
+            ImagePlus iplus = getOneXZ(time, xy);
+            iXZWindow.setSlice(iImageName +" @ y=" + xy, iplus.getProcessor(), xy);
+        }
+    }
+
     private ImagePlus getOneYZ(int time, int x) {
-	int factor=(int)Math.round(iAceTree.getiZPixRes());
+        int factor=(int)Math.round(iAceTree.getiZPixRes());
         int planeEnd = iNucleiMgr.getPlaneEnd();
-        ByteProcessor bp = new ByteProcessor(factor * planeEnd - 1, ImageWindow.cImageHeight);
-        for (int m=1; m <= planeEnd; m++) {
-            ImageProcessor ip = getImage(time, m);
-            if (ip == null) break;
-            //println("test2: " + ip);
-            for (int i=0; i < ip.getHeight(); i++) {
-                int p = ip.getPixel(x, i);
-                for (int k=0; k < factor; k++) {
-                    bp.putPixel(k + m*factor, i, p);
-                }
-            }
-        }
+        Volume v = Volume.getVolume(iAceTree, time, planeEnd);
+        iImageName = v.getImageName();
+        ByteProcessor bp = v.getYZ(x, factor, ImageWindow.cImageHeight, planeEnd);
         String s = time + "_" + x;
         ImagePlus iplus = new ImagePlus(s, bp);
         return iplus;
@@ -133,87 +148,17 @@ public class DepthViews extends JPanel implements ActionListener {
     }
 
     private ImagePlus getOneXZ(int time, int y) {
-	int factor=(int)Math.round(iAceTree.getiZPixRes());
+        int factor=(int)Math.round(iAceTree.getiZPixRes());
         int planeEnd = iNucleiMgr.getPlaneEnd();
-        ByteProcessor bp = new ByteProcessor(ImageWindow.cImageWidth,factor * planeEnd - 1);
-        for (int m=1; m <= planeEnd; m++) {
-            ImageProcessor ip = getImage(time, m);
-            if (ip == null) break;
-            println("test2: " + ip + CS + time + CS + m + CS + planeEnd);
-
-            for (int i=0; i < ip.getWidth(); i++) {
-                int p = ip.getPixel(i, y);
-                for (int k=0; k < factor; k++) {
-                    bp.putPixel(i, k + m*factor, p);
-                    //bp.putPixel(k + m*11, i, p);
-                }
-            }
-        }
+        Volume v = Volume.getVolume(iAceTree, time, planeEnd);
+        iImageName = v.getImageName();
+        ByteProcessor bp = v.getXZ(y, factor, ImageWindow.cImageWidth, planeEnd);
         String s = time + "_" + y;
         ImagePlus iplus = new ImagePlus(s, bp);
         return iplus;
 
     }
 
-    private ImageProcessor getImage(int time, int plane) {
-        String imageFile = ImageWindow.cZipTifFilePath;
-        imageFile += "/" + ImageWindow.cTifPrefix;
-        imageFile += iAceTree.makeImageName(time, plane);
-        int k = imageFile.lastIndexOf("/");
-        String s = imageFile.substring(k + 1);
-        k = s.lastIndexOf("-");
-        s = s.substring(0, k);
-        //println("getImage: " + s);
-        iImageName = s;
-        ImageProcessor ip = getRedData(imageFile);
-        return ip;
-    }
-
-    private ImageProcessor getRedData(String greenName) {
-        //System.out.println("getRedData: " + greenName + C.CS + ImageWindow.cUseZip);
-        if (ImageWindow.cUseZip == 2) return getRedZipData(greenName);
-        FileInputStream fis;
-        ImagePlus ip = null;
-        //String ss = "/home/biowolp/AncesTree/temp2/images/050405-t050-p15.tif";
-        try {
-            fis = new FileInputStream(greenName);
-            byte [] ba = ImageWindow.readByteArray(fis);
-            ip = ImageWindow.openTiff(new ByteArrayInputStream(ba), false);
-            fis.close();
-	    if(ImageWindow.imagewindowUseStack==1) {
-		int markerChannel=1;
-		ip=ImageWindow.splitImage(ip,markerChannel);
-	    }
-            //ip = readData(fis);
-        } catch(IOException ioe) {
-            //System.out.println("ImageWindow.test3 exception ");
-            //System.out.println(ioe);
-        }
-        if (ip != null) return ip.getProcessor();
-        else return null;
-    }
-
-
-    private ImageProcessor getRedZipData(String redName) {
-        ZipImage zipImage = new ZipImage(redName);
-        int k1 = redName.lastIndexOf("/") + 1;
-        String ss = redName.substring(k1);
-        int k2 = ss.indexOf(".");
-        ss = ss.substring(0, k2);
-        //System.out.println("using: " + ss);
-        ZipEntry ze = null;
-        if (zipImage != null) ze = zipImage.getZipEntry(ss + ".tif");
-        //System.out.println("ZipEntry: " + ze);
-        //if (cZipImage == null) cZipImage = new ZipImage(cZipTifFilePath);
-        //ZipEntry ze = cZipImage.getZipEntry(s);
-        ImagePlus ip = null;
-        ip = zipImage.readData(ze, true);
-        if (ip != null) return ip.getProcessor();
-        else return null;
-    }
-
-
-
     public void showMe() {
         //iFrame = new JFrame(iLog.iTitle);
         iFrame.setTitle("DepthViews");
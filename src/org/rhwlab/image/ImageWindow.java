@@ -32,7 +32,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.IllegalArgumentException;
 import java.util.Enumeration;
+import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Vector;
 import java.util.zip.ZipEntry;
 
@@ -61,6 +63,7 @@ import ij.process.ByteProcessor;
 import ij.process.ColorProcessor;
 import ij.process.ImageConverter;
 import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
@@ -126,6 +129,8 @@ public class  ImageWindow extends JFrame implements  KeyListener, Runnable {
     int                     iImagePlane;
     int                     iPlaneInc;
     boolean                 iIsMainImgWindow;
+    int                     iLastTime;    // time and plane last shown, for prefetching
+    int                     iLastPlane;
     boolean                 iIsRightMouseButton;
     boolean                 iSaveImage;
     boolean                 iSaveInProcess;
@@ -164,6 +169,9 @@ public class  ImageWindow extends JFrame implements  KeyListener, Runnable {
     public static String        cTifPrefixR;
     public static int           cUseZip;
     static ZipImage             cZipImage;
+    static PlaneCache           cPlaneCache;
+    static byte []              cZeros;
+    static Hashtable<Long, byte []> cGray8Tables = new Hashtable<Long, byte []>();
     public static NucleiMgr     cNucleiMgr;
     public static int           cImageWidth;
     public static int           cImageHeight;
@@ -443,16 +451,44 @@ public class  ImageWindow extends JFrame implements  KeyListener, Runnable {
 			s = s.replaceAll("tif", "jpg");
         //println("ImageWindow.doMakeImageFromTif entered: " + s);
         cCurrentImagePart = s;
-        //FileInputStream fis;
+        int [] contrast = getContrast();
+        String key = makePlaneKey(s, imagewindowUseStack, imagewindowPlaneNumber, iSplit, contrast);
+        PlaneCache.Plane plane = null;
+        // the first image of a stack sets the contrast so it is always read
+        if (!setOriginalContrastValues) plane = getPlaneCache().get(key);
+        if (plane == null) {
+            ImagePlus ip = openPlane(s, imagewindowUseStack, imagewindowPlaneNumber);
+            if (ip != null) {
+                cImageWidth = ip.getWidth();
+                cImageHeight = ip.getHeight();
+                //System.out.println("Loaded image width, height: "+cImageWidth+CS+cImageHeight);
+                plane = convertToRGB(ip, s, imagewindowUseStack, iSplit, contrast, true);
+                getPlaneCache().put(makePlaneKey(s, imagewindowUseStack, imagewindowPlaneNumber, iSplit, contrast), plane);
+            }
+        }
+
+        ImagePlus ip;
+        if (plane != null) {
+            ip = buildImagePlus(plane);
+        } else {
+            ip = new ImagePlus();
+            ImageProcessor iproc = new ColorProcessor(cImageWidth, cImageHeight);
+            ip.setProcessor(s, iproc);
+        }
+
+        return ip;
+    }
+
+    private static ImagePlus openPlane(String s, int useStack, int planeNumber) {
         ImagePlus ip = null;
         String ss = cZipTifFilePath + C.Fileseparator + s;
         //println("ImageWindow.makeImage entered: " + ss);
         
         //System.out.println("ImageWindow using stack: "+imagewindowUseStack);
-	    if (imagewindowUseStack == 1){
+	    if (useStack == 1){
 	    	//System.out.println("ImageWindow doMakeImageFromTif using stack: 1");
 	    	try {
-	    		ip = new Opener().openImage(ss, imagewindowPlaneNumber);
+	    		ip = StackReader.openImage(ss, planeNumber);
 	    	} catch (IllegalArgumentException iae) {
 	    		System.out.println("Exception in ImageWindow.doMakeImageFromTif(String)");
             	System.out.println("TIFF file required.");
@@ -462,19 +498,92 @@ public class  ImageWindow extends JFrame implements  KeyListener, Runnable {
 	    	//System.out.println("ImageWindow doMakeImageFromTif using stack: 0");
 	    	ip = new Opener().openImage(ss);
 	    }
-   
-        if (ip != null) {
-            cImageWidth = ip.getWidth();
-            cImageHeight = ip.getHeight();
-            //System.out.println("Loaded image width, height: "+cImageWidth+CS+cImageHeight);
-            ip = convertToRGB(ip);
-        } else {
-            ip = new ImagePlus();
-            ImageProcessor iproc = new ColorProcessor(cImageWidth, cImageHeight);
-            ip.setProcessor(s, iproc);
+	    return ip;
+    }
+
+    /**
+     * reads and converts a tif for the PlaneCache worker; unlike
+     * doMakeImageFromTif it leaves the static image state alone
+     * @return the plane, or null if there is no such image
+     */
+    static PlaneCache.Plane readPlane(String s, int useStack, int planeNumber, int split, int [] contrast) {
+        if (!new File(cZipTifFilePath + C.Fileseparator + s).exists()) return null;
+        ImagePlus ip = openPlane(s, useStack, planeNumber);
+        if (ip == null) return null;
+        return convertToRGB(ip, s, useStack, split, contrast, false);
+    }
+
+    public static PlaneCache getPlaneCache() {
+        if (cPlaneCache == null) {
+            long budget = Math.min(PLANECACHEMAX, Runtime.getRuntime().maxMemory() / 4);
+            cPlaneCache = new PlaneCache(budget);
         }
+        return cPlaneCache;
+    }
 
-        return ip;
+    /**
+     * the contrast settings a 16 bit stack plane is converted with
+     */
+    private static int [] getContrast() {
+        return new int [] {contrastmin1, contrastmax1, contrastmin2, contrastmax2};
+    }
+
+    /**
+     * everything a decoded plane depends on; the plane number and the
+     * contrast only matter for stacks, which are converted to 8 bits
+     * with the contrast applied
+     */
+    private static String makePlaneKey(String s, int useStack, int planeNumber, int split, int [] contrast) {
+        StringBuffer sb = new StringBuffer(cZipTifFilePath);
+        sb.append(C.Fileseparator).append(s);
+        if (useStack == 1) {
+            sb.append(CS).append(planeNumber).append(CS).append(cSplitChannelImage).append(CS).append(split);
+            for (int i=0; i < contrast.length; i++) sb.append(CS).append(contrast[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * prefetches the planes following the one at time, plane in the
+     * direction the display last moved; both directions are fetched
+     * when it has not moved
+     */
+    protected void prefetchPlanes(int time, int plane) {
+        if (cUseZip != 0 && cUseZip != 3) return;
+        if (iAceTree == null || setOriginalContrastValues) return;
+        int dt = Integer.signum(time - iLastTime);
+        int dp = Integer.signum(plane - iLastPlane);
+        iLastTime = time;
+        iLastPlane = plane;
+        int planeEnd = cNucleiMgr != null ? cNucleiMgr.getPlaneEnd() : Integer.MAX_VALUE;
+        int [] contrast = getContrast();
+        LinkedList<PlaneCache.Request> requests = new LinkedList<PlaneCache.Request>();
+        for (int k=1; k <= PREFETCH; k++) {
+            if (dt != 0 || dp == 0) {
+                addPlaneRequest(requests, time + k * (dt != 0 ? dt : 1), plane, contrast);
+                if (dt == 0 && k == 1) addPlaneRequest(requests, time - 1, plane, contrast);
+            }
+            if (dp != 0 || dt == 0) {
+                int p = plane + k * (dp != 0 ? dp : 1);
+                if (p <= planeEnd) addPlaneRequest(requests, time, p, contrast);
+                if (dp == 0 && k == 1 && plane > 1) addPlaneRequest(requests, time, plane - 1, contrast);
+            }
+        }
+        getPlaneCache().prefetch(requests);
+    }
+
+    private void addPlaneRequest(LinkedList<PlaneCache.Request> requests, int time, int plane, int [] contrast) {
+        if (time < 1 || plane < 1) return;
+        String s = cTifPrefix + iAceTree.makeImageName(time, plane);
+        if (cUseZip == 3) s = s.replaceAll("tif", "jpg");
+        PlaneCache.Request r = new PlaneCache.Request();
+        r.iPart = s;
+        r.iUseStack = imagewindowUseStack;
+        r.iPlane = plane;
+        r.iSplit = iSplit;
+        r.iContrast = contrast;
+        r.iKey = makePlaneKey(s, r.iUseStack, plane, r.iSplit, contrast);
+        requests.add(r);
     }
 
     @SuppressWarnings("unused")
@@ -580,21 +689,33 @@ public class  ImageWindow extends JFrame implements  KeyListener, Runnable {
      * so the program is always showing RGB images
      *
      * @param ip an Image processor obtained from the image file
+     * @param s the part of the image file name used to find the red image
+     * @param contrast display range of red and green used for 16 bit images
+     * @param setContrast true to take the contrast from the image if it
+     * has not been set yet, updating contrast
      * @return
      */
     @SuppressWarnings("unused")
-	private static ImagePlus convertToRGB(ImagePlus ip) {
+	private static PlaneCache.Plane convertToRGB(ImagePlus ip, String s, int useStack, int split,
+	        int [] contrast, boolean setContrast) {
     	//System.out.println("Image width, height: "+ip.getWidth()+CS+ip.getHeight());
         //System.out.println("convertToRGB entered");
     	// this is where ted put code for splitting which need to test
 
         // this is a check for whether we are using 8bit (useStack = 0) or 16bit (useStack = 1)
-		if(imagewindowUseStack == 1) {
+		if(useStack == 1) {
+			ImageProcessor iproc = ip.getProcessor();
+			if (iproc instanceof ShortProcessor && ImageConverter.getDoScaling()
+			        && !(setContrast && setOriginalContrastValues)
+			        && validRange(contrast[0], contrast[1]) && validRange(contrast[2], contrast[3])) {
+				return convertShortsToRGB((short [])iproc.getPixels(), iproc.getWidth(), iproc.getHeight(),
+				        cSplitChannelImage == 1 && split == 1, contrast);
+			}
+
 			FileInfo fi = new FileInfo();
 	    	fi = ip.getFileInfo();
 			//need this
 			
-			ImageProcessor iproc = ip.getProcessor();
 			
 			iproc.flipHorizontal();
 			
@@ -602,7 +723,7 @@ public class  ImageWindow extends JFrame implements  KeyListener, Runnable {
 			int ipwidth = iproc.getWidth();
 			int ipheight = iproc.getHeight();
 			//System.out.println("cSplitChannelImage: "+cSplitChannelImage);
-			if (cSplitChannelImage == 1 && iSplit == 1) {
+			if (cSplitChannelImage == 1 && split == 1) {
 				pixelCount /= 2;
 				ipwidth /= 2;
 			}
@@ -610,11 +731,9 @@ public class  ImageWindow extends JFrame implements  KeyListener, Runnable {
 			byte [] G = new byte[pixelCount];
 			byte [] R = new byte[pixelCount]; 
 			byte [] B = new byte[pixelCount];
-			
-			ColorProcessor iproc3 = new ColorProcessor(ipwidth, ipheight);
 
 			// this indicates 16bit images are present (because useStack = 1), *and* they should be split into two channels
-			if (cSplitChannelImage == 1 && iSplit == 1) {
+			if (cSplitChannelImage == 1 && split == 1) {
 				iproc.setRoi(new Rectangle(ip.getWidth()/2, 0, ip.getWidth()/2, ip.getHeight()));
 				ImageProcessor croppedR = iproc.crop();
 				ImagePlus croppedIPR = new ImagePlus(ip.getTitle(), croppedR);
@@ -623,7 +742,7 @@ public class  ImageWindow extends JFrame implements  KeyListener, Runnable {
 				ImageProcessor croppedG = iproc.crop();
 				ImagePlus croppedIPG = new ImagePlus(ip.getTitle(), croppedG);
 				
-				if (setOriginalContrastValues){
+				if (setContrast && setOriginalContrastValues){
 	    			// Set contrast values from original image
 	    			int ipminred = (int)(croppedIPR.getDisplayRangeMin());
 	    			int ipmaxred = (int)(croppedIPR.getDisplayRangeMax());
@@ -636,12 +755,16 @@ public class  ImageWindow extends JFrame implements  KeyListener, Runnable {
 	    			System.out.println("ImageWindow set Green min, max from image: "+ipmingre+CS+ipmaxgre);
 	                ImageWindow.contrastmin2 = ipmingre;
 	                ImageWindow.contrastmax2 = ipmaxgre;
+	                contrast[0] = ipminred;
+	                contrast[1] = ipmaxred;
+	                contrast[2] = ipmingre;
+	                contrast[3] = ipmaxgre;
 	                
 	                setOriginalContrastValues = false;
 	    		}
 				
-				croppedIPR.setDisplayRange(contrastmin1, contrastmax1);
-				croppedIPG.setDisplayRange(contrastmin2, contrastmax2);
+				croppedIPR.setDisplayRange(contrast[0], contrast[1]);
+				croppedIPG.setDisplayRange(contrast[2], contrast[3]);
 				ImageConverter ic1 = new ImageConverter(croppedIPR);
 				ImageConverter ic2 = new ImageConverter(croppedIPG);
 				ic1.convertToGray8();
@@ -652,29 +775,25 @@ public class  ImageWindow extends JFrame implements  KeyListener, Runnable {
 				R = (byte [])convertedR.getPixels();
 				G = (byte [])convertedG.getPixels();
 			} else { // this option identifies the case where 16bit images should *not* be split
-				if (setOriginalContrastValues){
+				if (setContrast && setOriginalContrastValues){
 	    			// Set contrast values from original image
 	    			int ipmingre = (int)(ip.getDisplayRangeMin());
 	    			int ipmaxgre = (int)(ip.getDisplayRangeMax());
 	                System.out.println("ImageWindow set Green min, max from image: "+ipmingre+CS+ipmaxgre);
 	                ImageWindow.contrastmin2 = ipmingre;
 	                ImageWindow.contrastmax2 = ipmaxgre;                
+	                contrast[2] = ipmingre;
+	                contrast[3] = ipmaxgre;
 	                setOriginalContrastValues = false;
 	    		}
-				ip.setDisplayRange(contrastmin2, contrastmax2);
+				ip.setDisplayRange(contrast[2], contrast[3]);
 				ImageConverter ic = new ImageConverter(ip);
 				ic.convertToGray8();
 				ImageProcessor converted = ip.getProcessor();
 				G = (byte [])converted.getPixels();
 			}
-			
-			iRpix = R;
-			iGpix = G;
-			iBpix = B;
-		    iproc3.setRGB(iRpix, iGpix, iBpix);
-	        ip.setProcessor("test", iproc3);
 
-	        return ip;
+	        return new PlaneCache.Plane(R, G, B, ipwidth, ipheight);
 	    } else { // useStack = 0, so load the 8bit images
 	    	//original version
     		FileInfo fi = new FileInfo();
@@ -687,32 +806,111 @@ public class  ImageWindow extends JFrame implements  KeyListener, Runnable {
 	            
 	        ImageProcessor iproc = ip.getProcessor();
 	        byte [] bpix = (byte [])iproc.getPixels();
-	        byte [] R = new byte[bpix.length];
-	        byte [] G = new byte[bpix.length];
-	        byte [] B = new byte[bpix.length];
-	        ColorProcessor iproc3 = new ColorProcessor(iproc.getWidth(), iproc.getHeight());
-	        iproc3.getRGB(R, G, B);
-	        // special test removal
-	        G = bpix;
-	        R = getRedChannel(R);
-	        // end special
-	        iRpix = R;
-	        iGpix = G;
-	        iBpix = B;
-	        return buildImagePlus(ip);
+	        // blue, and red if there is no red image, are the shared zeros
+	        byte [] B = getZeros(bpix.length);
+	        byte [] G = bpix;
+	        byte [] R = getRedChannel(B, s, useStack);
+	        return new PlaneCache.Plane(R, G, B, iproc.getWidth(), iproc.getHeight());
 		}
     }
 
-    private static ImagePlus buildImagePlus(ImagePlus ip) {
+    /**
+     * the 16 bit path of convertToRGB in one pass over the pixels: the
+     * image is flipped left to right, split into red (right half) and
+     * green (left half) if split, and each channel scaled to 8 bits as
+     * ImageConverter.convertToGray8 scales it for the display range
+     */
+    private static PlaneCache.Plane convertShortsToRGB(short [] pix, int width, int height,
+            boolean split, int [] contrast) {
+        int w = split ? width / 2 : width;
+        byte [] R = split ? new byte[w * height] : getZeros(w * height);
+        byte [] G = new byte[w * height];
+        byte [] lutR = split ? getGray8Table(contrast[0], contrast[1]) : null;
+        byte [] lutG = getGray8Table(contrast[2], contrast[3]);
+        for (int y=0; y < height; y++) {
+            int last = y * width + width - 1;   // flipped, column x comes from last - x
+            int k = y * w;
+            for (int x=0; x < w; x++) G[k + x] = lutG[pix[last - x] & 0xffff];
+            if (!split) continue;
+            last -= width / 2;
+            for (int x=0; x < w; x++) R[k + x] = lutR[pix[last - x] & 0xffff];
+        }
+        return new PlaneCache.Plane(R, G, getZeros(w * height), w, height);
+    }
+
+    /**
+     * the display ranges convertShortsToRGB handles; ImageJ resets a
+     * range of 0, 0 to the range of the pixels, so that is left to it
+     */
+    private static boolean validRange(int min, int max) {
+        return min < max && min >= 0 && max <= MAX16BIT;
+    }
+
+    /**
+     * 16 bit value to 8 bit value for the display range min, max, as
+     * TypeConverter.convertShortToByte computes it
+     */
+    private static byte [] getGray8Table(int min, int max) {
+        Long key = Long.valueOf(((long)min << 32) | max);
+        byte [] lut = cGray8Tables.get(key);
+        if (lut != null) return lut;
+        lut = new byte[MAX16BIT + 1];
+        double scale = 256.0 / (max - min + 1);
+        for (int i=0; i <= MAX16BIT; i++) {
+            int value = i - min;
+            if (value < 0) value = 0;
+            value = (int)(value * scale + 0.5);
+            if (value > 255) value = 255;
+            lut[i] = (byte)value;
+        }
+        if (cGray8Tables.size() >= 8) cGray8Tables.clear();
+        cGray8Tables.put(key, lut);
+        return lut;
+    }
+
+    /**
+     * an array of zeros of length n, shared; it is only ever read
+     */
+    private static byte [] getZeros(int n) {
+        byte [] zeros = cZeros;
+        if (zeros == null || zeros.length != n) {
+            zeros = new byte[n];
+            cZeros = zeros;
+        }
+        return zeros;
+    }
+
+    /**
+     * the pixels of the processor of ip if they can be rewritten in place
+     * from the current channels, else null
+     */
+    private static int [] getCompositePixels(ImagePlus ip) {
+        if (ip == null || iRpix == null) return null;
         ImageProcessor iproc = ip.getProcessor();
-        ColorProcessor iproc3 = new ColorProcessor(iproc.getWidth(), iproc.getHeight());
+        if (!(iproc instanceof ColorProcessor)) return null;
+        int [] pixels = (int [])iproc.getPixels();
+        if (pixels.length != iRpix.length || pixels.length != iGpix.length) return null;
+        return pixels;
+    }
+
+    private static ImagePlus buildImagePlus(PlaneCache.Plane plane) {
+        iRpix = plane.iR;
+        iGpix = plane.iG;
+        iBpix = plane.iB;
+        ColorProcessor iproc3 = new ColorProcessor(plane.iWidth, plane.iHeight);
         iproc3.setRGB(iRpix, iGpix, iBpix);
+        ImagePlus ip = new ImagePlus();
         ip.setProcessor("test", iproc3);
         return ip;
 
     }
 
     protected static ImagePlus makeRedImagePlus(ImagePlus ip) {
+        int [] pixels = getCompositePixels(ip);
+        if (pixels != null) {
+            for (int i=0; i < pixels.length; i++) pixels[i] = 0xff000000 | (iRpix[i] & 0xff) << 16;
+            return ip;
+        }
         ImageProcessor iproc = ip.getProcessor();
         ColorProcessor iproc3 = new ColorProcessor(iproc.getWidth(), iproc.getHeight());
         iproc3.setRGB(iRpix, new byte[iRpix.length], new byte[iRpix.length]);
@@ -721,6 +919,11 @@ public class  ImageWindow extends JFrame implements  KeyListener, Runnable {
     }
 
     protected static ImagePlus makeGreenImagePlus(ImagePlus ip) {
+        int [] pixels = getCompositePixels(ip);
+        if (pixels != null) {
+            for (int i=0; i < pixels.length; i++) pixels[i] = 0xff000000 | (iGpix[i] & 0xff) << 8;
+            return ip;
+        }
         ImageProcessor iproc = ip.getProcessor();
         //System.out.println("makeGreenImagePlus: " + iproc);
         ColorProcessor iproc3 = new ColorProcessor(iproc.getWidth(), iproc.getHeight());
@@ -731,6 +934,14 @@ public class  ImageWindow extends JFrame implements  KeyListener, Runnable {
     }
 
     protected static ImagePlus makePlainImagePlus(ImagePlus ip) {
+        int [] pixels = getCompositePixels(ip);
+        if (pixels != null) {
+            for (int i=0; i < pixels.length; i++) {
+                int r = cAcbTree ? iRpix[i] & 0xff : 0;
+                pixels[i] = 0xff000000 | (r << 16) | (r << 8) | r;
+            }
+            return ip;
+        }
         ImageProcessor iproc = ip.getProcessor();
         ColorProcessor iproc3 = new ColorProcessor(iproc.getWidth(), iproc.getHeight());
         if (cAcbTree) {
@@ -750,15 +961,15 @@ public class  ImageWindow extends JFrame implements  KeyListener, Runnable {
 
 
     @SuppressWarnings("unused")
-	private static byte[] getRedChannel(byte [] R) {
-        String fileName = makeRedChannelName();
+	private static byte[] getRedChannel(byte [] R, String part, int useStack) {
+        String fileName = makeRedChannelName(part);
         //System.out.println("getRedChannel: " + fileName);
         File f = new File(fileName);
         if (f.exists()) {
             FileInputStream fis;
             ImagePlus ip = null;
            
-	    	if (imagewindowUseStack==1){
+	    	if (useStack==1){
 	    ip = new Opener().openImage(fileName,imagewindowPlaneNumber);
 		}
 	    else{
@@ -785,14 +996,14 @@ public class  ImageWindow extends JFrame implements  KeyListener, Runnable {
         return R;
     }
 
-    private static String makeRedChannelName() {
+    private static String makeRedChannelName(String part) {
         // 20071108 rehacked this because windows vista was very picky
         // and backslashes were plagueing me
         // the green parsing was working so I created cCurrentImagePart
         // to go from there to red by substituting "tifR" for "tif"
         String s = cCurrentImageFile;
         //int k = s.indexOf(cTifPrefix) + cTifPrefix.length();
-        String ss = cCurrentImagePart;
+        String ss = part;
         //System.out.println("getRedChannelName, " + ss);
         ss = ss.substring(3);
         //System.out.println("getRedChannelName, " + ss);
@@ -1095,6 +1306,7 @@ public class  ImageWindow extends JFrame implements  KeyListener, Runnable {
 
         ip = makeImage(imageName);
         currentImage = ip;
+        if (iIsMainImgWindow) prefetchPlanes(iImageTime + iTimeInc, imagewindowPlaneNumber);
 
         if (ip == null) {
             iAceTree.pausePlayerControl();
@@ -1846,9 +2058,14 @@ public class  ImageWindow extends JFrame implements  KeyListener, Runnable {
 
     private static final int
     DATA_BLOCK_SIZE  = 2048
+   ,PREFETCH = 3
    //,LINEWIDTH = 1
    ;
 
+    private static final long
+    PLANECACHEMAX = 512L * 1024 * 1024
+   ;
+
     public static final int
          NCENTROID = 0
         ,SCENTROID = 1
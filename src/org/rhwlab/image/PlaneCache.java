@@ -0,0 +1,149 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.image;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * decoded image planes kept so playback and plane stepping need not wait
+ * on the disk for a plane seen recently or fetched ahead
+ * <br>a plane is the red, green and blue bytes ImageWindow builds from
+ * one tif (or one plane of a stack tif); planes are dropped least
+ * recently used first once their total size passes the budget
+ * <br>prefetch() decodes planes on a single worker thread; a new
+ * prefetch replaces the planes of an earlier one not yet started, so
+ * the worker follows the current direction of travel
+ */
+public class PlaneCache {
+    LinkedHashMap<String, Plane>    iPlanes;
+    long                            iBytes;
+    long                            iBudget;
+    LinkedList<Request>             iPending;
+    ThreadPoolExecutor              iExecutor;
+    boolean                         iWorking;
+
+    public PlaneCache(long budget) {
+        iBudget = budget;
+        iPlanes = new LinkedHashMap<String, Plane>(64, 0.75f, true);
+        iPending = new LinkedList<Request>();
+        iExecutor = new ThreadPoolExecutor(1, 1, 5, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "PlaneCache");
+                        t.setDaemon(true);
+                        t.setPriority(Thread.NORM_PRIORITY - 1);
+                        return t;
+                    }
+                });
+        iExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the plane, or null if it is not in the cache
+     */
+    public synchronized Plane get(String key) {
+        return iPlanes.get(key);
+    }
+
+    public synchronized void put(String key, Plane plane) {
+        Plane old = iPlanes.put(key, plane);
+        if (old != null) iBytes -= old.bytes();
+        iBytes += plane.bytes();
+        Iterator<Map.Entry<String, Plane>> it = iPlanes.entrySet().iterator();
+        while (iBytes > iBudget && iPlanes.size() > 1 && it.hasNext()) {
+            Map.Entry<String, Plane> e = it.next();
+            if (e.getKey().equals(key)) continue;
+            iBytes -= e.getValue().bytes();
+            it.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        iPlanes.clear();
+        iPending.clear();
+        iBytes = 0;
+    }
+
+    /**
+     * queues the given planes for decoding, nearest first, dropping
+     * whatever an earlier call queued and the worker has not yet begun
+     */
+    public void prefetch(LinkedList<Request> requests) {
+        synchronized(this) {
+            iPending.clear();
+            for (Request r : requests) {
+                if (!iPlanes.containsKey(r.iKey)) iPending.add(r);
+            }
+            if (iPending.isEmpty() || iWorking) return;
+            iWorking = true;
+        }
+        iExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    Request r;
+                    synchronized(PlaneCache.this) {
+                        r = iPending.poll();
+                        if (r == null) {
+                            iWorking = false;
+                            return;
+                        }
+                        if (iPlanes.containsKey(r.iKey)) continue;
+                    }
+                    Plane p = null;
+                    try {
+                        p = ImageWindow.readPlane(r.iPart, r.iUseStack, r.iPlane, r.iSplit, r.iContrast);
+                    } catch(Exception e) {
+                        // left for the display to read, and report, if it is shown
+                    }
+                    if (p != null) put(r.iKey, p);
+                }
+            }
+        });
+    }
+
+    /**
+     * the pixels of one decoded plane; never changed once made
+     */
+    public static class Plane {
+        public final byte []    iR;
+        public final byte []    iG;
+        public final byte []    iB;
+        public final int        iWidth;
+        public final int        iHeight;
+
+        public Plane(byte [] r, byte [] g, byte [] b, int width, int height) {
+            iR = r;
+            iG = g;
+            iB = b;
+            iWidth = width;
+            iHeight = height;
+        }
+
+        long bytes() {
+            return (long)iR.length + iG.length + iB.length;
+        }
+    }
+
+    /**
+     * a plane to prefetch, with the settings it is to be decoded with
+     */
+    public static class Request {
+        String      iKey;
+        String      iPart;
+        int         iUseStack;
+        int         iPlane;
+        int         iSplit;
+        int []      iContrast;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.image;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.io.FileInfo;
+import ij.io.FileOpener;
+import ij.io.TiffDecoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * reads single planes of multi page tiffs, as Opener.openImage(path, n)
+ * does, without opening the file and walking its directory for every
+ * plane
+ * <br>the directory of a stack is read once and kept with an open
+ * FileChannel; a plane is then read with positional reads, which are
+ * safe from the PlaneCache worker as well as the event thread
+ * <br>at most MAXOPEN stacks are kept, the least recently used is closed
+ * first; a stack whose file changed on disk is read again
+ * <br>a stack is taken for the length of each read; one dropped while
+ * taken, by another thread opening more stacks or by closeAll, has its
+ * channel closed only when the last read gives it back
+ */
+public class StackReader {
+    private static LinkedHashMap<String, Stack> cStacks =
+        new LinkedHashMap<String, Stack>(16, 0.75f, true);
+
+    /**
+     * opens plane n (one based) of the tiff at path
+     * @return the plane, or null if the tiff could not be read
+     * @throws IllegalArgumentException if n is not a plane of the stack
+     */
+    public static ImagePlus openImage(String path, int n) {
+        Stack stack;
+        try {
+            stack = getStack(path);
+        } catch(IOException e) {
+            String msg = e.getMessage();
+            if (msg == null || msg.equals("")) msg = "" + e;
+            IJ.error("TiffDecoder", msg);
+            return null;
+        }
+        if (stack == null) return null;
+        try {
+            return openImage(stack, n);
+        } finally {
+            done(stack);
+        }
+    }
+
+    private static ImagePlus openImage(Stack stack, int n) {
+        FileInfo [] info = stack.iInfo;
+        // this follows Opener.openTiff(String, int)
+        FileInfo fi = (FileInfo)info[0].clone();
+        if (info.length == 1 && fi.nImages > 1) {
+            if (n < 1 || n > fi.nImages)
+                throw new IllegalArgumentException("N out of 1-" + fi.nImages + " range");
+            long size = fi.width * fi.height * fi.getBytesPerPixel();
+            fi.longOffset = fi.getOffset() + (n - 1) * (size + fi.gapBetweenImages);
+            fi.offset = 0;
+            fi.nImages = 1;
+        } else {
+            if (n < 1 || n > info.length)
+                throw new IllegalArgumentException("N out of 1-" + info.length + " range");
+            fi.longOffset = info[n - 1].getOffset();
+            fi.offset = 0;
+            fi.stripOffsets = info[n - 1].stripOffsets;
+            fi.stripLengths = info[n - 1].stripLengths;
+        }
+        fi.inputStream = new ChannelStream(stack.iChannel);
+        return new FileOpener(fi).open(false);
+    }
+
+    /**
+     * the stack of the tiff at path, taken until it is given back with done
+     */
+    private static synchronized Stack getStack(String path) throws IOException {
+        File f = new File(path);
+        String key = f.getAbsolutePath();
+        Stack s = cStacks.get(key);
+        if (s != null && (s.iModified != f.lastModified() || s.iLength != f.length())) {
+            cStacks.remove(key);
+            drop(s);
+            s = null;
+        }
+        if (s == null) {
+            TiffDecoder td = new TiffDecoder(f.getParent() + File.separator, f.getName());
+            if (IJ.debugMode) td.enableDebugging();
+            FileInfo [] info = td.getTiffInfo();
+            if (info == null) return null;
+            s = new Stack();
+            s.iInfo = info;
+            s.iModified = f.lastModified();
+            s.iLength = f.length();
+            s.iChannel = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+            cStacks.put(key, s);
+            Iterator<Map.Entry<String, Stack>> it = cStacks.entrySet().iterator();
+            while (cStacks.size() > MAXOPEN && it.hasNext()) {
+                Stack old = it.next().getValue();
+                it.remove();
+                drop(old);
+            }
+        }
+        s.iUsers++;
+        return s;
+    }
+
+    private static synchronized void done(Stack s) {
+        s.iUsers--;
+        if (s.iDropped && s.iUsers == 0) s.close();
+    }
+
+    public static synchronized void closeAll() {
+        for (Stack s : cStacks.values()) drop(s);
+        cStacks.clear();
+    }
+
+    // out of the map; closed now, or by the done of its last read
+    private static void drop(Stack s) {
+        s.iDropped = true;
+        if (s.iUsers == 0) s.close();
+    }
+
+    private static class Stack {
+        FileInfo []     iInfo;
+        FileChannel     iChannel;
+        long            iModified;
+        long            iLength;
+        int             iUsers;
+        boolean         iDropped;
+
+        void close() {
+            try {
+                iChannel.close();
+            } catch(IOException ioe) {
+                ioe.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * a stream from the start of the file; skip just moves the position,
+     * and close leaves the shared channel open
+     */
+    private static class ChannelStream extends InputStream {
+        FileChannel     iChannel;
+        long            iPos;
+
+        ChannelStream(FileChannel channel) {
+            iChannel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte [] b = new byte[1];
+            return read(b, 0, 1) == 1 ? b[0] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte [] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            int n = iChannel.read(ByteBuffer.wrap(b, off, len), iPos);
+            if (n <= 0) return -1;
+            iPos += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) return 0;
+            long k = Math.min(n, Math.max(iChannel.size() - iPos, 0));
+            iPos += k;
+            return k;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final int
+         MAXOPEN = 16
+        ;
+}
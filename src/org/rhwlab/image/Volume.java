@@ -0,0 +1,223 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.image;
+
+import ij.ImagePlus;
+import ij.process.ByteProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+
+import org.rhwlab.acetree.AceTree;
+
+/**
+ * the red planes of one time point held in a single array, plane after
+ * plane, so that XZ and YZ slices are cut from memory instead of from
+ * every image file of the time point
+ * <br>values are stored as ByteProcessor.putPixel would store
+ * getPixel of the plane, so the slices match those built pixel by pixel
+ * <br>the most recently used volumes are kept; see getVolume
+ */
+public class Volume {
+    byte []     iVoxels;
+    int         iWidth;
+    int         iHeight;
+    int         iDepth;     // planes read; reading stops at the first missing plane
+    String      iImageName;
+
+    private Volume() {
+    }
+
+    /**
+     * the volume of the given time, read if it is not among the last
+     * few used
+     */
+    public static synchronized Volume getVolume(AceTree aceTree, int time, int planeEnd) {
+        String key = ImageWindow.cZipTifFilePath + C_SEP + ImageWindow.cTifPrefix + C_SEP + time
+            + C_SEP + planeEnd + C_SEP + ImageWindow.cUseZip + C_SEP + ImageWindow.imagewindowUseStack;
+        for (int i=0; i < cKeys.length; i++) {
+            if (key.equals(cKeys[i])) {
+                Volume v = cVolumes[i];
+                moveToFront(i);
+                return v;
+            }
+        }
+        Volume v = read(aceTree, time, planeEnd);
+        moveToFront(cKeys.length - 1);
+        cKeys[0] = key;
+        cVolumes[0] = v;
+        return v;
+    }
+
+    private static void moveToFront(int i) {
+        String k = cKeys[i];
+        Volume v = cVolumes[i];
+        System.arraycopy(cKeys, 0, cKeys, 1, i);
+        System.arraycopy(cVolumes, 0, cVolumes, 1, i);
+        cKeys[0] = k;
+        cVolumes[0] = v;
+    }
+
+    private static Volume read(AceTree aceTree, int time, int planeEnd) {
+        Volume v = new Volume();
+        for (int m=1; m <= planeEnd; m++) {
+            ImageProcessor ip = getImage(aceTree, time, m, v);
+            if (ip == null) break;
+            if (v.iVoxels == null) {
+                v.iWidth = ip.getWidth();
+                v.iHeight = ip.getHeight();
+                v.iVoxels = new byte[v.iWidth * v.iHeight * planeEnd];
+            }
+            v.copyPlane(ip, m - 1);
+            v.iDepth = m;
+        }
+        return v;
+    }
+
+    private void copyPlane(ImageProcessor ip, int m) {
+        int w = Math.min(iWidth, ip.getWidth());
+        int h = Math.min(iHeight, ip.getHeight());
+        int off = m * iWidth * iHeight;
+        if (ip instanceof ByteProcessor && w == ip.getWidth()) {
+            byte [] pix = (byte [])ip.getPixels();
+            for (int y=0; y < h; y++) System.arraycopy(pix, y * w, iVoxels, off + y * iWidth, w);
+            return;
+        }
+        if (ip instanceof ShortProcessor) {
+            short [] pix = (short [])ip.getPixels();
+            int pw = ip.getWidth();
+            for (int y=0; y < h; y++) {
+                for (int x=0; x < w; x++) {
+                    int p = pix[y * pw + x] & 0xffff;
+                    iVoxels[off + y * iWidth + x] = (byte)(p > 255 ? 255 : p);
+                }
+            }
+            return;
+        }
+        for (int y=0; y < h; y++) {
+            for (int x=0; x < w; x++) {
+                int p = ip.getPixel(x, y);
+                iVoxels[off + y * iWidth + x] = (byte)(p > 255 ? 255 : (p < 0 ? 0 : p));
+            }
+        }
+    }
+
+    /**
+     * the slice at y seen from the side: plane m fills rows m * factor to
+     * m * factor + factor - 1 of an image width wide and
+     * factor * planeEnd - 1 high, as DepthViews has always laid it out
+     */
+    public ByteProcessor getXZ(int y, int factor, int width, int planeEnd) {
+        ByteProcessor bp = new ByteProcessor(width, factor * planeEnd - 1);
+        if (y < 0 || y >= iHeight) return bp;
+        byte [] out = (byte [])bp.getPixels();
+        int rows = bp.getHeight();
+        int n = Math.min(iWidth, width);
+        for (int m=1; m <= iDepth; m++) {
+            int from = (m - 1) * iWidth * iHeight + y * iWidth;
+            for (int k=0; k < factor; k++) {
+                int row = k + m * factor;
+                if (row >= rows) break;
+                System.arraycopy(iVoxels, from, out, row * width, n);
+            }
+        }
+        return bp;
+    }
+
+    /**
+     * the slice at x seen from the front: plane m fills columns
+     * m * factor to m * factor + factor - 1 of an image
+     * factor * planeEnd - 1 wide and height high
+     */
+    public ByteProcessor getYZ(int x, int factor, int height, int planeEnd) {
+        int width = factor * planeEnd - 1;
+        ByteProcessor bp = new ByteProcessor(width, height);
+        if (x < 0 || x >= iWidth) return bp;
+        byte [] out = (byte [])bp.getPixels();
+        int rows = Math.min(iHeight, height);
+        for (int m=1; m <= iDepth; m++) {
+            int c0 = m * factor;
+            int c1 = Math.min(c0 + factor, width);
+            if (c0 >= c1) break;
+            int from = (m - 1) * iWidth * iHeight + x;
+            for (int i=0; i < rows; i++) {
+                byte p = iVoxels[from + i * iWidth];
+                int o = i * width;
+                for (int c=c0; c < c1; c++) out[o + c] = p;
+            }
+        }
+        return bp;
+    }
+
+    /**
+     * name of the images of the time point, without the plane
+     */
+    public String getImageName() {
+        return iImageName;
+    }
+
+    private static ImageProcessor getImage(AceTree aceTree, int time, int plane, Volume v) {
+        String imageFile = ImageWindow.cZipTifFilePath;
+        imageFile += "/" + ImageWindow.cTifPrefix;
+        imageFile += aceTree.makeImageName(time, plane);
+        int k = imageFile.lastIndexOf("/");
+        String s = imageFile.substring(k + 1);
+        k = s.lastIndexOf("-");
+        s = s.substring(0, k);
+        //println("getImage: " + s);
+        v.iImageName = s;
+        ImageProcessor ip = getRedData(imageFile);
+        return ip;
+    }
+
+    private static ImageProcessor getRedData(String greenName) {
+        //System.out.println("getRedData: " + greenName + C.CS + ImageWindow.cUseZip);
+        if (ImageWindow.cUseZip == 2) return getRedZipData(greenName);
+        FileInputStream fis;
+        ImagePlus ip = null;
+        try {
+            fis = new FileInputStream(greenName);
+            byte [] ba = ImageWindow.readByteArray(fis);
+            ip = ImageWindow.openTiff(new ByteArrayInputStream(ba), false);
+            fis.close();
+            if (ip != null && ImageWindow.imagewindowUseStack == 1) {
+                int markerChannel = 1;
+                ip = ImageWindow.splitImage(ip, markerChannel);
+            }
+        } catch(IOException ioe) {
+            //System.out.println("ImageWindow.test3 exception ");
+            //System.out.println(ioe);
+        }
+        if (ip != null) return ip.getProcessor();
+        else return null;
+    }
+
+    private static ImageProcessor getRedZipData(String redName) {
+        ZipImage zipImage = new ZipImage(redName);
+        int k1 = redName.lastIndexOf("/") + 1;
+        String ss = redName.substring(k1);
+        int k2 = ss.indexOf(".");
+        ss = ss.substring(0, k2);
+        ZipEntry ze = zipImage.getZipEntry(ss + ".tif");
+        ImagePlus ip = zipImage.readData(ze, true);
+        if (ip != null) return ip.getProcessor();
+        else return null;
+    }
+
+    private static final int
+         KEEP = 2
+        ;
+
+    private static final String
+         C_SEP = "|"
+        ;
+
+    private static String []    cKeys = new String[KEEP];
+    private static Volume []    cVolumes = new Volume[KEEP];
+}
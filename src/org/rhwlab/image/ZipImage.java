@@ -20,11 +20,11 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Enumeration;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import org.rhwlab.utils.C;
+import org.rhwlab.utils.ZipPool;
 
 
 /**
@@ -37,6 +37,7 @@ import org.rhwlab.utils.C;
  */
 public class ZipImage {
     ZipFile iZipFile;
+    String  iZipPath;
 
     /**
      * Constructor called with ZipFile which in this app was
@@ -47,77 +48,76 @@ public class ZipImage {
      */
     public ZipImage(ZipFile zipFile) {
         iZipFile = zipFile;
+        iZipPath = zipFile.getName();
     }
     
     /**
-     * Constructor called with string name of the tif zip file. Only one copy of the ZipFile object
-     * is around.
+     * Constructor called with string name of the tif zip file. The
+     * ZipFile object comes from the ZipPool, so making a ZipImage for
+     * every image does not open the archive again.
      * <br>All accesses of this are confined to 
      * <code>Our_Tree3.makeImage</code>.
      */
     public ZipImage(String zipTifFilePath) {
         //System.out.println("ZipImage: " + zipTifFilePath);
-        if (iZipFile == null) {
-            try {
-                iZipFile = new ZipFile(zipTifFilePath);
-            } catch(IOException ioe) {
-                //ioe.printStackTrace();
-            }
+        iZipPath = zipTifFilePath;
+        try {
+            iZipFile = ZipPool.getZipFile(zipTifFilePath);
+        } catch(IOException ioe) {
+            //ioe.printStackTrace();
         }
     }
     
     public ZipEntry getZipEntry(String entryName) {
-        ZipEntry ze;
         if (iZipFile == null) return null;
-        Enumeration entries = iZipFile.entries();
-        // list the contents of each zipped entry
-        while (entries.hasMoreElements()) {
-          ze = (ZipEntry) entries.nextElement();
-          //System.out.println(ze.getName());
-          if (ze.getName().equals(entryName)) return ze;
+        ZipFile zf = null;
+        try {
+            // the pool may have closed or reopened the archive
+            zf = ZipPool.acquire(iZipPath);
+            iZipFile = zf;
+            return zf.getEntry(entryName);
+        } catch(IOException ioe) {
+            return null;
+        } finally {
+            if (zf != null) ZipPool.done(zf);
         }
-        return null;
     }
 
-    @SuppressWarnings("unused")
-	public ImagePlus readData(ZipEntry ze) {
-        if (ze == null) return null;
+    /**
+     * the bytes of the entry, read from the archive taken from the pool
+     * for the read so another thread cannot close it meanwhile
+     */
+    private byte [] readEntry(ZipEntry ze) {
         int byteCount;
         ByteArrayOutputStream out = new ByteArrayOutputStream();
-        byte[] buf = new byte[4096];
+        ZipFile zf = null;
         try {
-            InputStream is = iZipFile.getInputStream(ze);
+            zf = ZipPool.acquire(iZipPath);
+            InputStream is = zf.getInputStream(ze);
             byte data[] = new byte[DATA_BLOCK_SIZE];
 
             //  4. read source zipped data and write to uncompressed stream
             while ( (byteCount = is.read(data, 0, DATA_BLOCK_SIZE)) != -1) {
                 out.write(data, 0, byteCount);
             }
+            is.close();
         } catch(IOException ioe) {
             ioe.printStackTrace();
+        } finally {
+            if (zf != null) ZipPool.done(zf);
         }
-        return openTiff(new ByteArrayInputStream(out.toByteArray()));
+        return out.toByteArray();
+    }
+
+	public ImagePlus readData(ZipEntry ze) {
+        if (ze == null) return null;
+        return openTiff(new ByteArrayInputStream(readEntry(ze)));
 
     }
     
-    @SuppressWarnings("unused")
 	public ImagePlus readData(ZipEntry ze, boolean asEightBit) {
         if (ze == null) return null;
-        int byteCount;
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        byte[] buf = new byte[4096];
-        try {
-            InputStream is = iZipFile.getInputStream(ze);
-            byte data[] = new byte[DATA_BLOCK_SIZE];
-
-            //  4. read source zipped data and write to uncompressed stream
-            while ( (byteCount = is.read(data, 0, DATA_BLOCK_SIZE)) != -1) {
-                out.write(data, 0, byteCount);
-            }
-        } catch(IOException ioe) {
-            ioe.printStackTrace();
-        }
-        return openTiff(new ByteArrayInputStream(out.toByteArray()), asEightBit);
+        return openTiff(new ByteArrayInputStream(readEntry(ze)), asEightBit);
     }
     
     private ImagePlus openTiff(InputStream in, boolean asEightBit) {
@@ -286,11 +286,6 @@ public class ZipImage {
         return s;
     }
     
-    @Override
-	protected void finalize() throws IOException {
-        iZipFile.close();
-    }
-    
     public void xdelay(long delayTime) {
         long start = System.currentTimeMillis();
         long end = start + delayTime;
@@ -196,8 +196,7 @@ public class AddOneDialog extends JDialog implements ActionListener, WindowFocus
 	    updateCurrentInfo(false);
 	    int time = iImageTime + iTimeInc;
 	    Cell c = iCurrentCell;
-	    iAceTree.clearTree();
-	    iAceTree.buildTree(true);
+	    iAceTree.updateTree();
 	    //iEditLog.setModified(true);
 	    //System.out.println("actionPerformed: " + c + C.CS + time);
 	    if (c != null)
@@ -223,6 +222,8 @@ public class AddOneDialog extends JDialog implements ActionListener, WindowFocus
             Nucleus n = ImageWindow.cNucleiMgr.getNucleusFromHashkey(iCurrentCell.getHashKey(), iImageTime + iTimeInc);
             if(n==null)
             	return;
+            ImageWindow.cNucleiMgr.makeBackupNucleiRecord();
+            ImageWindow.cNucleiMgr.markEdited(iImageTime + iTimeInc);
             
             if (cmd.equals(UP)) n.y--;
             else if (cmd.equals(DOWN)) n.y++;
@@ -336,6 +337,8 @@ public class AddOneDialog extends JDialog implements ActionListener, WindowFocus
     	//if exists in range iterate over range
     	//adjust property
     	if(validrange){
+    		ImageWindow.cNucleiMgr.makeBackupNucleiRecord();
+    		ImageWindow.cNucleiMgr.markEdited(starttime, endtime);
 
     		for (int i=starttime;i<=endtime;i++){
     			n = ImageWindow.cNucleiMgr.getNucleusFromHashkey(iCurrentCell.getHashKey(), i);
@@ -412,6 +415,8 @@ public class AddOneDialog extends JDialog implements ActionListener, WindowFocus
         n.predecessor = -1;
         n.successor1 = -1;
         n.successor2 = -1;
+        ImageWindow.cNucleiMgr.makeBackupNucleiRecord();
+        ImageWindow.cNucleiMgr.markEdited(time);
         nuclei.add(n);
         iNucleus = n;
 
@@ -40,10 +40,10 @@ import javax.swing.WindowConstants;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import org.rhwlab.acetree.AceTree;
-import org.rhwlab.acetree.NucUtils;
 import org.rhwlab.image.ImageWindow;
 import org.rhwlab.snight.NucleiMgr;
 import org.rhwlab.snight.Nucleus;
+import org.rhwlab.snight.NucleusIndex;
 import org.rhwlab.tree.AncesTree;
 import org.rhwlab.tree.Cell;
 import org.rhwlab.tree.CellData;
@@ -173,7 +173,7 @@ public class DeathsAdjacencies extends JDialog implements ActionListener, ListSe
         Vector nuclei = (Vector)nuclei_record.get(iTime - 1);
         Vector nuclei2 = (Vector)nuclei_record.get(iTime);
         //iTime++; //point at the next time
-        Nucleus nn = NucUtils.getCurrentCellData(nuclei, iCellName);
+        Nucleus nn = iNucleiMgr.getCurrentCellData(iCellName, iTime);
         double zPixRes = iNucleiMgr.getZPixRes();
         int x = nn.x;
         int y = nn.y;
@@ -238,7 +238,7 @@ public class DeathsAdjacencies extends JDialog implements ActionListener, ListSe
 
         //println("iZPixRes: " + iNucleiMgr.getZPixRes());
         double zPixRes = iNucleiMgr.getZPixRes();
-        Nucleus nn = NucUtils.getCurrentCellData(nuclei, iCellName);
+        Nucleus nn = iNucleiMgr.getCurrentCellData(iCellName, iTime);
         int x1 = nn.x;
         int y1 = nn.y;
         int z1 = (int)(zPixRes * nn.z);
@@ -409,13 +409,18 @@ public class DeathsAdjacencies extends JDialog implements ActionListener, ListSe
         double zPixRes = iNucleiMgr.getZPixRes();
         //println("test1: " + iTime);
         Vector nuclei = (Vector)nuclei_record.get(iTime - 1);
+        // the index hands back, in time point order, the nuclei whose
+        // centers lie within a circle around the box tested below
+        NucleusIndex index = new NucleusIndex(nuclei);
         for (int i=0; i < nuclei.size(); i++) {
             Nucleus n1 = (Nucleus)nuclei.get(i);
             if (n1.status <= 0) continue;
             int margin = (int)Math.round(n1.size * FACTOR);
-            for (int j = 0; j < nuclei.size(); j++) {
-                if (j == i) continue;
-                Nucleus n2 = (Nucleus)nuclei.get(j);
+            if (margin < 0) continue;
+            Vector near = index.within(n1.x, n1.y, margin * 1.5);
+            for (int j = 0; j < near.size(); j++) {
+                Nucleus n2 = (Nucleus)near.get(j);
+                if (n2 == n1) continue;
                 if (n2.status <= 0) continue;
                 int xd = Math.abs(n1.x - n2.x);
                 if (xd > margin) continue;
@@ -218,6 +218,8 @@ public class EIDialog1 extends JDialog implements ActionListener, WindowFocusLis
             float z = iImagePlane + iPlaneInc;
             int prevTime = iPrevTime;
             Nucleus n = null;
+            ImageWindow.cNucleiMgr.makeBackupNucleiRecord();
+            ImageWindow.cNucleiMgr.markEdited(prevTime, time);
             for (int k=prevTime + 1; k <= time; k++) {
                 nucleiAdd = (Vector)nuclei_record.elementAt(k - 1);
 
@@ -354,8 +356,7 @@ public class EIDialog1 extends JDialog implements ActionListener, WindowFocusLis
             updateCurrentInfo(false);
             int time = iImageTime + iTimeInc;
             Cell c = iCurrentCell;
-            iAceTree.clearTree();
-            iAceTree.buildTree(true);
+            iAceTree.updateTree();
             if (c != null) iAceTree.setStartingCell(c, time);
         }
         Nucleus n = ImageWindow.cNucleiMgr.getNucleusFromHashkey(iCurrentCell.getHashKey(), iImageTime + iTimeInc);
@@ -6,8 +6,6 @@ import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.text.DecimalFormat;
-import java.util.Collections;
-import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
 
@@ -33,6 +31,7 @@ import org.rhwlab.snight.NucleiMgr;
 import org.rhwlab.snight.Nucleus;
 import org.rhwlab.tree.AncesTree;
 import org.rhwlab.tree.Cell;
+import org.rhwlab.tree.LineageIndex;
 
 
 public class Juvenesence extends JDialog implements ActionListener, ListSelectionListener{
@@ -96,101 +95,67 @@ public class Juvenesence extends JDialog implements ActionListener, ListSelectio
         //iIdentity = iNucleiMgr.getIdentity();
         //iRoot = iNucleiMgr.getRoot();
         iRoot = iAceTree.getRoot();
-        makeSortedCellNames();
+        iSortedCellNames = iAncesTree.getLineageIndex().getSortedNames();
         iLastTime = estimate350CellStage();
     }
 
-    @SuppressWarnings("unused")
-	public void lifetimesTest(double tolL, double tolH) {
+    /**
+     * reports the dividing cells whose lifetime is out of the range tolL
+     * to tolH times the lifetime of their parent, daughters before
+     * parents, in one walk of the lineage index
+     */
+    public void lifetimesTest(double tolL, double tolH) {
         println("lifetimesTest, " + tolL + CS + tolH);
         iLastTime = Integer.parseInt(iTextField.getText());
-        //Embryo a = Embryo.getEmbryoFromSeries(series);
-        Vector v = findQualifyingCellNames();
-        AncesTree ances = iAncesTree;
-        //Cell root = ances.getRoot();
-        Enumeration e = iRoot.breadthFirstEnumeration();
-        Vector base = new Vector();
-        while (e.hasMoreElements()) {
-            Cell c = (Cell)e.nextElement();
-            String name = c.getName();
-            if (v.contains(name)) base.add(name);
-        }
-        Hashtable lifetimesHash = new Hashtable();
-        for (int i=base.size() - 1; i >= 0; i--) {
-            String name = (String)base.get(i);
-            if (name.equals("Cpppa")) {
-                int kkk=0;
-            }
-            Cell c = (Cell)iCellsByName.get(name);
-            if (c.getEndTime() >= iLastTime) continue;
-            double lifetime = (c.getEndTime() - c.getTime() + 1);
-            lifetimesHash.put(name, new Double(lifetime));
+        LineageIndex li = iAncesTree.getLineageIndex();
+        boolean [] qualifying = findQualifyingCells(li);
+        boolean [] measured = new boolean[li.size()];
+        for (int k=li.size() - 1; k >= 0; k--) {
+            if (qualifying[k] && li.getEnd(k) < iLastTime) measured[k] = true;
         }
-        for (int i=base.size() - 1; i >= 0; i--) {
-            String name = (String)base.get(i);
-            //println("test, " + name);
-            //if (name.equals("P3")) {
-            //    String x = "x";
-            //}
-            Cell c = (Cell)iCellsByName.get(name);
-            Cell p = (Cell)c.getParent();
-            if (p == null) continue;
-            String pname = p.getName();
-            Object obj = lifetimesHash.get(pname);
-            if (obj == null) continue; //parent in but we dont have its lifetime
-            double pLifetime = ((Double)obj).doubleValue();
-            obj = lifetimesHash.get(name);
-            if (obj == null) continue; //parent in but we dont have its lifetime
-            double lifetime = ((Double)lifetimesHash.get(name)).doubleValue();
+        for (int k=li.size() - 1; k >= 0; k--) {
+            if (!qualifying[k]) continue;
+            int p = li.getParent(k);
+            if (p == LineageIndex.NONE) continue;
+            if (!measured[p]) continue; //parent in but we dont have its lifetime
+            if (!measured[k]) continue;
+            double pLifetime = li.getLifetime(p);
+            double lifetime = li.getLifetime(k);
             double ratio = lifetime/pLifetime;
             if (ratio < tolL || ratio > tolH) {
-
-                String s = name + CS + c.getEndTime() + CS + fmt4(ratio) + CS + fmt4(lifetime) + CS + fmt4(pLifetime);
+                String s = li.getName(k) + CS + li.getEnd(k) + CS + fmt4(ratio) + CS + fmt4(lifetime) + CS + fmt4(pLifetime);
                 println(s);
                 iListModel.addElement(s);
-
             }
-
         }
         println("lifetimesTest, exiting");
     }
 
-    private  Vector findQualifyingCellNames() {
-        Vector ans = new Vector();
-        for (int i=0; i < iSortedCellNames.size(); i++) {
-            String name = (String)iSortedCellNames.get(i);
+    /**
+     * by id, the dividing cells with a dividing parent that end by
+     * iLastTime; a cell counts only if it is the one listed under its name
+     */
+    private boolean [] findQualifyingCells(LineageIndex li) {
+        boolean [] ans = new boolean[li.size()];
+        for (int k=0; k < li.size(); k++) {
+            String name = li.getName(k);
             if (name.length() == 0) continue;
-            //if (!(name.startsWith(lineage))) continue;
-            Cell c = (Cell)iCellsByName.get(name);
-            if (c.getFateInt() != Cell.DIVIDED) continue;
-            Cell cp = (Cell)c.getParent();
-            if (cp == null) {
+            if (li.getId(name) != k) continue;
+            if (li.getFate(k) != Cell.DIVIDED) continue;
+            int p = li.getParent(k);
+            if (p == LineageIndex.NONE) {
                 println("$$$$$$$$$$$");
                 println("##### findComparableCellNames, missing parent, " + name);
                 println("***********");
+                continue;
             }
-            if (cp.getFateInt() != Cell.DIVIDED) continue;
-            int endT = c.getEndTime();
-            if (endT > iLastTime) continue;
-
-            ans.add(name);
+            if (li.getFate(p) != Cell.DIVIDED) continue;
+            if (li.getEnd(k) > iLastTime) continue;
+            ans[k] = true;
         }
         return ans;
     }
 
-
-
-    @SuppressWarnings("unused")
-	private void makeSortedCellNames() {
-        iSortedCellNames = new Vector();
-        Enumeration e = iCellsByName.keys();
-        int i = 0;
-        while (e.hasMoreElements()) {
-            iSortedCellNames.add (e.nextElement());
-        }
-        Collections.sort(iSortedCellNames);
-    }
-
     @SuppressWarnings("unused")
 	private int estimate350CellStage() {
         int stage = 355;
@@ -392,6 +357,7 @@ public class Juvenesence extends JDialog implements ActionListener, ListSelectio
     private static void println(String s) {System.out.println(s);}
     private static final DecimalFormat DF2 = new DecimalFormat("###.##");
     private static final DecimalFormat DF000 = new DecimalFormat("000");
-    private static String fmt4(double d) {return new DecimalFormat("####.####").format(d);}
+    private static final DecimalFormat DF4 = new DecimalFormat("####.####");
+    private static String fmt4(double d) {return DF4.format(d);}
 
 }
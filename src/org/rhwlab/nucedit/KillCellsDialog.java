@@ -235,6 +235,8 @@ public class KillCellsDialog extends GenericDialog {
             }
         }
         int namingMethod = AceTree.getAceTree(null).getNucleiMgr().getIdentity().getNamingMethod();
+        // candidates are consecutive time points starting at iTime
+        iNucleiMgr.markEdited(iTime, iTime + k - 1);
         for (int i=0; i < k; i++) {
              nuclei = (Vector)iCandidateCells.elementAt(i);
             Nucleus n = null;
@@ -267,8 +269,7 @@ public class KillCellsDialog extends GenericDialog {
         }
 
         if (o == iApplyAndRebuild) {
-            iAceTree.clearTree();
-            iAceTree.buildTree(true);
+            iAceTree.updateTree();
             iEditLog.setModified(true);
             AncesTree ances = iAceTree.getAncesTree();
             Hashtable h = ances.getCellsByName();
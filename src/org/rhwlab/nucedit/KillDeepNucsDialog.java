@@ -164,6 +164,7 @@ public class KillDeepNucsDialog  extends JDialog implements ActionListener {
 	private void estimateNucs(boolean implement) {
 		println("estimateNucs, " + iZLim + CS + iCount + CS + implement);
 		iCount = 0;
+		if (implement) iNucleiMgr.makeBackupNucleiRecord();
         Vector nucRec = iNucleiMgr.getNucleiRecord();
         for (int i=0; i < nucRec.size(); i++) {
         	Vector nuclei = (Vector)nucRec.get(i);
@@ -174,13 +175,13 @@ public class KillDeepNucsDialog  extends JDialog implements ActionListener {
         		if (n.z > iZLim && iFlippedImages.isSelected()) continue;
         		//println("killDeepNucs, " + i + CS + n);
         		if (implement) {
+        			iNucleiMgr.markEdited(i + 1);
         			n.status = Nucleus.NILLI;
         		} else iCount++;
         	}
         }
         if (implement) {
-            iAceTree.clearTree();
-            iAceTree.buildTree(true);
+            iAceTree.updateTree();
 
         }
 		//println("estimateNucs, " + iZLim + CS + iCount);
@@ -189,6 +189,7 @@ public class KillSublineage extends JPanel implements ActionListener {
 		
 		//int namingMethod = AceTree.getAceTree(null).getNucleiMgr().getIdentity().getNamingMethod();
 		//actual deletion
+		iNucleiMgr.markEdited(iTime, iTime + k - 1);
 		for (int i=0; i < k; i++) {
 			Vector nuclei = (Vector)iCandidateCells.elementAt(i);
 			Nucleus n = null;
@@ -211,8 +212,7 @@ public class KillSublineage extends JPanel implements ActionListener {
 			c = (Cell)h.get(predecessorNuc.identity);
 		}
 
-				iAceTree.clearTree();
-			iAceTree.buildTree(true);
+				iAceTree.updateTree();
 			iEditLog.setModified(true);
 			AncesTree ances = iAceTree.getAncesTree();
 			Hashtable h = ances.getCellsByName();
@@ -33,8 +33,10 @@ import org.rhwlab.image.ImageWindow;
 
 import org.rhwlab.snight.NucleiMgr;
 import org.rhwlab.snight.Nucleus;
+import org.rhwlab.snight.NucleusIndex;
 import org.rhwlab.tree.AncesTree;
 import org.rhwlab.tree.Cell;
+import org.rhwlab.utils.TimePointRunner;
 
 
 public class Lazarus extends JDialog  implements ActionListener, ListSelectionListener, Comparator {
@@ -147,40 +149,109 @@ public class Lazarus extends JDialog  implements ActionListener, ListSelectionLi
         //*****
         iListModel.clear();
         iListModel.addElement("####");
+        findMatches();
         Enumeration cells = iLazers.keys();
         while (cells.hasMoreElements()) {
-        //for (int i=0; i < iLazers.size(); i++) {
             String name = (String)cells.nextElement();
             Laz laz = (Laz)iLazers.get(name);
-            //println("makeInitialList, " + i + laz.iDyer.identity + CS + laz.iDTime);
-            int tend = laz.iDTime + iDelT;
-            Vector nuclei = null;
-            for (int j = laz.iDTime + 1; j < tend; j++) {
-                nuclei = (Vector)nuclei_record.get(j - 1);
-                boolean matchFound = false;
-                for (int m = 0; m < nuclei.size(); m++) {
-                    Nucleus n = (Nucleus)nuclei.get(m);
-                    if (n.status < 0) continue;
-                    int d = laz.distance(n);
-                    if (d < iDelD) {
-                        Laz lazx = getJump(j-2, n);
-                        if (lazx.iMatch) {
-                            laz.setMatch(n, j);
-                            matchFound = true;
-                            break;
-                        }
-                    }
-                }
-                if (matchFound) break;
-           }
-           println("" + laz);
-           if (laz.iMatch) iListModel.addElement(laz.toString());
+            println("" + laz);
+            if (laz.iMatch) iListModel.addElement(laz.toString());
         }
         //*****/
 
 
     }
 
+    /**
+     * matches each death in iLazers with the first nucleus, in the next
+     * iDelT - 1 time points, that is within iDelD of it and is newborn or
+     * jumped there (see getJump)
+     * <br>whether a nucleus could be a match does not depend on the death,
+     * so it is worked out once per nucleus, and only the nuclei the
+     * NucleusIndex finds within iDelD are looked at; deaths are matched a
+     * death time at a time on all cores
+     */
+    private void findMatches() {
+        final Hashtable<Integer, Vector<Laz>> byTime = new Hashtable<Integer, Vector<Laz>>();
+        int first = Integer.MAX_VALUE;
+        int last = 0;
+        Enumeration e = iLazers.elements();
+        while (e.hasMoreElements()) {
+            Laz laz = (Laz)e.nextElement();
+            Integer key = Integer.valueOf(laz.iDTime);
+            Vector<Laz> v = byTime.get(key);
+            if (v == null) {
+                v = new Vector<Laz>();
+                byTime.put(key, v);
+            }
+            v.add(laz);
+            first = Math.min(first, laz.iDTime);
+            last = Math.max(last, laz.iDTime);
+        }
+        if (byTime.size() == 0) return;
+        // the searches stop at the last time point of the series
+        final int jstart = first + 1;
+        int jend = Math.min(last + iDelT - 1, nuclei_record.size());
+        if (jend < jstart) return;
+        final NucleusIndex [] indexes = new NucleusIndex[jend - jstart + 1];
+        for (int j = jstart; j <= jend; j++) indexes[j - jstart] = iNucleiMgr.getNucleusIndex(j);
+        final boolean [][] arrivals = new boolean[indexes.length][];
+        TimePointRunner.run(jstart, jend, new TimePointRunner.Job() {
+            @Override
+            public Object process(int j) {
+                Vector nuclei = (Vector)nuclei_record.get(j - 1);
+                boolean [] b = new boolean[nuclei.size()];
+                for (int m = 0; m < b.length; m++) {
+                    Nucleus n = (Nucleus)nuclei.get(m);
+                    if (n.status < 0) continue;
+                    b[m] = getJump(j - 2, n).iMatch;
+                }
+                return b;
+            }
+            @Override
+            public boolean finished(int j, Object result) {
+                arrivals[j - jstart] = (boolean [])result;
+                return true;
+            }
+        });
+        final int jlast = jend;
+        TimePointRunner.run(first, last, new TimePointRunner.Job() {
+            @Override
+            public Object process(int time) {
+                Vector<Laz> v = byTime.get(Integer.valueOf(time));
+                if (v == null) return null;
+                for (int i=0; i < v.size(); i++) match(v.get(i), jlast, indexes, arrivals, jstart);
+                return null;
+            }
+            @Override
+            public boolean finished(int time, Object result) {
+                return true;
+            }
+        });
+    }
+
+    private void match(Laz laz, int jlast, NucleusIndex [] indexes, boolean [][] arrivals, int jstart) {
+        int tend = Math.min(laz.iDTime + iDelT, jlast + 1);
+        for (int j = laz.iDTime + 1; j < tend; j++) {
+            boolean [] b = arrivals[j - jstart];
+            if (b == null) return;
+            Vector nuclei = (Vector)nuclei_record.get(j - 1);
+            Vector<Nucleus> near = indexes[j - jstart].within(laz.iDyer.x, laz.iDyer.y, iDelD);
+            for (int m = 0; m < near.size(); m++) {
+                Nucleus n = near.get(m);
+                if (n.status < 0) continue;
+                if (laz.distance(n) >= iDelD) continue;
+                // index is the place in the time point unless an edit left it stale
+                int k = n.index - 1;
+                boolean arrived = k >= 0 && k < b.length && nuclei.get(k) == n ? b[k] : getJump(j - 2, n).iMatch;
+                if (arrived) {
+                    laz.setMatch(n, j);
+                    return;
+                }
+            }
+        }
+    }
+
     private Laz getJump(int k, Nucleus n) {
         Laz laz = new Laz(n, k);
         Vector nuclei = (Vector)nuclei_record.get(k);
@@ -218,6 +289,7 @@ public class Lazarus extends JDialog  implements ActionListener, ListSelectionLi
 
     private void linkEm() {
         NucRelinkDialog.iNucleiMgr = iNucleiMgr;
+        iNucleiMgr.makeBackupNucleiRecord();
         Enumeration cells = iLazers.keys();
         while (cells.hasMoreElements()) {
         //for (int i=0; i < iLazers.size(); i++) {
@@ -233,8 +305,7 @@ public class Lazarus extends JDialog  implements ActionListener, ListSelectionLi
         //updateCurrentInfo(false);
         //int time = iImageTime + iTimeInc;
         //Cell c = iCurrentCell;
-        iAceTree.clearTree();
-        iAceTree.buildTree(true);
+        iAceTree.updateTree();
         //if (c != null) iAceTree.setStartingCell(c, time);
         makeInitialList();
 
@@ -42,6 +42,7 @@ public class NucEditModel {
      * @param time int time of the top nucleus
      */
     public void commitAllChanges(int time) {
+        iNucleiMgr.makeBackupNucleiRecord();
         commitChanges(0, time, true);
         commitChanges(1, time + 1, false);
     }
@@ -54,6 +55,7 @@ public class NucEditModel {
         }
         NucleiTableModel nucleiTableModel = iNucleiTableModel[tableModel];
         Vector nuclei = iNucleiMgr.getNucleiRecord().elementAt(i);
+        iNucleiMgr.markEdited(i + 1);
         int m = nuclei.size();
         Nucleus n;
         String s;
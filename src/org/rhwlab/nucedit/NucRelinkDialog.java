@@ -414,8 +414,7 @@ public class NucRelinkDialog extends JDialog implements ActionListener {
 		//System.out.println("returned from createAndAddCells");
 		// if (cmd.equals(APPLYANDREBUILD)) {
 		//println("\n\nNucRelinkDialog.actionPerformed: applyAndRebuild");
-		iAceTree.clearTree();
-		iAceTree.buildTree(true);
+		iAceTree.updateTree();
 		AncesTree ances = iAceTree.getAncesTree();
 		Hashtable h = ances.getCellsByName();
 		Cell c = (Cell)h.get(strCellName);
@@ -471,6 +470,7 @@ public class NucRelinkDialog extends JDialog implements ActionListener {
 		// access nucleus record of end and start cells
 		println("createAndAddCells, " + endCellName + CS + endTime + CS + strCellName + CS + strTime);
 		Nucleus nEnd = getNucleus(endCellName, endTime);
+		iNucleiMgr.markEdited(endTime);
 		if (strCellName.equals(AceTree.ROOTNAME)) {
 			nEnd.predecessor = Nucleus.NILLI;
 			return;
@@ -486,6 +486,7 @@ public class NucRelinkDialog extends JDialog implements ActionListener {
 		Vector nucleiAdd = null;
 		Nucleus n = nStr;
 		int predecessor = nStr.index;
+		iNucleiMgr.markEdited(strTime + 1, endTime - 1);
 		for (int k = strTime + 1; k < endTime; k++) {
 			nucleiAdd = (Vector)nuclei_record.elementAt(k - 1);
 			n = interpolateNucleus(nEnd, nStr, endTime, strTime, k);
@@ -9,7 +9,6 @@ import java.io.FileNotFoundException;
 import java.text.DecimalFormat;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
 
@@ -78,7 +77,7 @@ public class Orientation extends JDialog implements ActionListener, ListSelectio
         //iIdentity = iNucleiMgr.getIdentity();
         //iRoot = iNucleiMgr.getRoot();
         iRoot = acenui.getRoot();
-        makeSortedCellNames();
+        iSortedCellNames = iAncesTree.getLineageIndex().getSortedNames();
         iLastTime = estimate350CellStage();
 
         Identity3 identity = iNucleiMgr.getIdentity();
@@ -230,7 +229,7 @@ public class Orientation extends JDialog implements ActionListener, ListSelectio
         //iIdentity = iNucleiMgr.getIdentity();
         //iRoot = iNucleiMgr.getRoot();
         iRoot = iAceTree.getRoot();
-        makeSortedCellNames();
+        iSortedCellNames = iAncesTree.getLineageIndex().getSortedNames();
         iLastTime = estimate350CellStage();
 
         Identity3 identity = iNucleiMgr.getIdentity();
@@ -314,17 +313,6 @@ public class Orientation extends JDialog implements ActionListener, ListSelectio
 
 
 
-    @SuppressWarnings("unused")
-	private void makeSortedCellNames() {
-        iSortedCellNames = new Vector();
-        Enumeration e = iCellsByName.keys();
-        int i = 0;
-        while (e.hasMoreElements()) {
-            iSortedCellNames.add (e.nextElement());
-        }
-        Collections.sort(iSortedCellNames);
-    }
-
 
     @SuppressWarnings("unused")
 	private int estimate350CellStage() {
@@ -35,9 +35,11 @@ import org.rhwlab.acetree.NucUtils;
 import org.rhwlab.image.ImageWindow;
 import org.rhwlab.snight.NucleiMgr;
 import org.rhwlab.snight.Nucleus;
+import org.rhwlab.snight.NucleusIndex;
 import org.rhwlab.tree.AncesTree;
 import org.rhwlab.tree.Cell;
 import org.rhwlab.tree.CellData;
+import org.rhwlab.utils.TimePointRunner;
 
 public class Overlaps extends JPanel implements ActionListener, ListSelectionListener, Comparator {
     AceTree                     iAceTree;
@@ -107,9 +109,19 @@ public class Overlaps extends JPanel implements ActionListener, ListSelectionLis
         iListModel.addElement("#list shows nuclei that are too close");
         iListModel.addElement("#where the separation is less than sum of radii - TOLERENCE ");
 
-        for (int i = t1; i <= t2; i++) {
-            findOverlaps(i);
-        }
+        TimePointRunner.run(t1, t2, new TimePointRunner.Job() {
+            @Override
+            public Object process(int time) {
+                return overlaps(time);
+            }
+
+            @Override
+            public boolean finished(int time, Object result) {
+                addLines((Vector)result);
+                return true;
+            }
+        });
+        if (!this.isShowing()) this.showMe();
         iNamesAvailable = true;
 
     }
@@ -119,26 +131,61 @@ public class Overlaps extends JPanel implements ActionListener, ListSelectionLis
     public void findOverlaps(int now) {
         iNamesAvailable = false;
         iTest = 1;
-        Vector nuclei = iNucleiMgr.getNucleiRecord().elementAt(now - 1);
-        nuclei = cleanupAndSort(nuclei);
+        addLines(overlaps(now));
+        if (!this.isShowing()) this.showMe();
+        iNamesAvailable = true;
+    }
+
+    private void addLines(Vector lines) {
+        for (int i=0; i < lines.size(); i++) iListModel.addElement(lines.get(i));
+    }
+
+    /*
+     * the list lines for the pairs of nuclei at time now that are
+     * too close, in the order of a scan over every pair in name order
+     * only pairs the NucleusIndex finds within reach of each other
+     * are measured; touches nothing but the nuclei, so time points
+     * can be done side by side
+     */
+    private Vector overlaps(int now) {
+        Vector lines = new Vector();
+        Vector all = iNucleiMgr.getNucleiRecord().elementAt(now - 1);
+        Vector nuclei = cleanupAndSort(all);
+        NucleusIndex index = new NucleusIndex(all);
+        Hashtable rank = new Hashtable();
+        int maxSize = 0;
+        for (int i=0; i < nuclei.size(); i++) {
+            Nucleus n = ((Nuc)nuclei.get(i)).iNuc;
+            rank.put(n, Integer.valueOf(i));
+            maxSize = Math.max(maxSize, n.size);
+        }
         for (int i=0; i < nuclei.size(); i++) {
             Nucleus n = ((Nuc)nuclei.get(i)).iNuc;
-            for (int j=i + 1; j < nuclei.size(); j++) {
-                Nucleus n2 = ((Nuc)nuclei.get(j)).iNuc;
-                if (n2.status <  0) continue;
+            // dist rounds the 3D separation, which is no less than the
+            // separation in the plane, so this reach holds every pair
+            // that can pass the test below
+            double reach = (n.size + maxSize) / 2 - TOLERENCE + 1;
+            if (reach < 0) continue;
+            Vector near = index.within(n.x, n.y, reach);
+            Vector later = new Vector();
+            for (int k=0; k < near.size(); k++) {
+                Integer r = (Integer)rank.get(near.get(k));
+                if (r != null && r.intValue() > i) later.add(r);
+            }
+            Collections.sort(later);
+            for (int k=0; k < later.size(); k++) {
+                Nucleus n2 = ((Nuc)nuclei.get(((Integer)later.get(k)).intValue())).iNuc;
                 int dist = NucUtils.distance(n, n2);
                 double valid = (n.size + n2.size) / 2;
                 if (dist > valid - TOLERENCE) continue;
                 String plane = "above";
                 if (n2.z > n.z) plane = "below";
                 String s = now + CS + n.identity + CS + n2.identity + CS + plane + CS + DF1.format(dist) + CS + DF1.format(valid);
-                iListModel.addElement(s);
+                lines.add(s);
                 //println("findOverlaps, " + s);
-
             }
         }
-        if (!this.isShowing()) this.showMe();
-        iNamesAvailable = true;
+        return lines;
     }
 
     private Vector cleanupAndSort(Vector nuclei) {
@@ -222,6 +269,7 @@ public class Overlaps extends JPanel implements ActionListener, ListSelectionLis
     }
 
     private void nucEm() {
+        iNucleiMgr.makeBackupNucleiRecord();
         int [] remove = iCellList.getSelectedIndices();
         for (int i = remove.length - 1; i >= 0; i--) {
             String s = (String)iListModel.elementAt(remove[i]);
@@ -231,6 +279,7 @@ public class Overlaps extends JPanel implements ActionListener, ListSelectionLis
             String cellName = sa[1];
 
             Vector nuclei = iNucleiMgr.getNucleiRecord().elementAt(time - 1);
+            iNucleiMgr.markEdited(time);
             for (int j=0; j < nuclei.size(); j++) {
                 Nucleus n = (Nucleus)nuclei.elementAt(j);
                 if (!n.identity.equals(cellName)) continue;
@@ -247,8 +296,7 @@ public class Overlaps extends JPanel implements ActionListener, ListSelectionLis
     }
 
     private void rebuildAndRename() {
-        iAceTree.clearTree();
-        iAceTree.buildTree(true);
+        iAceTree.updateTree();
         iNamesAvailable = false;
         iListModel.clear();
         initialize();
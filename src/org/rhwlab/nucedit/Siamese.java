@@ -225,6 +225,7 @@ public class Siamese extends JDialog implements ActionListener, ListSelectionLis
     }
 
     private void unDivide() {
+        iNucleiMgr.makeBackupNucleiRecord();
         int [] remove = iCellList.getSelectedIndices();
         for (int i = remove.length - 1; i >= 0; i--) {
             String s = (String)iListModel.elementAt(remove[i]);
@@ -240,8 +241,7 @@ public class Siamese extends JDialog implements ActionListener, ListSelectionLis
     }
 
     private void rebuildAndRename() {
-        iAceTree.clearTree();
-        iAceTree.buildTree(true);
+        iAceTree.updateTree();
         iNamesAvailable = false;
         iListModel.clear();
         initialize();
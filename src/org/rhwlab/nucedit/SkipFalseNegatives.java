@@ -310,8 +310,7 @@ public class SkipFalseNegatives extends JDialog implements ActionListener {
             iNucleiMgr.makeBackupNucleiRecord();
             createAndAddCells(endCellName, endTime, strCellName, strTime);
             if (o == iApplyAndRebuild) {
-                iAceTree.clearTree();
-                iAceTree.buildTree(true);
+                iAceTree.updateTree();
                 AncesTree ances = iAceTree.getAncesTree();
                 Hashtable h = ances.getCellsByName();
                 Cell c = (Cell)h.get(strCellName);
@@ -385,6 +384,7 @@ public class SkipFalseNegatives extends JDialog implements ActionListener {
         Vector nucleiAdd = null; 
         Nucleus n = nStr;
         int predecessor = nStr.index;
+        iNucleiMgr.markEdited(strTime + 1, endTime);
         for (int k = strTime + 1; k < endTime; k++) {
             nucleiAdd = (Vector)nuclei_record.elementAt(k - 1);
             n = interpolateNucleus(nEnd, nStr, endTime, strTime, k);
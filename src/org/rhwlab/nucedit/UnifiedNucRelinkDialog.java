@@ -176,8 +176,7 @@ public class UnifiedNucRelinkDialog extends NucRelinkDialog{
 				String ID = addCell(x,y);
     			//rebuild and rename
 				//System.out.println("Rebuild tree and rename nucleus.");
-    			iAceTree.clearTree();
-    			iAceTree.buildTree(true);
+    			iAceTree.updateTree();
     		}else{
     			int startTime;
     			try {
@@ -249,6 +248,8 @@ public class UnifiedNucRelinkDialog extends NucRelinkDialog{
         n.predecessor = -1;
         n.successor1 = -1;
         n.successor2 = -1;
+        ImageWindow.cNucleiMgr.makeBackupNucleiRecord();
+        ImageWindow.cNucleiMgr.markEdited(time);
         nuclei.add(n);
      
 
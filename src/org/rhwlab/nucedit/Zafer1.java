@@ -10,8 +10,6 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.text.DecimalFormat;
-import java.util.Collections;
-import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
 
@@ -332,21 +330,10 @@ public class Zafer1  extends JDialog implements ActionListener, ListSelectionLis
         //iIdentity = iNucleiMgr.getIdentity();
         //iRoot = iNucleiMgr.getRoot();
         iRoot = iAceTree.getRoot();
-        makeSortedCellNames();
+        iSortedCellNames = iAncesTree.getLineageIndex().getSortedNames();
         iLastTime = estimate350CellStage();
     }
 
-    @SuppressWarnings("unused")
-	private void makeSortedCellNames() {
-        iSortedCellNames = new Vector();
-        Enumeration e = iCellsByName.keys();
-        int i = 0;
-        while (e.hasMoreElements()) {
-            iSortedCellNames.add (e.nextElement());
-        }
-        Collections.sort(iSortedCellNames);
-    }
-
     @SuppressWarnings("unused")
 	private int estimate350CellStage() {
         int stage = 355;
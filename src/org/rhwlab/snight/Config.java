@@ -67,6 +67,8 @@ public class Config {
     public FileError 	iImageFileError;
     public FileError	iZipFileError;
     public int			iSplitChannelImage; // whether to split image into two channels for 16-bit mode
+    public int          iNucleiCache; // 1 to keep a binary sidecar of the nuclei next to the zip
+    public int          iParkNuclei; // 1 to pack the nuclei while another series is shown
 
     //  private AceTree iAceTree;
     @Override
@@ -88,6 +90,8 @@ public class Config {
 		sb.append(NL + "iUseStack" + CS + iUseStack);
         sb.append(NL + "iAxisGiven" + CS + iAxisGiven);
         sb.append(NL + "iSplitChannelImage" + CS + iSplitChannelImage);
+        sb.append(NL + "iNucleiCache" + CS + iNucleiCache);
+        sb.append(NL + "iParkNuclei" + CS + iParkNuclei);
 
         return sb.toString();
     }
@@ -478,6 +482,16 @@ public class Config {
             iSplit = 1;
         }
 
+        s = (String)iConfigHash.get(configParams[NUCLEICACHE]);
+        if (s.length() > 0) {
+            iNucleiCache = Integer.parseInt(s);
+        }
+
+        s = (String)iConfigHash.get(configParams[PARKNUCLEI]);
+        if (s.length() > 0) {
+            iParkNuclei = Integer.parseInt(s);
+        }
+
     }
 
     private void setOldStyleParms() {
@@ -558,6 +572,12 @@ public class Config {
             if (iSplitChannelImage != 1)
             	pw.println("SPLIT_CHANNEL_IMAGE + 0 + END");
 
+            if (iNucleiCache != 0)
+                pw.println(NUCLEI_CACHE + iNucleiCache + END);
+
+            if (iParkNuclei != 0)
+                pw.println(PARK_NUCLEI + iParkNuclei + END);
+
             pw.println(ENDEMBRYO);
             pw.close();
 
@@ -589,6 +609,8 @@ public class Config {
     ,USE_ZIP = "<useZip type=\""
 	,USE_STACK = "<useStack type=\""
 	,i16BITSPLIT = "<Split SplitMode=\""
+    ,NUCLEI_CACHE = "<nucleiCache use=\""
+    ,PARK_NUCLEI = "<parkNuclei use=\""
     ;
 
     private void showStartingParms() {
@@ -652,6 +674,8 @@ public class Config {
            ,"y"
            ,"splitChannelImage"
             ,"splitMode"
+            ,"nucleiCache"
+            ,"parkNuclei"
     };
 
     private static final int
@@ -673,7 +697,9 @@ public class Config {
         ,EXPRCORR = 15
 		,USESTACK = 16
 		,SPLITCHANNELIMAGE = 21
-        ,SPLIT = 22;
+        ,SPLIT = 22
+        ,NUCLEICACHE = 23
+        ,PARKNUCLEI = 24;
 
     public static final float
          XYRESNOMINAL = .09f
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.snight;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * undo and redo for edits of the nuclei record, kept as differences
+ * rather than copies of the whole record
+ * <br>an edit is opened with begin(); the first time touch() is called
+ * for a time point during the edit the nuclei of that time point are
+ * copied, and when the edit is closed the copy is compared with the
+ * record so that only the nuclei which changed, or were added or
+ * removed at the end of the time point, are kept
+ * <br>undo and redo then cost the size of the edit, and the number of
+ * edits and of nuclei held is bounded, the oldest edits going first
+ * <br>changes made without a touch() for their time point (the renaming
+ * done on a rebuild for instance) are not recorded
+ */
+public class EditJournal {
+    Vector<Edit>                iUndo;
+    Vector<Edit>                iRedo;
+    Hashtable<Integer, Nucleus []> iOpen;  // time -> nuclei before the edit
+    int                         iHeld;     // nuclei held by iUndo and iRedo
+
+    public EditJournal() {
+        iUndo = new Vector<Edit>();
+        iRedo = new Vector<Edit>();
+    }
+
+    /**
+     * closes the edit in progress, if any, and opens a new one
+     */
+    public void begin(Vector<Vector<Nucleus>> record) {
+        close(record);
+        iOpen = new Hashtable<Integer, Nucleus []>();
+    }
+
+    /**
+     * to be called before the nuclei of the (one based) time are changed
+     */
+    public void touch(int time, Vector<Vector<Nucleus>> record) {
+        if (time < 1 || time > record.size()) return;
+        if (iOpen == null) iOpen = new Hashtable<Integer, Nucleus []>();
+        Integer key = Integer.valueOf(time);
+        if (iOpen.containsKey(key)) return;
+        Vector<Nucleus> nuclei = record.get(time - 1);
+        Nucleus [] copy = new Nucleus[nuclei.size()];
+        for (int j=0; j < copy.length; j++) copy[j] = nuclei.get(j).copy();
+        iOpen.put(key, copy);
+    }
+
+    /**
+     * compares the time points touched by the edit in progress with the
+     * record and keeps what differs as one undoable edit
+     */
+    public void close(Vector<Vector<Nucleus>> record) {
+        if (iOpen == null) return;
+        Vector<Integer> times = new Vector<Integer>(iOpen.keySet());
+        Collections.sort(times);
+        Edit edit = new Edit();
+        for (int i=0; i < times.size(); i++) {
+            int time = times.get(i).intValue();
+            if (time > record.size()) continue;
+            TimeDelta d = diff(time, iOpen.get(times.get(i)), record.get(time - 1));
+            if (d != null) edit.add(d);
+        }
+        iOpen = null;
+        if (edit.isEmpty()) return;
+        clear(iRedo);
+        iUndo.add(edit);
+        iHeld += edit.iHeld;
+        trim();
+    }
+
+    /**
+     * reverts the most recent edit
+     * @return the zero based time indices it changed, or null if there
+     * was nothing to undo
+     */
+    public BitSet undo(Vector<Vector<Nucleus>> record) {
+        close(record);
+        if (iUndo.isEmpty()) return null;
+        Edit edit = iUndo.remove(iUndo.size() - 1);
+        edit.revert(record);
+        iRedo.add(edit);
+        return edit.getTimes();
+    }
+
+    /**
+     * applies again the most recently undone edit
+     * @return the zero based time indices it changed, or null if there
+     * was nothing to redo
+     */
+    public BitSet redo(Vector<Vector<Nucleus>> record) {
+        close(record);
+        if (iRedo.isEmpty()) return null;
+        Edit edit = iRedo.remove(iRedo.size() - 1);
+        edit.apply(record);
+        iUndo.add(edit);
+        return edit.getTimes();
+    }
+
+    public boolean canUndo() {
+        return !iUndo.isEmpty() || iOpen != null;
+    }
+
+    public boolean canRedo() {
+        return !iRedo.isEmpty();
+    }
+
+    private void clear(Vector<Edit> edits) {
+        for (int i=0; i < edits.size(); i++) iHeld -= edits.get(i).iHeld;
+        edits.clear();
+    }
+
+    private void trim() {
+        while (iUndo.size() > 1 && (iUndo.size() > MAXEDITS || iHeld > MAXHELD)) {
+            iHeld -= iUndo.remove(0).iHeld;
+        }
+    }
+
+    private static TimeDelta diff(int time, Nucleus [] before, Vector<Nucleus> after) {
+        int n = Math.max(before.length, after.size());
+        int common = Math.min(before.length, after.size());
+        Vector<Integer> changed = new Vector<Integer>();
+        for (int j=0; j < n; j++) {
+            if (j < common && same(before[j], after.get(j))) continue;
+            changed.add(Integer.valueOf(j));
+        }
+        if (changed.isEmpty()) return null;
+        TimeDelta d = new TimeDelta();
+        d.iTime = time;
+        d.iBeforeSize = before.length;
+        d.iAfterSize = after.size();
+        d.iIndex = new int[changed.size()];
+        d.iBefore = new Nucleus[changed.size()];
+        d.iAfter = new Nucleus[changed.size()];
+        for (int k=0; k < d.iIndex.length; k++) {
+            int j = changed.get(k).intValue();
+            d.iIndex[k] = j;
+            if (j < before.length) d.iBefore[k] = before[j];
+            if (j < after.size()) d.iAfter[k] = after.get(j).copy();
+        }
+        return d;
+    }
+
+    private static boolean same(Nucleus a, Nucleus b) {
+        return a.index == b.index
+            && a.status == b.status
+            && a.x == b.x
+            && a.y == b.y
+            && Float.floatToIntBits(a.z) == Float.floatToIntBits(b.z)
+            && a.size == b.size
+            && a.weight == b.weight
+            && a.rweight == b.rweight
+            && a.rsum == b.rsum
+            && a.rcount == b.rcount
+            && a.predecessor == b.predecessor
+            && a.successor1 == b.successor1
+            && a.successor2 == b.successor2
+            && a.id_tag == b.id_tag
+            && a.rwraw == b.rwraw
+            && a.rwcorr1 == b.rwcorr1
+            && a.rwcorr2 == b.rwcorr2
+            && a.rwcorr3 == b.rwcorr3
+            && a.rwcorr4 == b.rwcorr4
+            && same(a.identity, b.identity)
+            && same(a.hashKey, b.hashKey)
+            && same(a.assignedID, b.assignedID);
+    }
+
+    private static boolean same(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * the changes of one edit
+     */
+    static class Edit {
+        Vector<TimeDelta>   iDeltas = new Vector<TimeDelta>();
+        int                 iHeld;
+
+        void add(TimeDelta d) {
+            iDeltas.add(d);
+            iHeld += 2 * d.iIndex.length;
+        }
+
+        boolean isEmpty() {
+            return iDeltas.isEmpty();
+        }
+
+        void revert(Vector<Vector<Nucleus>> record) {
+            for (int i = iDeltas.size() - 1; i >= 0; i--) {
+                TimeDelta d = iDeltas.get(i);
+                d.set(record.get(d.iTime - 1), d.iBefore, d.iBeforeSize);
+            }
+        }
+
+        void apply(Vector<Vector<Nucleus>> record) {
+            for (int i=0; i < iDeltas.size(); i++) {
+                TimeDelta d = iDeltas.get(i);
+                d.set(record.get(d.iTime - 1), d.iAfter, d.iAfterSize);
+            }
+        }
+
+        BitSet getTimes() {
+            BitSet b = new BitSet();
+            for (int i=0; i < iDeltas.size(); i++) b.set(iDeltas.get(i).iTime - 1);
+            return b;
+        }
+    }
+
+    /**
+     * the nuclei of one time point that differ before and after an edit,
+     * by position in the time point; a null entry means the position
+     * did not exist on that side
+     */
+    static class TimeDelta {
+        int         iTime;
+        int         iBeforeSize;
+        int         iAfterSize;
+        int []      iIndex;
+        Nucleus []  iBefore;
+        Nucleus []  iAfter;
+
+        void set(Vector<Nucleus> nuclei, Nucleus [] values, int size) {
+            if (nuclei.size() > size) nuclei.setSize(size);
+            for (int k=0; k < iIndex.length; k++) {
+                Nucleus n = values[k];
+                if (n == null) continue;
+                int j = iIndex[k];
+                // copy into the existing object so references held
+                // elsewhere see the restored values
+                if (j < nuclei.size()) n.copyData(nuclei.get(j));
+                else nuclei.add(n.copy());
+            }
+        }
+    }
+
+    private static final int
+         MAXEDITS = 100
+        ,MAXHELD = 200000
+        ;
+}
@@ -1,6 +1,7 @@
 package org.rhwlab.snight;
 
 import java.io.PrintWriter;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Vector;
 
@@ -20,9 +21,12 @@ public class Identity3 {
     String						iAxis;
     int							iEndingIndex;
     MeasureCSV					iMeasureCSV;
+    boolean						iCanonical;   // the last naming used the canonical rules
+    int							iUpdateFrom;  // first time index identityUpdate can start at, 0 if none
 
     PrintWriter					iPrintWriter;
     int							iStartTime;
+    LineageNames				iNames;
     
     private MeasureCSV measureCSV;
     private CanonicalTransform canTransform;
@@ -35,6 +39,7 @@ public class Identity3 {
         iParameters = iNucleiMgr.getParameters();
         iEndingIndex = iNucleiMgr.getEndingIndex();
         iMeasureCSV = iNucleiMgr.getMeasureCSV();
+        iNames = iNucleiMgr.getLineageNames();
     }
 
     public void setPrintWriter(PrintWriter pw) {
@@ -56,6 +61,8 @@ public class Identity3 {
     		return;
     	}
         iStartingIndex = iNucleiMgr.getConfig().iStartingIndex;
+        iUpdateFrom = 0;
+        int lastRead = -1;
         clearAllNames();
         //System.out.println("identityAssignment iStartingIndex: " + iStartingIndex);
         
@@ -81,6 +88,7 @@ public class Identity3 {
             //int mm = initialID(start, lineage_ct_p);
             InitialID initID = new InitialID(iNucleiMgr, iParameters, iMeasureCSV, canTransform);
             int mm = initID.initialID(start, lineage_ct_p);
+            lastRead = initID.getLastRead();
         	if (mm > 0) {
         		System.out.println("detected backtrace failure, lineage from start");
         		start[0] = 0; //start from scratch on failure of initialID
@@ -99,6 +107,8 @@ public class Identity3 {
             	if (iNamingMethod == NEWCANONICAL && start[0] > 0) {
             		//println("about to usecanonicalrules for newcanonical and start[0]>0");
             		useCanonicalRules(start, lineage_ct_p);
+            		iCanonical = true;
+            		iUpdateFrom = Math.max(lastRead + 2, start[0] + 1);
             		return;
             	}
             }
@@ -110,44 +120,121 @@ public class Identity3 {
             Vector<Nucleus> nuclei_prev = null;
             int nuc_ct = nuclei.size();
             if (i > 0) nuclei_prev = nuclei_record.elementAt(i - 1);
-            Nucleus nucleij = null;
             for (int j = 0; j < nuc_ct; j++) {
-                nucleij = nuclei.elementAt(j);
-                if (nucleij.status == Nucleus.NILLI) continue;
-                if (nuclei_prev != null && nucleij.predecessor != Nucleus.NILLI) {
-                    Nucleus pred = nuclei_prev.elementAt(nucleij.predecessor - 1);
-                    if (pred.successor2 == Nucleus.NILLI) {
-                     	nucleij.identity = pred.identity;
-                       	continue;
-                    } else {
-                       	// case of dividing pred
-                       	Nucleus sister = nuclei.get(pred.successor2 - 1);
-                       	
-                       	// Nucleus doesn't have forced name
-                       	if (!nucleij.assignedID.equals(""))
-                       		nucleij.identity = nucleij.assignedID;
-                       	else {
-	                       	nucleij.identity = pred.identity + "a";
-	                       	sister.identity = pred.identity + "p";
-                       	}
-                       	continue;
-                    }
-                } else {
-                 	// this is the first encounter of this nucleus
-                   	//nucleij.identity = NUC + iNucCount++;
-                	//println("identityAssignment adding nuc, " + nucleij);
-                	if (!nucleij.assignedID.equals(""))
-                		nucleij.identity = nucleij.assignedID;
-                	else {
-	                	int z = Math.round(nucleij.z);
-	                	nucleij.identity = NUC + EUtils.makePaddedInt(i + 1) + "_" + z + "_" + nucleij.x + "_" + nucleij.y;
-	                	//println("identityAssignment, adding nuc, " + nucleij);
-                	}
+                nameNucleus(i, j, nuclei, nuclei_prev);
+            }
+        }
+        iCanonical = false;
+        iUpdateFrom = Math.max(Math.max(lastRead + 2, start[0] + 1), 1);
+    }
+
+    /**
+     * the simple naming: a nucleus carries on the name of its
+     * predecessor, daughters get an a and p added, and a nucleus with
+     * no predecessor gets a Nuc name made from its time and position
+     */
+    private void nameNucleus(int i, int j, Vector<Nucleus> nuclei, Vector<Nucleus> nuclei_prev) {
+        Nucleus nucleij = nuclei.elementAt(j);
+        if (nucleij.status == Nucleus.NILLI) return;
+        if (nuclei_prev != null && nucleij.predecessor != Nucleus.NILLI) {
+            Nucleus pred = nuclei_prev.elementAt(nucleij.predecessor - 1);
+            if (pred.successor2 == Nucleus.NILLI) {
+             	nucleij.identity = pred.identity;
+            } else {
+               	// case of dividing pred
+               	Nucleus sister = nuclei.get(pred.successor2 - 1);
+
+               	// Nucleus doesn't have forced name
+               	if (!nucleij.assignedID.equals(""))
+               		nucleij.identity = nucleij.assignedID;
+               	else {
+                   	nucleij.identity = iNames.getDaughter(pred.identity, 'a');
+                   	sister.identity = iNames.getDaughter(pred.identity, 'p');
+               	}
+            }
+        } else {
+         	// this is the first encounter of this nucleus
+        	if (!nucleij.assignedID.equals(""))
+        		nucleij.identity = nucleij.assignedID;
+        	else {
+            	int z = Math.round(nucleij.z);
+            	nucleij.identity = iNames.intern(NUC + EUtils.makePaddedInt(i + 1) + "_" + z + "_" + nucleij.x + "_" + nucleij.y);
+        	}
+        }
+    }
+
+    /**
+     * tells if identityUpdate can redo the naming for edits to the given
+     * (zero based) time indices; not if they reach back into the time
+     * points InitialID looked at, or identityAssignment has not been run
+     */
+    public boolean canUpdate(BitSet edited) {
+        if (iNamingMethod == MANUAL) return true;
+        return iUpdateFrom > 0 && edited.nextSetBit(0) >= iUpdateFrom;
+    }
+
+    /**
+     * redoes the naming after an edit from the first edited time on,
+     * giving the names identityAssignment would; names before that time
+     * cannot have changed
+     * <br>at an edited time, and the one after it, every nucleus is named
+     * again; at later times only the successors of nuclei whose names
+     * changed, so the work stops once the changes die out past the last
+     * edited time
+     * <br>successors must already be set around the edited times
+     * @param edited zero based time indices changed since the last naming
+     * @return false, doing nothing, if canUpdate(edited) is false
+     */
+    public boolean identityUpdate(BitSet edited) {
+        if (!canUpdate(edited)) return false;
+        if (iNamingMethod == MANUAL) return true;
+        int last = edited.length() - 1;
+        int end = iEndingIndex;
+        if (iCanonical) end = iNucleiMgr.getEndingIndex();
+        end = Math.min(end, nuclei_record.size());
+        BitSet changed = new BitSet(); // nuclei of time i - 1 whose names changed
+        for (int i = edited.nextSetBit(0); i < end; i++) {
+            boolean all = edited.get(i) || edited.get(i - 1);
+            if (!all && changed.isEmpty()) {
+                if (i > last) break;
+                continue;
+            }
+            Vector<Nucleus> nuclei = nuclei_record.elementAt(i);
+            Vector<Nucleus> prev = nuclei_record.elementAt(i - 1);
+            BitSet redo = new BitSet();
+            if (all) redo.set(0, nuclei.size());
+            else {
+                for (int j = changed.nextSetBit(0); j >= 0; j = changed.nextSetBit(j + 1)) {
+                    Nucleus p = prev.elementAt(j);
+                    if (p.successor1 > 0) redo.set(p.successor1 - 1);
+                    if (p.successor2 > 0) redo.set(p.successor2 - 1);
+                }
+            }
+            // clear as clearAllNames would
+            String [] before = new String[nuclei.size()];
+            for (int j = redo.nextSetBit(0); j >= 0; j = redo.nextSetBit(j + 1)) {
+                Nucleus n = nuclei.elementAt(j);
+                before[j] = n.identity;
+                if (n.assignedID.length() == 0) n.identity = "";
+            }
+            if (iCanonical) {
+                for (int j=0; j < prev.size(); j++) {
+                    if (all || changed.get(j)) nameDaughters(i, prev.elementAt(j), nuclei);
                 }
-           }
+            } else {
+                for (int j = redo.nextSetBit(0); j >= 0; j = redo.nextSetBit(j + 1)) {
+                    nameNucleus(i, j, nuclei, prev);
+                }
+            }
+            changed = new BitSet();
+            for (int j = redo.nextSetBit(0); j >= 0; j = redo.nextSetBit(j + 1)) {
+                String id = nuclei.elementAt(j).identity;
+                if (id == null ? before[j] != null : !id.equals(before[j])) changed.set(j);
+            }
         }
+        return true;
     }
-    
+
     @SuppressWarnings("unused")
 	private void clearAllNames() {
         int k = iNucleiMgr.getNucleiRecord().size();
@@ -218,69 +305,13 @@ public class Identity3 {
             // access nuclei at given time point (0 indexed --> subtract 1)
             nuclei = nuclei_record.elementAt(i - 1);
             nuc_ct = nuclei.size();
-            Nucleus parent = null;
             Vector<Nucleus> nextNuclei = nuclei_record.elementAt(i);
             
             /*
              * Iterate over the nuclei at the current time point
              */
             for (int j = 0; j < nuc_ct; j++) {
-                parent = nuclei.elementAt(j);
-                //println("useCanonicalRules, " + i + CS + j + CS + parent.identity);
-                if (parent.status == Nucleus.NILLI) {
-                	//println("useCanonicalRules, XXX, " + i + CS + j + CS + parent.identity + CS + parent.status);
-                	continue;
-                }
-                String pname = parent.identity;
-               
-                /* NUC NAMEING PROCEDURE MODIFIED 20100630
-                 * 
-                 * REVISED July 14, 2016 --> @author Braden Katzman
-                 */
-                if (pname == null || pname.length() == 0) {
-                    //pname = NUC + iNucCount++;
-                	int z = Math.round(parent.z);
-                	
-                	// Try to only use the Nuc... name when there is no forced name in assignedID
-                	if (parent.assignedID.equals(""))
-                		pname = NUC + EUtils.makePaddedInt(i + 1) + "_" + z + "_" + parent.x + "_" + parent.y;
-                	else {
-                		pname = parent.assignedID;
-                	}
-                	
-                	// set the identity to the Nuc... name or the assignedID
-                    parent.identity = pname;
-                	//println("useCanoncalRules, adding nuc, " + parent.identity);
-                }
-               
-                
-                // check if valid division
-                boolean good = (parent.successor1 > 0 && parent.successor2 > 0);
-                if (!good) {
-                    // not dividing so just extend the name
-                    if (parent.successor1 > 0) {
-                        Nucleus n = nextNuclei.elementAt(parent.successor1 - 1);
-                        if (n.assignedID.length() <= 0) {
-                            //println("useCanonicalRules, XXXXXX, " + i + CS + j + CS + parent.identity + CS + parent.status + CS + n.identity);
-                        	//println("useCanonicalRules, XXXXXX, "+parent.identity);
-                        	n.identity = pname;
-                        }
-                    }
-                    continue;
-                }
-                
-                // this canonical parent is dividing
-                Nucleus dau1 = nextNuclei.elementAt(parent.successor1 - 1);
-                Nucleus dau2 = nextNuclei.elementAt(parent.successor2 - 1);
-                //System.out.println("about to assign names to children of: " + parent.identity + " - " + dau1.identity + ", " + dau2.identity);
-               
-                /*
-                 * Assign names via DivisionCaller
-                 */
-                if (parent != null && dau1 != null && dau2 != null) {
-                	iDivisionCaller.assignNames(parent, dau1, dau2);
-                	usePreassignedID(dau1, dau2);
-                }
+                nameDaughters(i, nuclei.elementAt(j), nextNuclei);
             }
         }
         Collections.sort(report);
@@ -292,6 +323,66 @@ public class Identity3 {
 //        }
     }
 
+    /**
+     * one step of the canonical naming: names the parent if it has no
+     * name yet and passes its name on to its successor at time i, or to
+     * both daughters through the DivisionCaller
+     */
+    private void nameDaughters(int i, Nucleus parent, Vector<Nucleus> nextNuclei) {
+        if (parent.status == Nucleus.NILLI) {
+        	return;
+        }
+        String pname = parent.identity;
+       
+        /* NUC NAMEING PROCEDURE MODIFIED 20100630
+         * 
+         * REVISED July 14, 2016 --> @author Braden Katzman
+         */
+        if (pname == null || pname.length() == 0) {
+            //pname = NUC + iNucCount++;
+        	int z = Math.round(parent.z);
+        	
+        	// Try to only use the Nuc... name when there is no forced name in assignedID
+        	if (parent.assignedID.equals(""))
+        		pname = iNames.intern(NUC + EUtils.makePaddedInt(i + 1) + "_" + z + "_" + parent.x + "_" + parent.y);
+        	else {
+        		pname = parent.assignedID;
+        	}
+        	
+        	// set the identity to the Nuc... name or the assignedID
+            parent.identity = pname;
+        	//println("useCanoncalRules, adding nuc, " + parent.identity);
+        }
+       
+        
+        // check if valid division
+        boolean good = (parent.successor1 > 0 && parent.successor2 > 0);
+        if (!good) {
+            // not dividing so just extend the name
+            if (parent.successor1 > 0) {
+                Nucleus n = nextNuclei.elementAt(parent.successor1 - 1);
+                if (n.assignedID.length() <= 0) {
+                	//println("useCanonicalRules, XXXXXX, "+parent.identity);
+                	n.identity = pname;
+                }
+            }
+            return;
+        }
+        
+        // this canonical parent is dividing
+        Nucleus dau1 = nextNuclei.elementAt(parent.successor1 - 1);
+        Nucleus dau2 = nextNuclei.elementAt(parent.successor2 - 1);
+        //System.out.println("about to assign names to children of: " + parent.identity + " - " + dau1.identity + ", " + dau2.identity);
+       
+        /*
+         * Assign names via DivisionCaller
+         */
+        if (parent != null && dau1 != null && dau2 != null) {
+        	iDivisionCaller.assignNames(parent, dau1, dau2);
+        	usePreassignedID(dau1, dau2);
+        }
+    }
+
     private void usePreassignedID(Nucleus dau1, Nucleus dau2) {
         //println("usePreassignedID: " + dau1.identity + CS + dau2.identity);
         //println("usePreassignedID:2 " + dau1.assignedID + CS + dau2.assignedID);
@@ -386,78 +477,12 @@ public class Identity3 {
 
     // called from class Analysis
     public String makeSisterName(String s) {
-        String sis = null;
-        char x = s.charAt(0);
-        int n = s.length();
-        boolean b = n == 1;
-        switch(x) {
-            case 'C':
-                if (b) return("P3");
-            case 'D':
-                if (b) return("P4");
-                else {
-                    sis = replaceLastChar(s);
-                    break;
-                }
-            case 'E':
-                if (b) return ("MS");
-                else {
-                    sis = replaceLastChar(s);
-                    break;
-                }
-            case 'M':
-                if (n == 2) return("E");
-                else {
-                    sis = replaceLastChar(s);
-                    break;
-                }
-            case 'A':
-                if (s.equals("ABal")) return("ABar");
-                if (s.equals("ABpl")) return ("ABpr");
-                sis = replaceLastChar(s);
-                break;
-            case 'R': /*20050824 was Z but no such special case */
-                if (s.equals("Z2")) sis = "Z3";
-                else sis = "Z2";
-                break;
-            case 'P':
-                if (s.equals("P2")) sis = "EMS";
-                else if (s.equals("P3")) sis = "C";
-                else if (s.equals("P4")) sis = "D";
-                break;
-            default:
-                sis = replaceLastChar(s);
-        }
-        return sis;
+        return iNames.getSister(s);
     }
 
 
     public String replaceLastChar(String s) {
-        StringBuffer sb = new StringBuffer(s);
-        int n = sb.length() - 1;
-        char x = sb.charAt(n);
-        switch(x) {
-        case 'a':
-            sb.setCharAt(n, 'p');
-            break;
-        case 'l':
-            sb.setCharAt(n, 'r');
-            break;
-        case 'd':
-            sb.setCharAt(n, 'v');
-            break;
-        case 'p':
-            sb.setCharAt(n, 'a');
-            break;
-        case 'r':
-            sb.setCharAt(n, 'l');
-            break;
-        case 'v':
-            sb.setCharAt(n, 'd');
-            break;
-
-        }
-        return sb.toString();
+        return LineageNames.replaceLastChar(s);
     }
 
 
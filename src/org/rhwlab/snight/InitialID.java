@@ -16,6 +16,8 @@ public class InitialID {
 	String			iAxis;
 	MeasureCSV		iMeasureCSV;
 
+	int				iLastRead;  // last time index looked at
+
 	double			iAng;
 	int				iXC;
 	int				iYC;
@@ -84,6 +86,14 @@ public class InitialID {
 		return iNucCount;
 	}
 
+	/**
+	 * the last (zero based) time index whose nuclei initialID looked at;
+	 * names from later times do not depend on anything it read
+	 */
+	int getLastRead() {
+		return iLastRead;
+	}
+
 	///////// code connected to initialID determination below here
 	// note modifications made on 20050804 to prevent a nucleus
 	// named polar from being renamed Nuc-xxx
@@ -95,6 +105,7 @@ public class InitialID {
 		int lin_ct = lineage_ct_p[0];
 		int first_four = -1, last_four = -1, four_cells;
 		Vector<Nucleus> nuclei = nuclei_record.elementAt(startingIndex - 1);
+		iLastRead = startingIndex - 1;
 		//Vector nuclei = (Vector)nuclei_record.elementAt(0);
 		int nuc_ct = nuclei.size();
 		int cell_ct = countCells(nuclei);
@@ -133,6 +144,7 @@ public class InitialID {
 				nuc_ct = nuclei.size();
 				cell_ct = countCells(nuclei);
 				//System.out.println("cell count: " + cell_ct);
+				iLastRead = Math.max(iLastRead, i);
 				if (cell_ct > 4)
 					break;
 				if (cell_ct == 4) {
@@ -146,6 +158,7 @@ public class InitialID {
 			if (first_four == -1) {
 				//nuclei = (Vector)nuclei_record.elementAt(0);
 				nuclei = nuclei_record.elementAt(3);
+				iLastRead = Math.max(iLastRead, 3);
 				nuc_ct = nuclei.size();
 				Nucleus nucleij = null;
 				for (int j=0; j < nuc_ct; j++) {
@@ -169,6 +182,7 @@ public class InitialID {
 
 		four_cells = (first_four + last_four)/2;
 		start_p[0] = four_cells + 1;
+		iLastRead = Math.max(iLastRead, four_cells + 1);
 
 
 		rtn = fourCellID(four_cells, lineage_ct_p);
@@ -504,6 +518,8 @@ public class InitialID {
 			for (int j = 0; j < nuc_ct; j++) {
 				nucleij = nuclei.elementAt(j);
 				if (nucleij.identity.indexOf(POLAR) == -1) continue;
+				// polar names are carried as far as the polar bodies go
+				iLastRead = Math.max(iLastRead, i + 1);
 				if (nucleij.successor1 == Nucleus.NILLI) p_ct--;
 				if (p_ct == 0) break;
 				if (nucleij.successor2 != Nucleus.NILLI) {
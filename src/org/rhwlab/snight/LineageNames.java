@@ -0,0 +1,213 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.snight;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * the cell names of one series, each distinct name held once and given a
+ * small id, so the nuclei of a cell share one String across all the time
+ * points it lives
+ * <br>the sister, the daughters and the parent of a name are worked out
+ * once and kept by id, so the naming asks for them without building
+ * strings again
+ * <br>names are never dropped from a table; NucleiMgr drops the whole
+ * table when the series is parked and makes a new one when it is named
+ * again; a table is used by the thread that loads or names the series
+ */
+public class LineageNames {
+    Hashtable<String, Integer>  iIds;
+    Vector<String>              iNames;
+    int []                      iSister;     // by id; UNKNOWN until worked out, NONE if there is none
+    int []                      iParent;     // by id; the name getDaughter made it from, or NONE
+    int []                      iDaughters;  // DAUGHTERS per id, by the index of the letter in SULSTON
+
+    public LineageNames() {
+        iIds = new Hashtable<String, Integer>();
+        iNames = new Vector<String>();
+        iSister = new int[0];
+        iParent = new int[0];
+        iDaughters = new int[0];
+    }
+
+    /**
+     * @return the instance of s held here, s itself the first time
+     */
+    public String intern(String s) {
+        if (s == null) return null;
+        return iNames.get(getId(s));
+    }
+
+    /**
+     * the id of s, entering it if it is new
+     */
+    public int getId(String s) {
+        Integer id = iIds.get(s);
+        if (id != null) return id.intValue();
+        int k = iNames.size();
+        iIds.put(s, Integer.valueOf(k));
+        iNames.add(s);
+        if (k == iSister.length) grow();
+        iSister[k] = UNKNOWN;
+        iParent[k] = NONE;
+        for (int i=0; i < DAUGHTERS; i++) iDaughters[k * DAUGHTERS + i] = UNKNOWN;
+        return k;
+    }
+
+    public String getName(int id) {
+        return iNames.get(id);
+    }
+
+    public int size() {
+        return iNames.size();
+    }
+
+    private void grow() {
+        int n = Math.max(INITIAL, iSister.length * 2);
+        int [] a = new int[n];
+        System.arraycopy(iSister, 0, a, 0, iSister.length);
+        iSister = a;
+        a = new int[n];
+        System.arraycopy(iParent, 0, a, 0, iParent.length);
+        iParent = a;
+        a = new int[n * DAUGHTERS];
+        System.arraycopy(iDaughters, 0, a, 0, iDaughters.length);
+        iDaughters = a;
+    }
+
+    /**
+     * parent plus the letter c, as the naming builds daughter names
+     */
+    public String getDaughter(String parent, char c) {
+        int p = getId(parent);
+        int i = SULSTON.indexOf(c);
+        if (i < 0) return intern(iNames.get(p) + c);
+        int d = iDaughters[p * DAUGHTERS + i];
+        if (d == UNKNOWN) {
+            d = getId(iNames.get(p) + c);
+            iDaughters[p * DAUGHTERS + i] = d;
+            if (iParent[d] == NONE) iParent[d] = p;
+        }
+        return iNames.get(d);
+    }
+
+    /**
+     * @return the name getDaughter made s from, or null if s was not
+     * made that way
+     */
+    public String getParent(String s) {
+        Integer id = iIds.get(s);
+        if (id == null) return null;
+        int p = iParent[id.intValue()];
+        return p == NONE ? null : iNames.get(p);
+    }
+
+    /**
+     * makeSisterName(s), worked out once per name
+     */
+    public String getSister(String s) {
+        int k = getId(s);
+        int sis = iSister[k];
+        if (sis == UNKNOWN) {
+            String name = makeSisterName(s);
+            sis = name == null ? NONE : getId(name);
+            iSister[k] = sis;
+        }
+        return sis == NONE ? null : iNames.get(sis);
+    }
+
+    /**
+     * the name of the sister of the cell named s, following the
+     * exceptions of the founder cells; null if there is none
+     */
+    public static String makeSisterName(String s) {
+        String sis = null;
+        char x = s.charAt(0);
+        int n = s.length();
+        boolean b = n == 1;
+        switch(x) {
+            case 'C':
+                if (b) return("P3");
+            case 'D':
+                if (b) return("P4");
+                else {
+                    sis = replaceLastChar(s);
+                    break;
+                }
+            case 'E':
+                if (b) return ("MS");
+                else {
+                    sis = replaceLastChar(s);
+                    break;
+                }
+            case 'M':
+                if (n == 2) return("E");
+                else {
+                    sis = replaceLastChar(s);
+                    break;
+                }
+            case 'A':
+                if (s.equals("ABal")) return("ABar");
+                if (s.equals("ABpl")) return ("ABpr");
+                sis = replaceLastChar(s);
+                break;
+            case 'R': /*20050824 was Z but no such special case */
+                if (s.equals("Z2")) sis = "Z3";
+                else sis = "Z2";
+                break;
+            case 'P':
+                if (s.equals("P2")) sis = "EMS";
+                else if (s.equals("P3")) sis = "C";
+                else if (s.equals("P4")) sis = "D";
+                break;
+            default:
+                sis = replaceLastChar(s);
+        }
+        return sis;
+    }
+
+    /**
+     * s with its last letter replaced by the opposite division letter
+     */
+    public static String replaceLastChar(String s) {
+        StringBuffer sb = new StringBuffer(s);
+        int n = sb.length() - 1;
+        char x = sb.charAt(n);
+        switch(x) {
+        case 'a':
+            sb.setCharAt(n, 'p');
+            break;
+        case 'l':
+            sb.setCharAt(n, 'r');
+            break;
+        case 'd':
+            sb.setCharAt(n, 'v');
+            break;
+        case 'p':
+            sb.setCharAt(n, 'a');
+            break;
+        case 'r':
+            sb.setCharAt(n, 'l');
+            break;
+        case 'v':
+            sb.setCharAt(n, 'd');
+            break;
+
+        }
+        return sb.toString();
+    }
+
+    private static final String
+         SULSTON = "apldrv"
+        ;
+
+    private static final int
+         UNKNOWN = -2
+        ,NONE = -1
+        ,DAUGHTERS = 6
+        ,INITIAL = 256
+        ;
+}
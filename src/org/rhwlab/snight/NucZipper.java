@@ -5,14 +5,19 @@
 package org.rhwlab.snight;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-//import java.nio.file.Files;
+import java.io.RandomAccessFile;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.Hashtable;
 import java.util.Vector;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.CRC32;
 
 import org.rhwlab.utils.EUtils;
+import org.rhwlab.utils.ZipPool;
 import org.rhwlab.help.AceTreeHelp;
 
 
@@ -20,17 +25,68 @@ import org.rhwlab.help.AceTreeHelp;
  * takes the current contents of the NucleiMgr and prepares a zip
  * file with a structure like the nuclei portion of a normal input file
  * <br> this can be called following an edit
+ * <br> in incremental mode each time point is still formatted, but when
+ * it was not marked edited and its text matches the corresponding entry
+ * of the existing archive (same crc and size) the compressed entry is
+ * copied over as is instead of being deflated again; the crc check is
+ * needed because renaming and the expression tools change nuclei
+ * without going through the edit dialogs
+ * <br> the archive is built in a temp file next to the target and moved
+ * into place only when complete
  * @author biowolp
  * @version 1.0 Feb 15, 2005
  */
 public class NucZipper {
+    int iCopied;
+    int iEncoded;
+    boolean iSaved;
+    Progress iProgress;
+
+    /**
+     * told after each time point is written
+     */
+    public interface Progress {
+        void progress(int done, int total);
+    }
+
     /**
      * all the work is done in the constructor
      * @param file File object to store into (only the name is used)
-     * @param nucDir String path to the storage location for this file
      * @param nucleiMgr NucleiMgr object which has the nuclei data
      */
     public NucZipper(File file, NucleiMgr nucleiMgr) {
+        this(file, nucleiMgr, true);
+    }
+
+    /**
+     * @param incremental false to re-encode every time point
+     */
+    public NucZipper(File file, NucleiMgr nucleiMgr, boolean incremental) {
+        save(file, nucleiMgr, nucleiMgr.getNucleiRecord(), nucleiMgr.getEditedTimes(), incremental);
+        if (iSaved) nucleiMgr.clearEdited();
+        else new AceTreeHelp("/org/rhwlab/help/messages/PermissionError.html", 200, 200);
+    }
+
+    /**
+     * saves a snapshot of the nuclei taken earlier, possibly on another
+     * thread than the one doing the edits
+     * <br>the edit marks of nucleiMgr are neither read nor cleared; the
+     * caller passes the marks that belong to the snapshot and checks
+     * saved() afterwards
+     * @param edited zero based time indices edited since the last save
+     */
+    public NucZipper(File file, NucleiMgr nucleiMgr, Vector<Vector<Nucleus>> nuclei,
+            BitSet edited, Progress progress) {
+        iProgress = progress;
+        save(file, nucleiMgr, nuclei, edited, true);
+    }
+
+    public boolean saved() {
+        return iSaved;
+    }
+
+    private void save(File file, NucleiMgr nucleiMgr, Vector<Vector<Nucleus>> nuclei,
+            BitSet edited, boolean incremental) {
     	File targetFile = file;
     	String parent = file.getParent();
     	File tempFile = new File(parent + "/temp.zip");
@@ -41,12 +97,8 @@ public class NucZipper {
     		tempFile = new File(filePath);
     	}
         String nucDir = nucleiMgr.getConfig().iZipNucDir;
+        long timeStart = System.nanoTime();
         try {
-        	
-            FileOutputStream fos = new FileOutputStream(tempFile);
-            ZipOutputStream zos = new ZipOutputStream(fos);
-            Vector nuclei = nucleiMgr.getNucleiRecord();
-            
             // Find first entry of nonempty sub-vector starting from last index
             int lastEmptyIndex = nuclei.size()-1;
             for (int i = lastEmptyIndex; i >= 0; i--) {
@@ -57,41 +109,83 @@ public class NucZipper {
             	}
             }
             System.out.println("Last non-empty index in nuclei_record: "+lastEmptyIndex);
-            
-            // given long save time I'm changing behavior to use actual last loaded nucleus
-            // for (int i=0; i < nuclei.size(); i++) {
-            
-        	for (int i = 0; i < lastEmptyIndex; i++) {
-            	// I'm not sure why the above was replaced with the below
-            	// but I'm putting it back in an attempt to iteratively edit 
-            	//large data files (which requires them to be saved out fully	
-        		// for (int i=0; i <nucleiMgr.getiEndingIndex(); i++) {
-                String ename = nucDir + "t" + EUtils.makePaddedInt(i + 1) + "-nuclei";
-                zos.putNextEntry(new ZipEntry(ename));
-                String s;
-                for (int j=0; j < ((Vector)nuclei.elementAt(i)).size(); j++) {
-                    Nucleus n = (Nucleus)((Vector)nuclei.elementAt(i)).elementAt(j);
-                    s = formatNucleus(j, n);
-                    byte [] b = s.getBytes();
-                    zos.write(b, 0, b.length);
-                }
-                zos.closeEntry();
+
+            // the archive we copy unchanged entries from: the last save
+            // to this target if there is one, else the zip we loaded
+            File source = null;
+            if (incremental) {
+                source = targetFile;
+                if (!source.exists() && nucleiMgr.getZipNuclei() != null)
+                    source = new File(nucleiMgr.getZipNuclei().iZipName);
             }
-            addParameters(zos, nucleiMgr);
-            zos.close();
-            ChannelCopy.transferCopy(tempFile, targetFile);
-            //Files.deleteIfExists(tempFile.toPath());
-            try {
-            	tempFile.delete();
-            } catch (Exception e) {
-            	System.out.println("Failed to delete temp file.");
+            // the sidecar gets the very nuclei the zip entries were made from
+            Vector<Vector<Nucleus>> written = null;
+            if (nucleiMgr.getConfig().iNucleiCache == 1) written = new Vector<Vector<Nucleus>>(lastEmptyIndex);
+            writeZip(tempFile, source, nuclei, edited, lastEmptyIndex, nucDir, nucleiMgr, written);
+            ZipPool.release(targetFile.getPath());
+            replace(tempFile, targetFile);
+            if (written != null) {
+                new NucleiCache(written, lastEmptyIndex).write(targetFile);
             }
+            iSaved = true;
+            System.out.println("NucZipper: " + iCopied + " entries copied, " + iEncoded + " encoded in "
+                    + (System.nanoTime() - timeStart)/1000000 + " ms");
         } catch(IOException ioe) {
             System.out.println("NucZipper exception: " + ioe);
-            new AceTreeHelp("/org/rhwlab/help/messages/PermissionError.html", 200, 200);
+            tempFile.delete();
         }
     }
-    
+
+    /**
+     * moves the finished temp file over the target so that the target is
+     * always either the old or the new archive, never a partial copy
+     */
+    private static void replace(File tempFile, File targetFile) throws IOException {
+        Path from = tempFile.toPath();
+        Path to = targetFile.toPath();
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void writeZip(File zipFile, File source, Vector<Vector<Nucleus>> nuclei, BitSet edited,
+            int count, String nucDir, NucleiMgr nucleiMgr, Vector<Vector<Nucleus>> written)
+            throws IOException {
+        Hashtable<String, RawZip.Entry> old = null;
+        RandomAccessFile from = null;
+        if (source != null) {
+            old = RawZip.readDirectory(source);
+            if (old != null) from = new RandomAccessFile(source, "r");
+        }
+        RawZip.Writer zw = new RawZip.Writer(zipFile);
+        try {
+            NucleiEncoder encoder = new NucleiEncoder();
+            for (int i = 0; i < count; i++) {
+                String ename = nucDir + "t" + EUtils.makePaddedInt(i + 1) + "-nuclei";
+                Vector<Nucleus> v = new Vector<Nucleus>(nuclei.elementAt(i));
+                encoder.encode(v);
+                if (written != null) written.add(v);
+                long crc = encoder.getCrc();
+                RawZip.Entry e = old == null ? null : old.get(ename);
+                if (e != null && !edited.get(i)
+                        && e.getCrc() == crc && e.getSize() == encoder.getLength()) {
+                    zw.copyEntry(e, from);
+                    iCopied++;
+                } else {
+                    zw.addEntry(ename, encoder.getBuffer(), encoder.getLength(), crc);
+                    iEncoded++;
+                }
+                if (iProgress != null) iProgress.progress(i + 1, count);
+            }
+            addParameters(zw, nucleiMgr);
+        } finally {
+            zw.close();
+            if (from != null) from.close();
+        }
+    }
+
     private String addExtNumber(String path) {
     	// Find indices of parenthesis
     	int left = path.indexOf("(");
@@ -116,53 +210,21 @@ public class NucZipper {
 		return path;
     }
 
-    @SuppressWarnings("unused")
-	private void addParameters(ZipOutputStream zos, NucleiMgr nucleiMgr)
+    private void addParameters(RawZip.Writer zw, NucleiMgr nucleiMgr)
                     throws IOException {
-        ZipNuclei zn = nucleiMgr.getZipNuclei();
         String ename = nucleiMgr.getParameterEntry();
-        zos.putNextEntry(new ZipEntry(ename));
         Vector parameterFileInfo = nucleiMgr.getParameterFileInfo();
-        String s = null;
+        StringBuffer sb = new StringBuffer();
         if (parameterFileInfo != null) {
             for (int i=0; i < parameterFileInfo.size(); i++) {
-                s = (String)parameterFileInfo.elementAt(i);
-                s += "\n";
-                byte [] b = s.getBytes();
-                zos.write(b, 0, b.length);
+                sb.append((String)parameterFileInfo.elementAt(i));
+                sb.append("\n");
             }
         }
-        zos.closeEntry();
-    }
-
-
-    private String formatNucleus(int j, Nucleus n) {
-        StringBuffer sb = new StringBuffer();
-        sb.append(String.valueOf(j + 1) + CS);
-        int status = 0;
-        if (n.status > 0) status = 1;
-        sb.append(String.valueOf(status) + CS);
-        sb.append(String.valueOf(n.predecessor) + CS);
-        sb.append(String.valueOf(n.successor1) + CS);
-        sb.append(String.valueOf(n.successor2) + CS);
-        sb.append(String.valueOf(n.x) + CS);
-        sb.append(String.valueOf(n.y) + CS);
-        sb.append(String.valueOf(n.z) + CS);
-        sb.append(String.valueOf(n.size) + CS);
-        sb.append(n.identity + CS);
-        sb.append(String.valueOf(n.weight) + CS);
-        sb.append(String.valueOf(n.rweight) + CS);
-        sb.append(String.valueOf(n.rsum) + CS);
-        sb.append(String.valueOf(n.rcount) + CS);
-        sb.append(n.assignedID + CS);
-        sb.append(String.valueOf(n.rwraw) + CS);
-        sb.append(String.valueOf(n.rwcorr1) + CS);
-        sb.append(String.valueOf(n.rwcorr2) + CS);
-        sb.append(String.valueOf(n.rwcorr3) + CS);
-        sb.append(String.valueOf(n.rwcorr4) + CS);
-        sb.append("\n");
-
-        return sb.toString();
+        byte [] b = sb.toString().getBytes();
+        CRC32 crc = new CRC32();
+        crc.update(b, 0, b.length);
+        zw.addEntry(ename, b, b.length, crc.getValue());
     }
 
      /**
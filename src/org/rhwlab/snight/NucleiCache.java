@@ -0,0 +1,357 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.snight;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Hashtable;
+import java.util.Vector;
+import java.util.zip.CRC32;
+
+/**
+ * the nuclei entries of a zip in a form that can be kept in a binary
+ * sidecar file next to the zip (name.zip.ncache)
+ * <br>the sidecar holds one primitive column per Nucleus field plus a
+ * string table for identity and assignedID; it is stamped with the
+ * size, modification time and crc of the zip it was made from and is
+ * ignored as soon as the zip changes
+ * <br>the contents are exactly what reading the zip text would give,
+ * entry order included, so NucleiMgr fills nuclei_record the same way
+ * from either source
+ */
+public class NucleiCache {
+    int []              iIndices;
+    Vector<Nucleus> []  iNuclei;
+    boolean             iFromRecord;
+
+    /**
+     * the entries just decoded from the zip text
+     */
+    public NucleiCache(NucleiZipLoader loader) {
+        this(loader.size());
+        for (int k=0; k < iIndices.length; k++) {
+            iIndices[k] = loader.getIndex(k);
+            iNuclei[k] = loader.getNuclei(k);
+        }
+    }
+
+    /**
+     * the first count time points of a nuclei_record as NucZipper
+     * writes them; values are normalized on write the same way the
+     * text round trip would normalize them
+     */
+    public NucleiCache(Vector<Vector<Nucleus>> nucleiRecord, int count) {
+        this(count);
+        iFromRecord = true;
+        for (int k=0; k < count; k++) {
+            iIndices[k] = k;
+            iNuclei[k] = nucleiRecord.get(k);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private NucleiCache(int count) {
+        iIndices = new int[count];
+        iNuclei = new Vector[count];
+    }
+
+    public int size() {
+        return iIndices.length;
+    }
+
+    public int getIndex(int k) {
+        return iIndices[k];
+    }
+
+    public Vector<Nucleus> getNuclei(int k) {
+        return iNuclei[k];
+    }
+
+    public static File getCacheFile(File zip) {
+        return new File(zip.getPath() + EXT);
+    }
+
+    /**
+     * reads the sidecar of the given zip
+     * @return null if there is no sidecar or it does not match the zip
+     */
+    public static NucleiCache read(File zip) {
+        File cacheFile = getCacheFile(zip);
+        if (!cacheFile.exists() || !zip.exists()) return null;
+        long timeStart = System.nanoTime();
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(cacheFile, "r");
+            FileChannel fc = raf.getChannel();
+            MappedByteBuffer mb = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            if (mb.getInt() != MAGIC || mb.getInt() != VERSION) return null;
+            long length = mb.getLong();
+            long modified = mb.getLong();
+            long crc = mb.getLong();
+            if (length != zip.length() || modified != zip.lastModified()) return null;
+            if (crc != checksum(zip)) return null;
+
+            int entries = mb.getInt();
+            int total = mb.getInt();
+            NucleiCache cache = new NucleiCache(entries);
+            int [] counts = new int[entries];
+            IntBuffer ib = mb.asIntBuffer();
+            ib.get(cache.iIndices);
+            ib.get(counts);
+            int [][] columns = new int[COLUMNS][total];
+            for (int c=0; c < COLUMNS; c++) ib.get(columns[c]);
+            mb.position(mb.position() + 4 * ib.position());
+            String [] names = readStrings(mb);
+
+            int p = 0;
+            for (int k=0; k < entries; k++) {
+                Vector<Nucleus> v = new Vector<Nucleus>(counts[k]);
+                for (int j=0; j < counts[k]; j++, p++) {
+                    v.add(makeNucleus(columns, p, names));
+                }
+                cache.iNuclei[k] = v;
+            }
+            System.out.println("NucleiCache: read " + total + " nuclei from " + cacheFile.getName()
+                + " in " + (System.nanoTime() - timeStart)/1000000 + " ms");
+            return cache;
+        } catch(Exception e) {
+            // a truncated or foreign file is simply not a usable cache
+            System.out.println("NucleiCache: ignoring " + cacheFile + CS + e);
+            return null;
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch(IOException ioe) {
+                }
+            }
+        }
+    }
+
+    /**
+     * writes the sidecar for the given zip, replacing any old one
+     * <br>failure only costs the next open its speedup so it is reported
+     * and otherwise ignored
+     */
+    public void write(File zip) {
+        File cacheFile = getCacheFile(zip);
+        File tempFile = new File(cacheFile.getPath() + ".tmp");
+        long timeStart = System.nanoTime();
+        try {
+            Hashtable<String, Integer> table = new Hashtable<String, Integer>();
+            Vector<String> names = new Vector<String>();
+            int total = 0;
+            for (int k=0; k < iNuclei.length; k++) total += iNuclei[k].size();
+            int [][] columns = new int[COLUMNS][total];
+            int p = 0;
+            for (int k=0; k < iNuclei.length; k++) {
+                Vector<Nucleus> v = iNuclei[k];
+                for (int j=0; j < v.size(); j++, p++) {
+                    if (!fillColumns(columns, p, j, v.get(j), table, names)) {
+                        System.out.println("NucleiCache: names cannot be cached, no sidecar written");
+                        cacheFile.delete();
+                        return;
+                    }
+                }
+            }
+
+            DataOutputStream dos = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
+            try {
+                dos.writeInt(MAGIC);
+                dos.writeInt(VERSION);
+                dos.writeLong(zip.length());
+                dos.writeLong(zip.lastModified());
+                dos.writeLong(checksum(zip));
+                dos.writeInt(iIndices.length);
+                dos.writeInt(total);
+                for (int k=0; k < iIndices.length; k++) dos.writeInt(iIndices[k]);
+                for (int k=0; k < iNuclei.length; k++) dos.writeInt(iNuclei[k].size());
+                for (int c=0; c < COLUMNS; c++) {
+                    int [] col = columns[c];
+                    for (int i=0; i < total; i++) dos.writeInt(col[i]);
+                }
+                dos.writeInt(names.size());
+                for (int i=0; i < names.size(); i++) {
+                    String s = names.get(i);
+                    dos.writeInt(s.length());
+                    dos.writeChars(s);
+                }
+            } finally {
+                dos.close();
+            }
+            cacheFile.delete();
+            if (!tempFile.renameTo(cacheFile)) {
+                System.out.println("NucleiCache: could not rename " + tempFile);
+                tempFile.delete();
+                return;
+            }
+            System.out.println("NucleiCache: wrote " + total + " nuclei to " + cacheFile.getName()
+                + " in " + (System.nanoTime() - timeStart)/1000000 + " ms");
+        } catch(IOException ioe) {
+            System.out.println("NucleiCache: could not write " + cacheFile + CS + ioe);
+            tempFile.delete();
+        }
+    }
+
+    private boolean fillColumns(int [][] columns, int p, int j, Nucleus n,
+            Hashtable<String, Integer> table, Vector<String> names) {
+        int index = n.index;
+        int status = n.status;
+        String identity = n.identity;
+        String assignedID = n.assignedID;
+        if (iFromRecord) {
+            // what NucZipper writes and NucleiZipLoader reads back
+            index = j + 1;
+            status = n.status > 0 ? 1 : -1;
+            identity = normalize(identity);
+            assignedID = normalize(assignedID);
+            if (identity == null || assignedID == null) return false;
+        }
+        columns[INDEX][p] = index;
+        columns[STATUS][p] = status;
+        columns[PRED][p] = n.predecessor;
+        columns[SUCC1][p] = n.successor1;
+        columns[SUCC2][p] = n.successor2;
+        columns[X][p] = n.x;
+        columns[Y][p] = n.y;
+        columns[Z][p] = Float.floatToRawIntBits(n.z);
+        columns[SIZE][p] = n.size;
+        columns[WEIGHT][p] = n.weight;
+        columns[RWEIGHT][p] = n.rweight;
+        columns[RSUM][p] = n.rsum;
+        columns[RCOUNT][p] = n.rcount;
+        columns[RWRAW][p] = n.rwraw;
+        columns[RWCORR1][p] = n.rwcorr1;
+        columns[RWCORR2][p] = n.rwcorr2;
+        columns[RWCORR3][p] = n.rwcorr3;
+        columns[RWCORR4][p] = n.rwcorr4;
+        columns[IDENTITY][p] = intern(identity, table, names);
+        columns[ASSIGNEDID][p] = intern(assignedID, table, names);
+        return true;
+    }
+
+    /**
+     * the name as it will read back from the text; null when the text
+     * form would not survive tokenizing
+     */
+    private static String normalize(String s) {
+        s = String.valueOf(s).trim();
+        for (int i=0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ',' || c > 127) return null;
+        }
+        return s;
+    }
+
+    private static int intern(String s, Hashtable<String, Integer> table, Vector<String> names) {
+        if (s == null) return -1;
+        Integer id = table.get(s);
+        if (id == null) {
+            id = names.size();
+            table.put(s, id);
+            names.add(s);
+        }
+        return id;
+    }
+
+    private static Nucleus makeNucleus(int [][] columns, int p, String [] names) {
+        Nucleus n = new Nucleus();
+        n.index = columns[INDEX][p];
+        n.status = columns[STATUS][p];
+        n.predecessor = columns[PRED][p];
+        n.successor1 = columns[SUCC1][p];
+        n.successor2 = columns[SUCC2][p];
+        n.x = columns[X][p];
+        n.y = columns[Y][p];
+        n.z = Float.intBitsToFloat(columns[Z][p]);
+        n.size = columns[SIZE][p];
+        n.weight = columns[WEIGHT][p];
+        n.rweight = columns[RWEIGHT][p];
+        n.rsum = columns[RSUM][p];
+        n.rcount = columns[RCOUNT][p];
+        n.rwraw = columns[RWRAW][p];
+        n.rwcorr1 = columns[RWCORR1][p];
+        n.rwcorr2 = columns[RWCORR2][p];
+        n.rwcorr3 = columns[RWCORR3][p];
+        n.rwcorr4 = columns[RWCORR4][p];
+        int id = columns[IDENTITY][p];
+        n.identity = id < 0 ? null : names[id];
+        id = columns[ASSIGNEDID][p];
+        n.assignedID = id < 0 ? null : names[id];
+        return n;
+    }
+
+    private static String [] readStrings(ByteBuffer b) {
+        String [] sa = new String[b.getInt()];
+        for (int i=0; i < sa.length; i++) {
+            char [] ca = new char[b.getInt()];
+            b.asCharBuffer().get(ca);
+            b.position(b.position() + 2 * ca.length);
+            sa[i] = new String(ca);
+        }
+        return sa;
+    }
+
+    private static long checksum(File f) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(f, "r");
+        try {
+            FileChannel fc = raf.getChannel();
+            CRC32 crc = new CRC32();
+            ByteBuffer b = ByteBuffer.allocateDirect(1 << 20);
+            while (fc.read(b) > 0) {
+                b.flip();
+                crc.update(b);
+                b.clear();
+            }
+            return crc.getValue();
+        } finally {
+            raf.close();
+        }
+    }
+
+    public static final String
+         EXT = ".ncache"
+        ,CS = ", "
+        ;
+
+    private static final int
+         MAGIC = 0x4e434143 // NCAC
+        ,VERSION = 1
+        ;
+
+    // column order in the sidecar
+    private static final int
+         INDEX = 0
+        ,STATUS = 1
+        ,PRED = 2
+        ,SUCC1 = 3
+        ,SUCC2 = 4
+        ,X = 5
+        ,Y = 6
+        ,Z = 7
+        ,SIZE = 8
+        ,WEIGHT = 9
+        ,RWEIGHT = 10
+        ,RSUM = 11
+        ,RCOUNT = 12
+        ,RWRAW = 13
+        ,RWCORR1 = 14
+        ,RWCORR2 = 15
+        ,RWCORR3 = 16
+        ,RWCORR4 = 17
+        ,IDENTITY = 18
+        ,ASSIGNEDID = 19
+        ,COLUMNS = 20
+        ;
+}
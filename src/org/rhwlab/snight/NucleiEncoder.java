@@ -0,0 +1,157 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.snight;
+
+import java.util.Vector;
+import java.util.zip.CRC32;
+
+/**
+ * formats the nuclei of one time point into the text of a tNNN-nuclei
+ * zip entry, byte for byte what NucZipper.formatNucleus produced
+ * <br>the output buffer is reused from one time point to the next and
+ * numbers are written as digits directly, so a whole series can be
+ * encoded without building a String per field
+ */
+public class NucleiEncoder {
+    byte []     iBuf;
+    int         iLen;
+    CRC32       iCrc;
+    // last few z values and their Float.toString bytes
+    int []      iZBits;
+    byte [][]   iZBytes;
+
+    public NucleiEncoder() {
+        iBuf = new byte[1 << 16];
+        iCrc = new CRC32();
+        iZBits = new int[ZCACHE];
+        iZBytes = new byte[ZCACHE][];
+    }
+
+    /**
+     * encodes one time point, replacing the previous contents of the buffer
+     */
+    public void encode(Vector<Nucleus> nuclei) {
+        iLen = 0;
+        for (int j=0; j < nuclei.size(); j++) {
+            encode(j, nuclei.get(j));
+        }
+    }
+
+    public byte [] getBuffer() {
+        return iBuf;
+    }
+
+    public int getLength() {
+        return iLen;
+    }
+
+    /**
+     * crc32 of the current contents, as stored in a zip entry
+     */
+    public long getCrc() {
+        iCrc.reset();
+        iCrc.update(iBuf, 0, iLen);
+        return iCrc.getValue();
+    }
+
+    private void encode(int j, Nucleus n) {
+        putInt(j + 1);
+        putInt(n.status > 0 ? 1 : 0);
+        putInt(n.predecessor);
+        putInt(n.successor1);
+        putInt(n.successor2);
+        putInt(n.x);
+        putInt(n.y);
+        putFloat(n.z);
+        putInt(n.size);
+        putString(n.identity);
+        putInt(n.weight);
+        putInt(n.rweight);
+        putInt(n.rsum);
+        putInt(n.rcount);
+        putString(n.assignedID);
+        putInt(n.rwraw);
+        putInt(n.rwcorr1);
+        putInt(n.rwcorr2);
+        putInt(n.rwcorr3);
+        putInt(n.rwcorr4);
+        ensure(1);
+        iBuf[iLen++] = '\n';
+    }
+
+    // each field is followed by ", " as in formatNucleus
+    private void putInt(int v) {
+        ensure(13);
+        if (v == Integer.MIN_VALUE) {
+            putBytes(String.valueOf(v).getBytes());
+            return;
+        }
+        if (v < 0) {
+            iBuf[iLen++] = '-';
+            v = -v;
+        }
+        int start = iLen;
+        do {
+            iBuf[iLen++] = (byte)('0' + v % 10);
+            v /= 10;
+        } while (v > 0);
+        for (int a = start, b = iLen - 1; a < b; a++, b--) {
+            byte t = iBuf[a];
+            iBuf[a] = iBuf[b];
+            iBuf[b] = t;
+        }
+        iBuf[iLen++] = ',';
+        iBuf[iLen++] = ' ';
+    }
+
+    private void putFloat(float f) {
+        int bits = Float.floatToRawIntBits(f);
+        int slot = (bits ^ (bits >>> 16)) & (ZCACHE - 1);
+        byte [] b = iZBytes[slot];
+        if (b == null || iZBits[slot] != bits) {
+            b = String.valueOf(f).getBytes();
+            iZBytes[slot] = b;
+            iZBits[slot] = bits;
+        }
+        putBytes(b);
+    }
+
+    private void putString(String s) {
+        if (s == null) s = "null";
+        int n = s.length();
+        ensure(n + 2);
+        for (int i=0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c > 127) {
+                // let the platform charset handle anything unusual
+                iLen -= i;
+                putBytes(s.getBytes());
+                return;
+            }
+            iBuf[iLen++] = (byte)c;
+        }
+        iBuf[iLen++] = ',';
+        iBuf[iLen++] = ' ';
+    }
+
+    private void putBytes(byte [] b) {
+        ensure(b.length + 2);
+        System.arraycopy(b, 0, iBuf, iLen, b.length);
+        iLen += b.length;
+        iBuf[iLen++] = ',';
+        iBuf[iLen++] = ' ';
+    }
+
+    private void ensure(int n) {
+        if (iLen + n <= iBuf.length) return;
+        byte [] b = new byte[Math.max(iBuf.length * 2, iLen + n)];
+        System.arraycopy(iBuf, 0, b, 0, iLen);
+        iBuf = b;
+    }
+
+    private static final int
+         ZCACHE = 256
+        ;
+}
@@ -9,10 +9,9 @@ import java.io.File;
 //import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.PrintWriter;
-import java.util.Enumeration;
+import java.util.BitSet;
 import java.util.GregorianCalendar;
 import java.util.Hashtable;
-import java.util.StringTokenizer;
 import java.util.Vector;
 import java.util.zip.ZipEntry;
 
@@ -44,7 +43,6 @@ public class NucleiMgr {
     FileOutputStream 		iFOS;
     PrintWriter 			iPWriter;
     Vector<Vector<Nucleus>> nuclei_record;
-    Vector<Vector<Nucleus>> nuclei_record_backup;
     Parameters 				Parametersx;
     String 					iParameterEntry;
     int 					iStartingIndex;
@@ -84,6 +82,13 @@ public class NucleiMgr {
     PrintWriter				iPrintWriter;
 
     int				iStartTime;
+    BitSet          iEditedTimes;  // zero based time indices changed since the last save
+    BitSet          iTreeDirty;    // zero based time indices changed since the last processNuclei
+    Vector<NucleusIndex> iNucleusIndexes; // by zero based time, null until needed
+    Vector<NucleusNames> iNucleusNames;   // by zero based time, null until needed
+    EditJournal     iJournal;
+    NucleusStore    iStore;        // the nuclei while parked, else null
+    LineageNames    iLineageNames;
 
     static String p2 = "t";
     static String p3 = "-nuclei";
@@ -289,6 +294,7 @@ public class NucleiMgr {
     }
 
     public void computeRWeights() {
+        unpark();
         int k = getWeightMethodIndex();
         try {
             for (int i = iStartingIndex; i <= iEndingIndex; i++) {
@@ -521,94 +527,8 @@ public class NucleiMgr {
         //nuclei_record = new Vector(??, VEC_INCREMENT_SIZE);
 
         iFakeNuclei = false; //override this param
-        Nucleus n = null;
-        int debugCount = 0;
-        System.out.println("readNuclei:2 " + iMovie.time_end + CS + iMovie.time_start);
-
-        // Try this way of iterating through zip entries
-        //InputStream is = getInputStream
-        //ZipEntry ze = null;
 
-        // Old way of iteration
-        Enumeration<? extends ZipEntry> e = zn.iZipFile.entries();
-        //int lastNonEmptyIndex = 0;
-        while (e.hasMoreElements()) {
-            //System.out.println("More elements...");
-            ZipEntry ze = e.nextElement();
-            Vector<Nucleus> v = new Vector<Nucleus>();
-            String [] saa = zn.parseZipEntry(ze);
-
-            if (saa.length < 2)
-                continue; // maybe a nuclei/ entry
-
-            if (saa[0].equals("nuclei")) {
-                int index = zn.parseZipEntryName(saa[1]) - 1;
-                //System.out.println("Zip index: "+index);
-                if (index < 0)
-                    continue; // probably a nuclei/log entry
-                String s = zn.readLine(ze);
-                if (s == null) {
-                    if (nuclei_record.size() > index) {
-                        nuclei_record.setElementAt(v, index);
-                        //lastNonEmptyIndex = index;
-                        if (index > iLastNucleiFile)
-                            iLastNucleiFile = index;
-                    }
-                    continue;
-                }
-                boolean newFormat = true;
-                // detect old format by the absence of commas
-                //if (debugCount++ < 10) println("readNuclei: " + s);
-                if (s.indexOf(',') == -1)
-                    newFormat = false;
-                int j = 1;
-                // added code to handle some misformed nuclei files
-                // a little squirrely maybe but it is working
-                while (s != null && s.length() > 10) {
-                    //if (index == 199) println("\n\nREADNUCLEI: " + s);
-                    try {
-                        String [] sa;
-                        if (newFormat)
-                            sa = getTokens(s, 0);
-                        else
-                            sa = getTokens(s);
-                        if (sa[0] != null
-                                && (sa[0].length() > 0
-                                && Integer.parseInt(sa[0]) != j++)) {
-                            break;
-                        }
-                        if (newFormat) {
-                            n = new Nucleus(sa);
-                        	/*
-                        	if (n.identity.isEmpty() || n.identity == null)
-                        		System.out.println("No name for nucleus: "+n);
-                    		*/
-                            //System.out.println("Created nucleus: ("+n.identity+")");
-                        }
-                        else
-                            n = new Nucleus(sa, !newFormat);
-                        v.add(n);
-                        s = zn.readLine(ze);
-                    }
-                    catch(Exception ee) {
-                        System.out.println("readNuclei exception: " + ee);
-                        System.out.println(s);
-                        System.out.println("time=" + index + ", j = " + j);
-                        zn.closeEntry();
-                        ee.printStackTrace();
-                        System.exit(1);
-                        break;
-                    }
-                }
-
-                if (nuclei_record.size() > index) {
-                    nuclei_record.setElementAt(v, index);
-                    if (index > iLastNucleiFile)
-                        iLastNucleiFile = index;
-                }
-                zn.closeEntry();
-            }
-        }
+        loadNucleiEntries(zn);
         println("readNuclei: iEndingIndex=" + iEndingIndex + CS + iLastNucleiFile + CS + nuclei_record.size());
         if (iEndingIndex == 1) {
             iEndingIndex = iLastNucleiFile + 1;
@@ -631,8 +551,71 @@ public class NucleiMgr {
         return nuclei_record.size();
     }
 
+    /**
+     * fills nuclei_record from the binary sidecar when it is enabled and
+     * still matches the zip, otherwise from the zip text
+     * <br>entries are handed back in zip order so nuclei_record is filled
+     * as the old serial reader did
+     */
+    void loadNucleiEntries(ZipNuclei zn) {
+        NucleiCache cache = readNucleiEntries(zn, iConfig);
+        internNames(cache, getLineageNames());
+        iLastNucleiFile = fillRecord(cache, nuclei_record, iLastNucleiFile);
+    }
+
+    /**
+     * gives the nuclei of a cell one String for its name rather than
+     * one per line read
+     */
+    static void internNames(NucleiCache cache, LineageNames names) {
+        for (int k=0; k < cache.size(); k++) {
+            Vector<Nucleus> nuclei = cache.getNuclei(k);
+            for (int j=0; j < nuclei.size(); j++) {
+                Nucleus n = nuclei.get(j);
+                n.identity = names.intern(n.identity);
+                n.assignedID = names.intern(n.assignedID);
+            }
+        }
+    }
+
+    /**
+     * the nuclei entries of the zip, from the sidecar or the zip text
+     */
+    static NucleiCache readNucleiEntries(ZipNuclei zn, Config config) {
+        File zip = new File(zn.iZipName);
+        NucleiCache cache = null;
+        if (config.iNucleiCache == 1)
+            cache = NucleiCache.read(zip);
+        if (cache == null) {
+            NucleiZipLoader loader = new NucleiZipLoader(zn);
+            loader.load();
+            System.out.println(loader.getTimings());
+            cache = new NucleiCache(loader);
+            if (config.iNucleiCache == 1)
+                cache.write(zip);
+        }
+        return cache;
+    }
+
+    /**
+     * puts the entries that fit into the record
+     * @return the last zero based time filled, or last if that is later
+     */
+    static int fillRecord(NucleiCache cache, Vector<Vector<Nucleus>> record, int last) {
+        for (int k=0; k < cache.size(); k++) {
+            int index = cache.getIndex(k);
+            if (record.size() > index) {
+                record.setElementAt(cache.getNuclei(k), index);
+                if (index > last)
+                    last = index;
+            }
+        }
+        return last;
+    }
+
     // Called by classes trying to access nuclei_record.elementAt(...)
     public Vector<Nucleus> getElementAt(int i) {
+        unpark();
         if (nuclei_record.size()-1 < i) {
             int oldSize = nuclei_record.size();
             // Every time we run out of room in the vector, we add on 30 more indices
@@ -697,6 +680,7 @@ public class NucleiMgr {
     }
 
     public String getIndex(String name, int time) {
+        unpark();
         int k = 0;
 
         // Resize if trying to access a time greater than number of files loaded
@@ -725,17 +709,20 @@ public class NucleiMgr {
     }
 
     public Nucleus findClosestNucleusXYZ(int mx, int my, float mz, int time) {
+        unpark();
         Vector<Nucleus> nuclei = nuclei_record.elementAt(time - 1);
+        NucleusIndex index = getNucleusIndex(time);
+        int c = index.cellAt(mx, my);
+        if (c < 0) return null;
         double x, y, z, r;
         boolean g;
         Nucleus candidate = null;
         double d = 100000;
         double xyz;
         mz *= iZPixRes;
-        for (int j=0; j < nuclei.size(); j++) {
-            Nucleus n = nuclei.elementAt(j);
+        for (int k = index.iStart[c]; k < index.iStart[c + 1]; k++) {
+            Nucleus n = nuclei.elementAt(index.iItems[k]);
             //System.out.print("findClosest..: " + n);
-            if (n.status == -1) continue;
             x = n.x;
             y = n.y;
             z = n.z * iZPixRes;
@@ -757,24 +744,23 @@ public class NucleiMgr {
     }
 
     public Nucleus findClosestNucleus(int mx, int my, int time) {
+        unpark();
         //System.out.println("findClosestNucleus: " + mx + CS + my + CS + time);
         Vector<Nucleus> nuclei = nuclei_record.elementAt(time - 1);
+        NucleusIndex index = getNucleusIndex(time);
+        int c = index.cellAt(mx, my);
+        if (c < 0) return null;
         double x, y, r;
         boolean g;
         Nucleus candidate = null;
         double d = 100000;
         double xy;
-        for (int j=0; j < nuclei.size(); j++) {
-            Nucleus n = nuclei.elementAt(j);
-            //System.out.println("findClosest..: " + n);
-            //System.out.print(n);
-            if (n.status == -1) continue;
+        for (int k = index.iStart[c]; k < index.iStart[c + 1]; k++) {
+            Nucleus n = nuclei.elementAt(index.iItems[k]);
             x = n.x;
             y = n.y;
             r = n.size/2.;
             xy = Math.abs(x - mx) + Math.abs(y - my);
-            //System.out.print("findClosest: "  + j + CS + n.identity + CS + x + CS + y + CS
-            //        + mx + CS + my + CS + r + CS + xy);
             g = Math.abs(x - mx) < r;
             if (!g) continue;
             g = Math.abs(y - my) < r;
@@ -789,6 +775,7 @@ public class NucleiMgr {
     }
 
     public Nucleus findClosestNucleus(int mx, int my, int mz, int time) {
+        unpark();
         //System.out.println("findClosestNucleus: " + mx + CS + my + CS + mz + CS + time);
         if (time < 1) time = 1;
         Vector<Nucleus> nuclei = null;
@@ -797,23 +784,22 @@ public class NucleiMgr {
         } catch(Exception e) {
             return null;
         }
+        NucleusIndex index = getNucleusIndex(time);
+        int c = index.cellAt(mx, my);
+        if (c < 0) return null;
         double x, y, z, r;
         boolean g;
         Nucleus candidate = null;
         double d = 100000;
         double xy;
         mz *= iZPixRes;
-        for (int j=0; j < nuclei.size(); j++) {
-            Nucleus n = nuclei.elementAt(j);
-            //System.out.print(n);
-            if (n.status == -1) continue;
+        for (int k = index.iStart[c]; k < index.iStart[c + 1]; k++) {
+            Nucleus n = nuclei.elementAt(index.iItems[k]);
             x = n.x;
             y = n.y;
             z = (int)(n.z * iZPixRes);
             r = n.size/2.;
             xy = Math.abs(x - mx) + Math.abs(y - my) + Math.abs(z - mz);
-            //System.out.print("findClosest: "  + j + CS + n.identity + CS + x + CS + y + CS
-            //        + mx + CS + my + CS + r + CS + xy);
             g = Math.abs(x - mx) < r;
             if (!g) continue;
             g = Math.abs(y - my) < r;
@@ -829,10 +815,97 @@ public class NucleiMgr {
         return candidate;
     }
 
+    /**
+     * the live nuclei at the (one based) time whose centers are within
+     * radius pixels of x, y, z; z is in planes and is scaled by the z
+     * pixel resolution as in findClosestNucleus
+     * <br>for tools that look for neighbors, such as Overlaps
+     */
+    public Vector<Nucleus> findNucleiWithin(int x, int y, float z, double radius, int time) {
+        Vector<Nucleus> v = getNucleusIndex(time).within(x, y, radius);
+        double r2 = radius * radius;
+        for (int i = v.size() - 1; i >= 0; i--) {
+            Nucleus n = v.get(i);
+            double dx = n.x - x, dy = n.y - y, dz = (n.z - z) * iZPixRes;
+            if (dx * dx + dy * dy + dz * dz > r2) v.remove(i);
+        }
+        return v;
+    }
+
+    /**
+     * the spatial index of the nuclei at the (one based) time, built
+     * when first needed and again after the time point is marked edited
+     */
+    public NucleusIndex getNucleusIndex(int time) {
+        unpark();
+        Vector<Nucleus> nuclei = nuclei_record.elementAt(time - 1);
+        if (iNucleusIndexes == null) iNucleusIndexes = new Vector<NucleusIndex>();
+        if (iNucleusIndexes.size() < nuclei_record.size()) iNucleusIndexes.setSize(nuclei_record.size());
+        NucleusIndex index = iNucleusIndexes.get(time - 1);
+        if (index == null || !index.isFor(nuclei)) {
+            index = new NucleusIndex(nuclei);
+            iNucleusIndexes.set(time - 1, index);
+        }
+        return index;
+    }
+
+    /**
+     * the identity and hashKey maps of the nuclei at the (one based)
+     * time, built when first needed and again after the time point is
+     * marked edited or the nuclei are renamed
+     */
+    public NucleusNames getNucleusNames(int time) {
+        unpark();
+        Vector<Nucleus> nuclei = nuclei_record.elementAt(time - 1);
+        if (iNucleusNames == null) iNucleusNames = new Vector<NucleusNames>();
+        if (iNucleusNames.size() < nuclei_record.size()) iNucleusNames.setSize(nuclei_record.size());
+        NucleusNames names = iNucleusNames.get(time - 1);
+        if (names == null || !names.isFor(nuclei)) {
+            names = new NucleusNames(nuclei);
+            iNucleusNames.set(time - 1, names);
+        }
+        return names;
+    }
+
+    private void dropNucleusIndex(int i) {
+        if (iNucleusIndexes != null && i < iNucleusIndexes.size()) iNucleusIndexes.set(i, null);
+        dropNucleusNames(i);
+    }
+
+    private void dropNucleusNames(int i) {
+        if (iNucleusNames != null && i < iNucleusNames.size()) iNucleusNames.set(i, null);
+    }
+
+    /**
+     * drops the identity and hashKey maps of every time point; called
+     * when names or hashKeys are reassigned wholesale
+     */
+    public void namesChanged() {
+        iNucleusNames = null;
+    }
+
 
     public Nucleus getCurrentCellData(String cellName, int time) {
-        Vector<Nucleus> nucData = nuclei_record.elementAt(time - 1);
-        return NucUtils.getCurrentCellData(nucData, cellName);
+        if (cellName == null) return null;
+        Nucleus n = getNucleusNames(time).byName(cellName);
+        if (n != null && !cellName.equals(n.identity)) {
+            // renamed without an edit mark; the map is rebuilt
+            dropNucleusNames(time - 1);
+            n = getNucleusNames(time).byName(cellName);
+        }
+        if (n == null) {
+            // a nucleus given the name without an edit mark is not in the
+            // map; the scan finds it, and the map is rebuilt next time
+            Vector<Nucleus> nuclei = nuclei_record.elementAt(time - 1);
+            for (int j=0; j < nuclei.size(); j++) {
+                Nucleus nj = nuclei.elementAt(j);
+                if (cellName.equals(nj.identity)) {
+                    dropNucleusNames(time - 1);
+                    return nj;
+                }
+            }
+        }
+        return n;
     }
 
     @SuppressWarnings("unused")
@@ -845,25 +918,30 @@ public class NucleiMgr {
     }
 
     public Vector<Nucleus> getNuclei(int time) {
+        unpark();
         return nuclei_record.elementAt(time);
     }
 
-    @SuppressWarnings("unused")
     public Nucleus getNucleusFromHashkey(String hashKey, int time) {
-        Nucleus r = null;
-        boolean found = false;
-        Vector<Nucleus> nucData = nuclei_record.elementAt(time - 1);
-        for (int j = 0; j < nucData.size(); j++) {
-            Nucleus n = nucData.elementAt(j);
-            //println("getNucleusFromHashkey: " + n);
-            if (n.status < 0) continue;
-            if (n.hashKey.equals(hashKey)) {
-                found = true;
-                r = n;
-                break;
+        if (hashKey == null) return null;
+        Nucleus n = getNucleusNames(time).byKey(hashKey);
+        if (n != null && (n.status < 0 || !hashKey.equals(n.hashKey))) {
+            dropNucleusNames(time - 1);
+            n = getNucleusNames(time).byKey(hashKey);
+        }
+        if (n == null) {
+            // as in getCurrentCellData, for a nucleus revived or given
+            // the key without an edit mark
+            Vector<Nucleus> nuclei = nuclei_record.elementAt(time - 1);
+            for (int j=0; j < nuclei.size(); j++) {
+                Nucleus nj = nuclei.elementAt(j);
+                if (nj.status >= 0 && hashKey.equals(nj.hashKey)) {
+                    dropNucleusNames(time - 1);
+                    return nj;
+                }
             }
         }
-        return r;
+        return n;
     }
 
     public double nucDiameter(Nucleus n, double imgPlane) {
@@ -1036,6 +1114,7 @@ public class NucleiMgr {
     */
 
     public void reviewNuclei() {
+        unpark();
         Vector<Vector<Nucleus>> nr = nuclei_record;
         for (int i=194; i < 195; i++) {
             Vector<Nucleus> nuclei = nr.get(i);
@@ -1049,7 +1128,9 @@ public class NucleiMgr {
 
     // Timing commented out -was used for optimization
     public void processNuclei(boolean doIdentity, int namingMethod) {
+        unpark();
         println("NucleiMgr processing nuclei including: assigning names, building AncesTree");
+        iTreeDirty = null;
         //println("reviewNuclei, 1");
         //reviewNuclei();
         setAllSuccessors();
@@ -1084,6 +1165,7 @@ public class NucleiMgr {
         if (iStartingIndex < iStartTime)
             newstart = iStartTime;
         iAncesTree = new AncesTree(null, this, newstart, iEndingIndex);
+        namesChanged();
 //        Cell PP = (Cell)iAncesTree.getCellsByName().get("P");
         //long timeEnd = System.nanoTime();
         //double timeDiff = (timeEnd-timeStart)/1e6;
@@ -1101,6 +1183,7 @@ public class NucleiMgr {
     // because of squirrely behavior of the DefaultMutableTreeNode
     // basically I got the code from AceTree.updateRoot()
     public Cell getRoot() {
+        unpark();
         Cell root = new Cell(AceTree.ROOTNAME);
         Vector rootCells = iAncesTree.getRootCells();
         Enumeration e = rootCells.elements();
@@ -1112,11 +1195,42 @@ public class NucleiMgr {
         return root;
     }
     */
+    /**
+     * brings successors, names and the AncesTree up to date after edits,
+     * redoing only what follows the first time marked edited since the
+     * last processNuclei; the AncesTree is updated in place
+     * @return false, doing nothing, if that is not possible and
+     * processNuclei has to be run instead
+     */
+    public boolean updateNuclei() {
+        unpark();
+        if (iAncesTree == null || iIdentity == null || iTreeDirty == null) return false;
+        if (iIdentity.getNamingMethod() != getConfig().iNamingMethod) return false;
+        BitSet dirty = iTreeDirty;
+        // the tree is rebuilt from the time before the first edit, whose
+        // successors point into the edited time
+        int time = dirty.nextSetBit(0);
+        if (!iIdentity.canUpdate(dirty) || !iAncesTree.canUpdate(time)) return false;
+        println("NucleiMgr.updateNuclei, from time " + time);
+        for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+            if (i >= nuclei_record.size()) break;
+            if (!dirty.get(i - 1)) setSuccessors(i - 1);
+            setSuccessors(i);
+        }
+        iIdentity.identityUpdate(dirty);
+        iAncesTree.update(time);
+        namesChanged();
+        iTreeDirty = null;
+        return true;
+    }
+
     public Hashtable getCellsByName() {
+        unpark();
         return iAncesTree.getCellsByName();
     }
 
     public AncesTree getAncesTree() {
+        unpark();
         return iAncesTree;
     }
 
@@ -1127,6 +1241,7 @@ public class NucleiMgr {
      *
      */
     public void clearAllHashkeys() {
+        unpark();
         //System.out.println("clearAllHashkeys: " + nuclei_record);
         Vector<Nucleus> v = null;
         for (int i=0; i < nuclei_record.size(); i++) {
@@ -1135,19 +1250,7 @@ public class NucleiMgr {
                 v.elementAt(j).hashKey = null;
             }
         }
-    }
-
-    private String [] getTokens(String s, int x) {
-        String [] sa = new String[30];
-        StringTokenizer st = new StringTokenizer(s, ",");
-        int k = 0;
-        while (st.hasMoreTokens()) {
-            //String ss = st.nextToken();
-            //System.out.println("getTokens: " + k + CS + ss);
-            //sa[k++] = ss.trim();
-            sa[k++] = st.nextToken().trim();
-        }
-        return sa;
+        namesChanged();
     }
 
     /**
@@ -1156,35 +1259,160 @@ public class NucleiMgr {
      * @return Vector [] -- the nuclei_record object of this instance
      */
     public Vector<Vector<Nucleus>>  getNucleiRecord() {
+        unpark();
         return nuclei_record;
     }
 
+    /**
+     * packs the nuclei into a NucleusStore and lets go of the record, the
+     * AncesTree, the name table and the maps built on them, so a series
+     * kept open but not shown costs a fraction of the memory
+     * <br>everything is rebuilt from the store, without renaming, the
+     * first time the nuclei or the tree are asked for; callers must not
+     * hold on to the old record or tree across a park
+     * @return false, doing nothing, if there are edits not yet saved or
+     * not yet in the tree
+     */
+    public boolean park() {
+        if (iStore != null) return true;
+        if (nuclei_record == null || iAncesTree == null) return false;
+        if (iTreeDirty != null) return false;
+        if (iEditedTimes != null && !iEditedTimes.isEmpty()) return false;
+        if (iJournal != null) iJournal.close(nuclei_record);
+        iStore = new NucleusStore(nuclei_record);
+        nuclei_record = null;
+        iAncesTree = null;
+        iNucleusIndexes = null;
+        iNucleusNames = null;
+        // the store keeps names of its own; unpark names the nuclei again
+        iLineageNames = null;
+        println("NucleiMgr.park, " + iStore.getTotal() + " nuclei");
+        return true;
+    }
+
+    /**
+     * the table of the cell names of this series
+     */
+    public LineageNames getLineageNames() {
+        if (iLineageNames == null) iLineageNames = new LineageNames();
+        return iLineageNames;
+    }
+
+    public boolean isParked() {
+        return iStore != null;
+    }
+
+    private void unpark() {
+        if (iStore == null) return;
+        NucleusStore store = iStore;
+        iStore = null;
+        nuclei_record = store.toRecord();
+        // Identity3 holds on to the record it was made with
+        iIdentity = null;
+        println("NucleiMgr.unpark, " + store.getTotal() + " nuclei");
+        processNuclei(false, getConfig().iNamingMethod);
+    }
+
+    /**
+     * the nuclei packed by field, for scans that only read; a snapshot
+     * that does not follow later edits
+     */
+    public NucleusStore getNucleusStore() {
+        if (iStore != null) return iStore;
+        return new NucleusStore(getNucleiRecord());
+    }
+
+    /**
+     * starts a new undoable edit; see EditJournal
+     */
     public void makeBackupNucleiRecord() {
+        unpark();
+        getJournal().begin(getNucleiRecord());
+    }
 
-        System.out.println("Refusing to make backup, waste of memory");
-	/*
-        System.out.println("makeBackupNucleiRecord");
-        nuclei_record_backup = new Vector();
-        Vector nuclei = null;
-        Vector nucleiNew = null;
-        Nucleus n = null;
-        Nucleus nNew = null;
-        for (int i=0; i < nuclei_record.size(); i++) {
-            nuclei = (Vector)nuclei_record.elementAt(i);
-            nucleiNew = new Vector();
-            for (int j=0; j < nuclei.size(); j++) {
-                n = (Nucleus)nuclei.elementAt(j);
-                nNew = n.copy();
-                nucleiNew.add(nNew);
-            }
-            nuclei_record_backup.add(nucleiNew);
+    /**
+     * undoes the most recent edit
+     * @return false if there was nothing to undo
+     */
+    public boolean restoreNucleiRecord() {
+        unpark();
+        BitSet times = getJournal().undo(getNucleiRecord());
+        if (times == null) {
+            System.out.println("nothing to undo");
+            return false;
+        }
+        markEdited(times);
+        return true;
+    }
+
+    /**
+     * redoes the most recently undone edit
+     * @return false if there was nothing to redo
+     */
+    public boolean redoNucleiRecord() {
+        unpark();
+        BitSet times = getJournal().redo(getNucleiRecord());
+        if (times == null) {
+            System.out.println("nothing to redo");
+            return false;
         }
-	*/
+        markEdited(times);
+        return true;
+    }
+
+    public EditJournal getJournal() {
+        if (iJournal == null) iJournal = new EditJournal();
+        return iJournal;
+    }
+
+    /**
+     * records that the nuclei at the given (one based) time were changed
+     * by an edit since the last save
+     * <br>NucZipper re-encodes these times unconditionally, and the
+     * EditJournal copies the time point if this is the first change to
+     * it in the current edit, so call this before changing the nuclei
+     */
+    public void markEdited(int time) {
+        unpark();
+        if (time < 1) return;
+        getJournal().touch(time, getNucleiRecord());
+        if (iEditedTimes == null) iEditedTimes = new BitSet();
+        iEditedTimes.set(time - 1);
+        if (iTreeDirty == null) iTreeDirty = new BitSet();
+        iTreeDirty.set(time - 1);
+        dropNucleusIndex(time - 1);
+    }
+
+    /**
+     * marks the inclusive range of (one based) times as edited
+     */
+    public void markEdited(int startTime, int endTime) {
+        for (int t = startTime; t <= endTime; t++) markEdited(t);
+    }
+
+    /**
+     * puts back the (zero based) time indices of a save that did not complete
+     */
+    public void markEdited(BitSet times) {
+        if (iEditedTimes == null) iEditedTimes = new BitSet();
+        iEditedTimes.or(times);
+        for (int i = times.nextSetBit(0); i >= 0; i = times.nextSetBit(i + 1)) dropNucleusIndex(i);
+    }
+
+    public boolean isEdited(int time) {
+        return iEditedTimes != null && time >= 1 && iEditedTimes.get(time - 1);
     }
 
-    public void restoreNucleiRecord() {
-        //   nuclei_record = nuclei_record_backup;
-        System.out.println("cannot restore no backup made");
+    /**
+     * @return a copy of the zero based time indices edited since the last save
+     */
+    public BitSet getEditedTimes() {
+        if (iEditedTimes == null) return new BitSet();
+        return (BitSet)iEditedTimes.clone();
+    }
+
+    public void clearEdited() {
+        iEditedTimes = null;
     }
 
     public void setEndingIndex(int endTime) {
@@ -1222,6 +1450,7 @@ public class NucleiMgr {
     }
 
     public void setAllSuccessors() {
+        unpark();
         newLine();
         System.out.println("setAllSuccessors: " + iStartingIndex + CS + iEndingIndex + ", " + nuclei_record.size());
         //for (int i=iStartingIndex - 1; i < iEndingIndex; i++) {
@@ -1233,6 +1462,7 @@ public class NucleiMgr {
     }
 
     public int setSuccessors(int i) {
+        unpark();
         //System.out.println("\nnucleimgr setsuccessors "+i);
         //long timeStart = System.nanoTime();
         if (iConfig.iNamingMethod == Identity3.MANUAL)
@@ -1325,57 +1555,6 @@ public class NucleiMgr {
 //        }
 //    }
 
-    /**
-     * Special tokenizing function adapted to the lines in nuclei files
-     *
-     * a line in such a file consists of 15 fields which were written
-     * by a printf statement in a C program
-     * The widths of the fields are specified in the static int [] X
-     * 1    index -- line number in file starting from 1
-     * 2    x location of nucleus in pixels
-     * 3    y location of nucleus in pixels
-     * 4    z location of nucleus in planes (float)
-     * 5    cell name assigned by StarryNight
-     * 6    nominal cell diameter in pixels (all cells in a time index have the same value)
-     * 7    measure of GFP signal within the circle of this nucleus
-     * 8    ? (seems to be a flag)
-     * 9    ? (float)
-     * 10   ? (float)
-     * 11   ? (float)
-     * 12   ? (float)
-     * 13   index - the index that this cell had in the previous time nuclei file
-     * 14   index - the index that this cell has in the next time nuclei file
-     * 15   index - (if present indicates a division occurred) index of second daughter in next time nuclei file
-     *
-     *
-     *
-     * @param s String representing one line from such a file
-     * @return String [] containing the tokens found
-     */
-
-    private String [] getTokens(String s) {
-        String [] sa = new String[15];
-        int k = 0;
-        int j = 0;
-        int max = s.length();
-        for(int i=0; i<15; i++) {
-            //if(j > max) break;
-            k += XX[i];
-            //System.out.println(i + ", " + j + ", " + k);
-            if (k > max) break;
-            sa[i] = s.substring(j, k).trim();
-            j = k;
-        }
-        return sa;
-    }
-
-    /**
-     * pointers into the formatted lines of the nuclei files
-     */
-    private static final int [] XX = {
-            6,5,5,6,14,4,8,4,5,6,5,6,5,5,5
-    };
-
     public static final int
             LAST = 10000 // more than the most time points we ever expect to see
             ;
@@ -103,7 +103,7 @@ public class NucleiMgrAdapter implements LineageData {
 			ArrayList<String> namesAL = new ArrayList<>(); //named to distinguish between return String[] array
 
 			//access vector of nuclei at given time frame
-			Vector<Nucleus> v = nucleiMgr.nuclei_record.get(time);
+			Vector<Nucleus> v = nucleiMgr.getNucleiRecord().get(time);
 //				Vector v = (Vector) nucleiMgr.nuclei_record.get(time - 1);
 
 			//copy nuclei identities to ArrayList names AL
@@ -147,7 +147,7 @@ public class NucleiMgrAdapter implements LineageData {
 		ArrayList<ArrayList<Double>> positionsAL = new ArrayList<ArrayList<Double>>();
 
 		//access vector of nuclei at given time frame
-		Vector<Nucleus> v = nucleiMgr.nuclei_record.get(time);
+		Vector<Nucleus> v = nucleiMgr.getNucleiRecord().get(time);
 
 		//copy nuclei positions to ArrayList positionsAL
 		for (int m = 0; m < v.size(); ++m) {
@@ -179,7 +179,7 @@ public class NucleiMgrAdapter implements LineageData {
 		ArrayList<Double> diametersAL = new ArrayList<Double>();
 
 		//access vector of nuclei at given time frame
-		Vector<Nucleus> v = nucleiMgr.nuclei_record.get(time);
+		Vector<Nucleus> v = nucleiMgr.getNucleiRecord().get(time);
 
 		for (int m = 0; m < v.size(); ++m) {
 			Nucleus n = (Nucleus) v.get(m);
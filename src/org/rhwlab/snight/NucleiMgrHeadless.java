@@ -7,7 +7,6 @@ import java.io.PrintWriter;
 import java.util.Enumeration;
 import java.util.GregorianCalendar;
 import java.util.Hashtable;
-import java.util.StringTokenizer;
 import java.util.Vector;
 import java.util.zip.ZipEntry;
 
@@ -263,30 +262,34 @@ public class NucleiMgrHeadless extends NucleiMgr {
     }
 
     private void findImageParameters() {
-        // save off existing ImageWindow parameters
-        String zipTifFilePath = ImageWindow.cZipTifFilePath;
-        String tifPrefix = ImageWindow.cTifPrefix;
-        String tifPrefixR = ImageWindow.cTifPrefixR;
-        int useZip = ImageWindow.cUseZip;
-        int width = ImageWindow.cImageHeight;
-        int height = ImageWindow.cImageWidth;
-        // now feed it my parameters
-        sendStaticParametersToImageWindow();
-        // make up a sample image name
-        int plane = iMovie.plane_start;
-        int time = iStartingIndex;
-        String imageName = makeImageName(time, plane);
-        // now "make" the image
-        ImageWindow.makeImage(getConfig().iTifPrefix + imageName);
-        iImageWidth = ImageWindow.cImageWidth;
-        iImageHeight = ImageWindow.cImageHeight;
-        // now restore ImageWindow
-        ImageWindow.cZipTifFilePath = zipTifFilePath;
-        ImageWindow.cTifPrefix = tifPrefix;
-        ImageWindow.cTifPrefixR = tifPrefixR;
-        ImageWindow.cUseZip = useZip;
-        ImageWindow.cImageWidth = width;
-        ImageWindow.cImageHeight = height;
+        // the ImageWindow statics are borrowed for the sample image;
+        // series loaded side by side by AceTreeBatch take turns
+        synchronized(ImageWindow.class) {
+            // save off existing ImageWindow parameters
+            String zipTifFilePath = ImageWindow.cZipTifFilePath;
+            String tifPrefix = ImageWindow.cTifPrefix;
+            String tifPrefixR = ImageWindow.cTifPrefixR;
+            int useZip = ImageWindow.cUseZip;
+            int width = ImageWindow.cImageHeight;
+            int height = ImageWindow.cImageWidth;
+            // now feed it my parameters
+            sendStaticParametersToImageWindow();
+            // make up a sample image name
+            int plane = iMovie.plane_start;
+            int time = iStartingIndex;
+            String imageName = makeImageName(time, plane);
+            // now "make" the image
+            ImageWindow.makeImage(getConfig().iTifPrefix + imageName);
+            iImageWidth = ImageWindow.cImageWidth;
+            iImageHeight = ImageWindow.cImageHeight;
+            // now restore ImageWindow
+            ImageWindow.cZipTifFilePath = zipTifFilePath;
+            ImageWindow.cTifPrefix = tifPrefix;
+            ImageWindow.cTifPrefixR = tifPrefixR;
+            ImageWindow.cUseZip = useZip;
+            ImageWindow.cImageWidth = width;
+            ImageWindow.cImageHeight = height;
+        }
     }
 
     private String makeImageName(int time, int plane) {
@@ -428,69 +431,10 @@ public class NucleiMgrHeadless extends NucleiMgr {
         //System.out.println("readNuclei:1 " + iMovie.time_end + CS + iMovie.time_start);
         fakeNuclei();
         iFakeNuclei = false; //override this parm
-        Nucleus n = null;
-        int debugCount = 0;
 
-        Enumeration e = zn.iZipFile.entries();
-        //System.out.println("readNuclei:2 " + iMovie.time_end + CS + iMovie.time_start);
-        while (e.hasMoreElements()) {
-            ZipEntry ze = (ZipEntry)e.nextElement();
-
-            Vector v = new Vector();
-            String [] saa = zn.parseZipEntry(ze);
-            if (saa.length < 2) continue; // maybe a nuclei/ entry
-            if (saa[0].equals("nuclei")) {
-                int index = zn.parseZipEntryName(saa[1]) - 1;
-                if (index < 0) continue; // probably a nuclei/log entry
-                //if (index > 30) continue;
-                //println("ZipNuclei.main: finds: " + saa[1] + CS + ze.isDirectory() + CS + index);
-                String s = zn.readLine(ze);
-                if (s == null) {
-                    if (nuclei_record.size() > index) {
-                        nuclei_record.setElementAt(v, index);
-                        if (index > iLastNucleiFile) iLastNucleiFile = index;
-                    }
-                    continue;
-                }
-                boolean newFormat = true;
-                // detect old format by the absence of commas
-                //if (debugCount++ < 10) println("readNuclei: " + s);
-                if (s.indexOf(',') == -1) newFormat = false;
-                int j = 1;
-                // added code to handle some misformed nuclei files
-                // a little squirrely maybe but it is working
-                while (s != null && s.length() > 10) {
-                    //if (index == 199) println("\n\nREADNUCLEI: " + s);
-                    try {
-                        String [] sa;
-                        if (newFormat) sa = getTokens(s, 0);
-                        else sa = getTokens(s);
-                        if (    sa[0] != null
-                            && (sa[0].length() > 0
-                            && Integer.parseInt(sa[0]) != j++)) {
-                            break;
-                        }
-                        if (newFormat) n = new Nucleus(sa);
-                        else n = new Nucleus(sa, !newFormat);
-                        v.add(n);
-                        s = zn.readLine(ze);
-                    } catch(Exception ee) {
-                        System.out.println("readNuclei exception: " + ee);
-                        System.out.println(s);
-                        System.out.println("time=" + index + ", j = " + j);
-                        zn.closeEntry();
-                        ee.printStackTrace();
-                        System.exit(1);
-                        break;
-                    }
-                }
-                if (nuclei_record.size() > index) {
-                    nuclei_record.setElementAt(v, index);
-                    if (index > iLastNucleiFile) iLastNucleiFile = index;
-                }
-                zn.closeEntry();
-            }
-        }
+        NucleiCache cache = readNucleiEntries(zn, iConfig);
+        internNames(cache, getLineageNames());
+        iLastNucleiFile = fillRecord(cache, nuclei_record, iLastNucleiFile);
         //println("readNuclei: iEndingIndex=" + iEndingIndex + CS + iLastNucleiFile + CS + nuclei_record.size());
         if (iEndingIndex == 1) {
             iEndingIndex = iLastNucleiFile + 1;
@@ -1001,19 +945,6 @@ public class NucleiMgrHeadless extends NucleiMgr {
         }
     }
 
-    private String [] getTokens(String s, int x) {
-        String [] sa = new String[30];
-        StringTokenizer st = new StringTokenizer(s, ",");
-        int k = 0;
-        while (st.hasMoreTokens()) {
-            //String ss = st.nextToken();
-            //System.out.println("getTokens: " + k + CS + ss);
-            //sa[k++] = ss.trim();
-            sa[k++] = st.nextToken().trim();
-        }
-        return sa;
-    }
-
     /**
      * major access function to the array of nuclei Vectors
      * stored here -- one Vector for each time point
@@ -1024,31 +955,6 @@ public class NucleiMgrHeadless extends NucleiMgr {
         return nuclei_record;
     }
 
-    @Override
-	public void makeBackupNucleiRecord() {
-        System.out.println("makeBackupNucleiRecord");
-        nuclei_record_backup = new Vector();
-        Vector nuclei = null;
-        Vector nucleiNew = null;
-        Nucleus n = null;
-        Nucleus nNew = null;
-        for (int i=0; i < nuclei_record.size(); i++) {
-            nuclei = nuclei_record.elementAt(i);
-            nucleiNew = new Vector();
-            for (int j=0; j < nuclei.size(); j++) {
-                n = (Nucleus)nuclei.elementAt(j);
-                nNew = n.copy();
-                nucleiNew.add(nNew);
-            }
-            nuclei_record_backup.add(nucleiNew);
-        }
-    }
-
-    @Override
-	public void restoreNucleiRecord() {
-        nuclei_record = nuclei_record_backup;
-    }
-
     @Override
 	public void setEndingIndex(int endTime) {
         iEndingIndex = endTime;
@@ -1186,57 +1092,6 @@ public class NucleiMgrHeadless extends NucleiMgr {
         }
     }
 
-    /**
-     * Special tokenizing function adapted to the lines in nuclei files
-     *
-     * a line in such a file consists of 15 fields which were written
-     * by a printf statement in a C program
-     * The widths of the fields are specified in the static int [] X
-     * 1    index -- line number in file starting from 1
-     * 2    x location of nucleus in pixels
-     * 3    y location of nucleus in pixels
-     * 4    z location of nucleus in planes (float)
-     * 5    cell name assigned by StarryNight
-     * 6    nominal cell diameter in pixels (all cells in a time index have the same value)
-     * 7    measure of GFP signal within the circle of this nucleus
-     * 8    ? (seems to be a flag)
-     * 9    ? (float)
-     * 10   ? (float)
-     * 11   ? (float)
-     * 12   ? (float)
-     * 13   index - the index that this cell had in the previous time nuclei file
-     * 14   index - the index that this cell has in the next time nuclei file
-     * 15   index - (if present indicates a division occurred) index of second daughter in next time nuclei file
-     *
-     *
-     *
-     * @param s String representing one line from such a file
-     * @return String [] containing the tokens found
-     */
-
-    private String [] getTokens(String s) {
-        String [] sa = new String[15];
-        int k = 0;
-        int j = 0;
-        int max = s.length();
-        for(int i=0; i<15; i++) {
-            //if(j > max) break;
-            k += XX[i];
-            //System.out.println(i + ", " + j + ", " + k);
-            if (k > max) break;
-            sa[i] = s.substring(j, k).trim();
-            j = k;
-        }
-        return sa;
-    }
-
-    /**
-     * pointers into the formatted lines of the nuclei files
-     */
-    private static final int [] XX = {
-            6,5,5,6,14,4,8,4,5,6,5,6,5,5,5
-    };
-
     public static final int
          LAST = 599 // more than the most nuclei we ever expect to see
         ;
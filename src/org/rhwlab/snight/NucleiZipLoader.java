@@ -0,0 +1,538 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.snight;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Enumeration;
+import java.util.StringTokenizer;
+import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.rhwlab.utils.ZipPool;
+
+/**
+ * reads all of the nuclei/tNNN-nuclei entries of a ZipNuclei
+ * <br>each entry is independent so they are inflated and decoded
+ * concurrently on a small worker pool; results are handed back in
+ * the order the entries appear in the zip so that callers can fill
+ * nuclei_record exactly as the old serial loop did
+ * <br>lines of the new (comma separated) format are tokenized directly
+ * on the byte buffer; the old fixed width format and any entry holding
+ * non ascii bytes fall back to the original String based parsing
+ */
+public class NucleiZipLoader {
+    ZipNuclei           iZipNuclei;
+    Vector<ZipEntry>    iEntries;
+    int []              iIndices;
+    Vector<Nucleus> []  iNuclei;
+    long                iScanTime;
+    long                iDecodeTime;
+    int                 iNumNuclei;
+
+    public NucleiZipLoader(ZipNuclei zn) {
+        iZipNuclei = zn;
+    }
+
+    /**
+     * finds, inflates and decodes every nuclei entry
+     * <br>a malformed line is fatal, as it always has been
+     */
+    public void load() {
+        // taken from the pool so an image reader opening other archives
+        // cannot close it under the decoders
+        ZipFile zf = null;
+        try {
+            zf = ZipPool.acquire(iZipNuclei.iZipName);
+        } catch(IOException ioe) {
+            System.out.println("NucleiZipLoader, " + ioe);
+        }
+        try {
+            load(zf != null ? zf : iZipNuclei.iZipFile);
+        } finally {
+            if (zf != null) ZipPool.done(zf);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void load(ZipFile zipFile) {
+        long t0 = System.nanoTime();
+        scanEntries(zipFile);
+        int count = iEntries.size();
+        iNuclei = new Vector[count];
+        long t1 = System.nanoTime();
+        iScanTime = t1 - t0;
+        if (count == 0) return;
+
+        int threads = Math.min(count, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new DaemonFactory());
+        try {
+            Vector<Future<Vector<Nucleus>>> futures = new Vector<Future<Vector<Nucleus>>>(count);
+            for (int k=0; k < count; k++) {
+                futures.add(pool.submit(new EntryDecoder(zipFile, iEntries.get(k), iIndices[k])));
+            }
+            for (int k=0; k < count; k++) {
+                iNuclei[k] = futures.get(k).get();
+                iNumNuclei += iNuclei[k].size();
+            }
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ie);
+        } catch(ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof LineException) {
+                LineException le = (LineException)cause;
+                System.out.println("readNuclei exception: " + le.getCause());
+                System.out.println(le.iLine);
+                System.out.println("time=" + le.iIndex + ", j = " + le.iJ);
+                le.getCause().printStackTrace();
+            } else {
+                cause.printStackTrace();
+            }
+            System.exit(1);
+        } finally {
+            pool.shutdown();
+        }
+        iDecodeTime = System.nanoTime() - t1;
+    }
+
+    /**
+     * number of nuclei entries found
+     */
+    public int size() {
+        return iEntries.size();
+    }
+
+    /**
+     * zero based time index of the k'th entry, k in zip order
+     */
+    public int getIndex(int k) {
+        return iIndices[k];
+    }
+
+    public Vector<Nucleus> getNuclei(int k) {
+        return iNuclei[k];
+    }
+
+    public String getTimings() {
+        return "NucleiZipLoader: " + size() + " entries, " + iNumNuclei + " nuclei"
+            + ", scan " + ms(iScanTime) + " ms"
+            + ", decode " + ms(iDecodeTime) + " ms";
+    }
+
+    private void scanEntries(ZipFile zipFile) {
+        iEntries = new Vector<ZipEntry>();
+        Vector<Integer> indices = new Vector<Integer>();
+        Enumeration<? extends ZipEntry> e = zipFile.entries();
+        while (e.hasMoreElements()) {
+            ZipEntry ze = e.nextElement();
+            String [] saa = iZipNuclei.parseZipEntry(ze);
+            if (saa.length < 2) continue; // maybe a nuclei/ entry
+            if (!saa[0].equals("nuclei")) continue;
+            int index = iZipNuclei.parseZipEntryName(saa[1]) - 1;
+            if (index < 0) continue; // probably a nuclei/log entry
+            iEntries.add(ze);
+            indices.add(index);
+        }
+        iIndices = new int[indices.size()];
+        for (int k=0; k < iIndices.length; k++) iIndices[k] = indices.get(k);
+    }
+
+    /**
+     * inflates and decodes one timepoint
+     */
+    static class EntryDecoder implements java.util.concurrent.Callable<Vector<Nucleus>> {
+        ZipFile     iZipFile;
+        ZipEntry    iEntry;
+        int         iIndex;
+        int []      iStarts;
+        int []      iEnds;
+        int         iCount;
+
+        EntryDecoder(ZipFile zipFile, ZipEntry entry, int index) {
+            iZipFile = zipFile;
+            iEntry = entry;
+            iIndex = index;
+            iStarts = new int[MAXTOKENS];
+            iEnds = new int[MAXTOKENS];
+        }
+
+        @Override
+        public Vector<Nucleus> call() throws IOException {
+            byte [] b = readEntry();
+            if (isAscii(b)) return decodeBytes(b);
+            return decodeStrings(b);
+        }
+
+        private byte [] readEntry() throws IOException {
+            InputStream is = iZipFile.getInputStream(iEntry);
+            try {
+                long size = iEntry.getSize();
+                ByteArrayOutputStream bos = new ByteArrayOutputStream(size > 0 ? (int)size : 8192);
+                byte [] buf = new byte[8192];
+                int r;
+                while ((r = is.read(buf)) != -1) bos.write(buf, 0, r);
+                return bos.toByteArray();
+            } finally {
+                is.close();
+            }
+        }
+
+        private Vector<Nucleus> decodeBytes(byte [] b) {
+            Vector<Nucleus> v = new Vector<Nucleus>();
+            int len = b.length;
+            if (len == 0) return v;
+            int lineStart = 0;
+            int lineEnd = lineEnd(b, 0);
+            boolean newFormat = false;
+            for (int i=lineStart; i < lineEnd; i++) {
+                if (b[i] == ',') {
+                    newFormat = true;
+                    break;
+                }
+            }
+            if (!newFormat) return decodeStrings(b);
+
+            int j = 1;
+            // same guard as the String version: stop at the first short line
+            while (lineStart < len && lineEnd - lineStart > 10) {
+                try {
+                    tokenize(b, lineStart, lineEnd);
+                    if (iCount > 0 && iEnds[0] > iStarts[0]
+                            && parseInt(b, 0) != j++) {
+                        break;
+                    }
+                    v.add(decode(b));
+                } catch(RuntimeException re) {
+                    throw new LineException(re, new String(b, lineStart, lineEnd - lineStart), iIndex, j);
+                }
+                lineStart = nextLine(b, lineEnd);
+                if (lineStart >= len) break;
+                lineEnd = lineEnd(b, lineStart);
+            }
+            return v;
+        }
+
+        /**
+         * the original line by line String parsing, used for the old
+         * fixed width format and for entries we cannot treat as ascii
+         */
+        private Vector<Nucleus> decodeStrings(byte [] b) {
+            Vector<Nucleus> v = new Vector<Nucleus>();
+            BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(b)));
+            String s = null;
+            int j = 1;
+            try {
+                s = br.readLine();
+                if (s == null) return v;
+                boolean newFormat = s.indexOf(',') != -1;
+                while (s != null && s.length() > 10) {
+                    String [] sa;
+                    if (newFormat) sa = getTokens(s, 0);
+                    else sa = getTokens(s);
+                    if (sa[0] != null
+                            && (sa[0].length() > 0
+                            && Integer.parseInt(sa[0]) != j++)) {
+                        break;
+                    }
+                    if (newFormat) v.add(new Nucleus(sa));
+                    else v.add(new Nucleus(sa, true));
+                    s = br.readLine();
+                }
+            } catch(IOException ioe) {
+                // cannot happen on a byte array
+            } catch(RuntimeException re) {
+                throw new LineException(re, s, iIndex, j);
+            }
+            return v;
+        }
+
+        /**
+         * builds a Nucleus from the current tokens with exactly the
+         * semantics of Nucleus(String [])
+         */
+        private Nucleus decode(byte [] b) {
+            Nucleus n = new Nucleus();
+            n.index = parseInt(b, Nucleus.INDEX);
+            n.x = parseInt(b, Nucleus.X);
+            n.y = parseInt(b, Nucleus.Y);
+            n.z = parseFloat(b, Nucleus.Z);
+            n.identity = string(b, Nucleus.IDENTITY);
+            n.size = parseInt(b, Nucleus.SIZE);
+            n.weight = parseInt(b, Nucleus.WT);
+            // a missing or unparsable red field ends the red data, as in Nucleus
+            try {
+                for (int i = Nucleus.RWT; i < Nucleus.RWCORR4 + 1; i++) {
+                    if (i >= iCount) break;
+                    if (iEnds[i] == iStarts[i]) continue;
+                    switch(i) {
+                        case Nucleus.RWT:
+                            n.rweight = parseInt(b, i);
+                            break;
+                        case Nucleus.RSUM:
+                            n.rsum = parseInt(b, i);
+                            break;
+                        case Nucleus.RCOUNT:
+                            n.rcount = parseInt(b, i);
+                            break;
+                        case Nucleus.ASSIGNEDID:
+                            n.assignedID = string(b, i);
+                            break;
+                        case Nucleus.RWRAW:
+                            n.rwraw = parseInt(b, i);
+                            break;
+                        case Nucleus.RWCORR1:
+                            n.rwcorr1 = parseInt(b, i);
+                            break;
+                        case Nucleus.RWCORR2:
+                            n.rwcorr2 = parseInt(b, i);
+                            break;
+                        case Nucleus.RWCORR3:
+                            n.rwcorr3 = parseInt(b, i);
+                            break;
+                        case Nucleus.RWCORR4:
+                            n.rwcorr4 = parseInt(b, i);
+                            break;
+                    }
+                }
+            } catch(NumberFormatException nfe) {
+            }
+            n.status = -1;
+            int xstat = parseInt(b, Nucleus.STATUS);
+            if (xstat > 0) n.status = xstat;
+
+            if (isNill(b, Nucleus.PRED)) n.predecessor = Nucleus.NILLI;
+            else {
+                int pred = parseInt(b, Nucleus.PRED);
+                n.predecessor = pred == -1 ? Nucleus.NILLI : pred;
+            }
+            if (isNill(b, Nucleus.SUCC1)) n.successor1 = Nucleus.NILLI;
+            else n.successor1 = parseInt(b, Nucleus.SUCC1);
+            if (Nucleus.SUCC2 >= iCount) n.successor2 = Nucleus.NILLI;
+            else n.successor2 = parseInt(b, Nucleus.SUCC2);
+            return n;
+        }
+
+        /**
+         * splits [start, end) on commas the way StringTokenizer does
+         * (empty tokens are skipped) and trims each token the way
+         * String.trim does
+         */
+        private void tokenize(byte [] b, int start, int end) {
+            iCount = 0;
+            int i = start;
+            while (i < end) {
+                while (i < end && b[i] == ',') i++;
+                if (i >= end) break;
+                int s = i;
+                while (i < end && b[i] != ',') i++;
+                int e = i;
+                while (s < e && (b[s] & 0xff) <= ' ') s++;
+                while (e > s && (b[e - 1] & 0xff) <= ' ') e--;
+                if (iCount == MAXTOKENS) throw new ArrayIndexOutOfBoundsException(iCount);
+                iStarts[iCount] = s;
+                iEnds[iCount] = e;
+                iCount++;
+            }
+        }
+
+        private int parseInt(byte [] b, int k) {
+            if (k >= iCount) throw new NumberFormatException("null");
+            int s = iStarts[k];
+            int e = iEnds[k];
+            boolean neg = false;
+            int i = s;
+            if (i < e && b[i] == '-') {
+                neg = true;
+                i++;
+            }
+            int digits = e - i;
+            if (digits > 0 && digits < 10) {
+                int r = 0;
+                for (; i < e; i++) {
+                    int d = b[i] - '0';
+                    if (d < 0 || d > 9) break;
+                    r = r * 10 + d;
+                }
+                if (i == e) return neg ? -r : r;
+            }
+            return Integer.parseInt(new String(b, s, e - s));
+        }
+
+        /**
+         * decimal values of up to seven significant digits convert exactly
+         * through one correctly rounded float division; anything else goes
+         * through Float.parseFloat
+         */
+        private float parseFloat(byte [] b, int k) {
+            if (k >= iCount) throw new NullPointerException();
+            int s = iStarts[k];
+            int e = iEnds[k];
+            int i = s;
+            boolean neg = false;
+            if (i < e && b[i] == '-') {
+                neg = true;
+                i++;
+            }
+            int mantissa = 0;
+            int digits = 0;
+            int fraction = -1;
+            for (; i < e; i++) {
+                int c = b[i];
+                if (c == '.' && fraction < 0) {
+                    fraction = 0;
+                    continue;
+                }
+                int d = c - '0';
+                if (d < 0 || d > 9) break;
+                mantissa = mantissa * 10 + d;
+                digits++;
+                if (fraction >= 0) fraction++;
+                if (digits > 7) break;
+            }
+            if (i == e && digits > 0 && fraction <= 10) {
+                float f = fraction > 0 ? mantissa / POW10[fraction] : mantissa;
+                return neg ? -f : f;
+            }
+            return Float.parseFloat(new String(b, s, e - s));
+        }
+
+        private String string(byte [] b, int k) {
+            if (k >= iCount) return null;
+            return new String(b, iStarts[k], iEnds[k] - iStarts[k]);
+        }
+
+        private boolean isNill(byte [] b, int k) {
+            if (k >= iCount) throw new NullPointerException();
+            int s = iStarts[k];
+            if (iEnds[k] - s != 4) return false;
+            return b[s] == 'n' && b[s + 1] == 'i' && b[s + 2] == 'l' && b[s + 3] == 'l';
+        }
+    }
+
+    /**
+     * carries the offending line back to the loading thread
+     */
+    static class LineException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        String  iLine;
+        int     iIndex;
+        int     iJ;
+
+        LineException(Throwable cause, String line, int index, int j) {
+            super(cause);
+            iLine = line;
+            iIndex = index;
+            iJ = j;
+        }
+    }
+
+    static class DaemonFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "NucleiZipLoader");
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+    private static boolean isAscii(byte [] b) {
+        for (int i=0; i < b.length; i++) {
+            if (b[i] < 0) return false;
+        }
+        return true;
+    }
+
+    // line terminators as understood by BufferedReader.readLine
+    private static int lineEnd(byte [] b, int start) {
+        int i = start;
+        while (i < b.length && b[i] != '\n' && b[i] != '\r') i++;
+        return i;
+    }
+
+    private static int nextLine(byte [] b, int lineEnd) {
+        if (lineEnd >= b.length) return b.length;
+        if (b[lineEnd] == '\r' && lineEnd + 1 < b.length && b[lineEnd + 1] == '\n') return lineEnd + 2;
+        return lineEnd + 1;
+    }
+
+    static String [] getTokens(String s, int x) {
+        String [] sa = new String[MAXTOKENS];
+        StringTokenizer st = new StringTokenizer(s, ",");
+        int k = 0;
+        while (st.hasMoreTokens()) {
+            sa[k++] = st.nextToken().trim();
+        }
+        return sa;
+    }
+
+    /**
+     * Special tokenizing function adapted to the lines in nuclei files
+     *
+     * a line in such a file consists of 15 fields which were written
+     * by a printf statement in a C program
+     * The widths of the fields are specified in the static int [] XX
+     * 1    index -- line number in file starting from 1
+     * 2    x location of nucleus in pixels
+     * 3    y location of nucleus in pixels
+     * 4    z location of nucleus in planes (float)
+     * 5    cell name assigned by StarryNight
+     * 6    nominal cell diameter in pixels (all cells in a time index have the same value)
+     * 7    measure of GFP signal within the circle of this nucleus
+     * 8    ? (seems to be a flag)
+     * 9    ? (float)
+     * 10   ? (float)
+     * 11   ? (float)
+     * 12   ? (float)
+     * 13   index - the index that this cell had in the previous time nuclei file
+     * 14   index - the index that this cell has in the next time nuclei file
+     * 15   index - (if present indicates a division occurred) index of second daughter in next time nuclei file
+     *
+     * @param s String representing one line from such a file
+     * @return String [] containing the tokens found
+     */
+    static String [] getTokens(String s) {
+        String [] sa = new String[15];
+        int k = 0;
+        int j = 0;
+        int max = s.length();
+        for(int i=0; i<15; i++) {
+            k += XX[i];
+            if (k > max) break;
+            sa[i] = s.substring(j, k).trim();
+            j = k;
+        }
+        return sa;
+    }
+
+    private static String ms(long nanos) {
+        return String.valueOf(nanos / 1000000);
+    }
+
+    /**
+     * pointers into the formatted lines of the nuclei files
+     */
+    private static final int [] XX = {
+            6,5,5,6,14,4,8,4,5,6,5,6,5,5,5
+    };
+
+    private static final float [] POW10 = {
+            1f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    private static final int
+         MAXTOKENS = 30
+    ;
+}
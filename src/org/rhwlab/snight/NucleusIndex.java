@@ -0,0 +1,144 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.snight;
+
+import java.util.BitSet;
+import java.util.Vector;
+
+/**
+ * a uniform grid over the x, y positions of the live nuclei of one time
+ * point, so a lookup by position looks at a few nuclei rather than all
+ * <br>a nucleus is entered in every grid cell its box (x, y plus or minus
+ * size/2) touches, in the order of the time point, so a point query sees
+ * exactly the nuclei a full scan would accept, in the same order
+ * <br>built on demand by NucleiMgr and dropped when the time point is
+ * marked edited
+ */
+public class NucleusIndex {
+    Vector<Nucleus>     iNuclei;
+    int                 iSize;    // iNuclei.size() when built
+    int                 iCell;    // edge of a grid cell in pixels
+    int                 iX0;
+    int                 iY0;
+    int                 iCols;
+    int                 iRows;
+    int []              iStart;   // iItems from iStart[c] to iStart[c + 1] are in grid cell c
+    int []              iItems;   // indices into iNuclei, ascending in each grid cell
+
+    public NucleusIndex(Vector<Nucleus> nuclei) {
+        iNuclei = nuclei;
+        iSize = nuclei.size();
+        int xmin = Integer.MAX_VALUE, ymin = Integer.MAX_VALUE;
+        int xmax = Integer.MIN_VALUE, ymax = Integer.MIN_VALUE;
+        long sizes = 0;
+        int live = 0;
+        for (int j=0; j < iSize; j++) {
+            Nucleus n = nuclei.elementAt(j);
+            if (n.status == Nucleus.NILLI) continue;
+            int r = n.size / 2 + 1;
+            xmin = Math.min(xmin, n.x - r);
+            xmax = Math.max(xmax, n.x + r);
+            ymin = Math.min(ymin, n.y - r);
+            ymax = Math.max(ymax, n.y + r);
+            sizes += Math.max(n.size, 0);
+            live++;
+        }
+        if (live == 0) {
+            iStart = new int[1];
+            iItems = new int[0];
+            return;
+        }
+        // cells about one nucleus across, but no more cells than a few per nucleus
+        iCell = Math.max(MINCELL, (int)(sizes / live));
+        long area = (long)(xmax - xmin + 1) * (ymax - ymin + 1);
+        while (area / ((long)iCell * iCell) > CELLSPERNUCLEUS * live) iCell *= 2;
+        iX0 = xmin;
+        iY0 = ymin;
+        iCols = (xmax - xmin) / iCell + 1;
+        iRows = (ymax - ymin) / iCell + 1;
+
+        int [] count = new int[iCols * iRows + 1];
+        for (int pass=0; pass < 2; pass++) {
+            if (pass == 1) {
+                iStart = new int[count.length];
+                for (int c=0; c < count.length - 1; c++) iStart[c + 1] = iStart[c] + count[c];
+                iItems = new int[iStart[count.length - 1]];
+                System.arraycopy(iStart, 0, count, 0, count.length);
+            }
+            for (int j=0; j < iSize; j++) {
+                Nucleus n = nuclei.elementAt(j);
+                if (n.status == Nucleus.NILLI) continue;
+                double r = Math.max(n.size / 2., 0);
+                int c0 = col(n.x - r), c1 = col(n.x + r);
+                int r0 = row(n.y - r), r1 = row(n.y + r);
+                for (int row = r0; row <= r1; row++) {
+                    for (int col = c0; col <= c1; col++) {
+                        int c = row * iCols + col;
+                        if (pass == 0) count[c]++;
+                        else iItems[count[c]++] = j;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * tells if this index still describes the given nuclei
+     */
+    public boolean isFor(Vector<Nucleus> nuclei) {
+        return nuclei == iNuclei && nuclei.size() == iSize;
+    }
+
+    /**
+     * the grid cell holding the point; the nuclei whose boxes may contain
+     * the point are iItems[iStart[c]] to iItems[iStart[c + 1] - 1]
+     * @return the cell, or -1 if no nucleus box reaches the point
+     */
+    int cellAt(int x, int y) {
+        if (iCols == 0) return -1;
+        int col = (int)Math.floor((double)(x - iX0) / iCell);
+        int row = (int)Math.floor((double)(y - iY0) / iCell);
+        if (col < 0 || col >= iCols || row < 0 || row >= iRows) return -1;
+        return row * iCols + col;
+    }
+
+    /**
+     * the live nuclei whose centers are within radius of x, y in the
+     * plane of the image, in the order of the time point
+     */
+    public Vector<Nucleus> within(int x, int y, double radius) {
+        Vector<Nucleus> v = new Vector<Nucleus>();
+        if (iCols == 0) return v;
+        int c0 = Math.max(col(x - radius), 0), c1 = Math.min(col(x + radius), iCols - 1);
+        int r0 = Math.max(row(y - radius), 0), r1 = Math.min(row(y + radius), iRows - 1);
+        double r2 = radius * radius;
+        BitSet found = new BitSet(iSize);
+        for (int row = r0; row <= r1; row++) {
+            for (int col = c0; col <= c1; col++) {
+                int c = row * iCols + col;
+                for (int k = iStart[c]; k < iStart[c + 1]; k++) {
+                    Nucleus n = iNuclei.elementAt(iItems[k]);
+                    double dx = n.x - x, dy = n.y - y;
+                    if (dx * dx + dy * dy <= r2) found.set(iItems[k]);
+                }
+            }
+        }
+        for (int j = found.nextSetBit(0); j >= 0; j = found.nextSetBit(j + 1)) v.add(iNuclei.elementAt(j));
+        return v;
+    }
+
+    private int col(double x) {
+        return Math.min(Math.max((int)Math.floor((x - iX0) / iCell), 0), iCols - 1);
+    }
+
+    private int row(double y) {
+        return Math.min(Math.max((int)Math.floor((y - iY0) / iCell), 0), iRows - 1);
+    }
+
+    private static final int
+         MINCELL = 8
+        ,CELLSPERNUCLEUS = 4
+        ;
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.snight;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * maps from identity and from hashKey to the nuclei of one time point
+ * <br>an identity maps to the first nucleus in the time point with that
+ * identity, as a scan with NucUtils.getCurrentCellData would find; a
+ * hashKey maps to the first live nucleus with that key, as
+ * NucleiMgr.getNucleusFromHashkey would find
+ * <br>built on demand by NucleiMgr and dropped when the time point is
+ * marked edited or the nuclei are renamed
+ */
+public class NucleusNames {
+    Vector<Nucleus>             iNuclei;
+    int                         iSize;    // iNuclei.size() when built
+    Hashtable<String, Nucleus>  iByName;
+    Hashtable<String, Nucleus>  iByKey;
+
+    public NucleusNames(Vector<Nucleus> nuclei) {
+        iNuclei = nuclei;
+        iSize = nuclei.size();
+        iByName = new Hashtable<String, Nucleus>(iSize * 2 + 1);
+        iByKey = new Hashtable<String, Nucleus>(iSize * 2 + 1);
+        for (int j=0; j < iSize; j++) {
+            Nucleus n = nuclei.elementAt(j);
+            if (n.identity != null && !iByName.containsKey(n.identity)) iByName.put(n.identity, n);
+            if (n.status < 0 || n.hashKey == null) continue;
+            if (!iByKey.containsKey(n.hashKey)) iByKey.put(n.hashKey, n);
+        }
+    }
+
+    /**
+     * tells if this map still describes the given nuclei
+     */
+    public boolean isFor(Vector<Nucleus> nuclei) {
+        return nuclei == iNuclei && nuclei.size() == iSize;
+    }
+
+    /**
+     * @return the nucleus, null if there is none, or the nucleus found
+     * when the map was built if it has since been renamed
+     */
+    Nucleus byName(String name) {
+        return iByName.get(name);
+    }
+
+    Nucleus byKey(String hashKey) {
+        return iByKey.get(hashKey);
+    }
+}
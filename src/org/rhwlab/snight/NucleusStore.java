@@ -0,0 +1,258 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.snight;
+
+import java.util.BitSet;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * the nuclei of a whole series packed into one primitive array per
+ * Nucleus field, time point after time point, with the names held once
+ * in a table and referred to by number
+ * <br>a nucleus costs about a hundred bytes here against several hundred
+ * as a Nucleus in a Vector with its own strings, and a scan over one
+ * field of a time point reads consecutive memory
+ * <br>the nuclei of the (one based) time t are the positions from
+ * offset(t) to offset(t) + count(t) - 1; a store is a snapshot, later
+ * changes to the record it was made from are not seen
+ * <br>get fills a caller's Nucleus from a position, so code written for
+ * Nucleus objects can walk the store with one reused view, and
+ * toRecord gives back the record exactly as it was packed
+ */
+public class NucleusStore {
+    int []      iOffsets;    // positions of time t are iOffsets[t - 1] to iOffsets[t] - 1
+    BitSet      iMissing;    // zero based times whose Vector was null
+    String []   iNames;
+    int []      iIdentity;   // into iNames, -1 for null
+    int []      iAssignedID;
+    int []      iHashKey;
+    int []      iIndex;
+    int []      iStatus;
+    int []      iPredecessor;
+    int []      iSuccessor1;
+    int []      iSuccessor2;
+    int []      iX;
+    int []      iY;
+    float []    iZ;
+    int []      iSize;
+    int []      iWeight;
+    int []      iRweight;
+    int []      iRsum;
+    int []      iRcount;
+    char []     iIdTag;
+    int []      iRwraw;
+    int []      iRwcorr1;
+    int []      iRwcorr2;
+    int []      iRwcorr3;
+    int []      iRwcorr4;
+
+    public NucleusStore(Vector<Vector<Nucleus>> record) {
+        int times = record.size();
+        iOffsets = new int[times + 1];
+        iMissing = new BitSet();
+        for (int k=0; k < times; k++) {
+            Vector<Nucleus> v = record.get(k);
+            if (v == null) iMissing.set(k);
+            iOffsets[k + 1] = iOffsets[k] + (v == null ? 0 : v.size());
+        }
+        int total = iOffsets[times];
+        iIdentity = new int[total];
+        iAssignedID = new int[total];
+        iHashKey = new int[total];
+        iIndex = new int[total];
+        iStatus = new int[total];
+        iPredecessor = new int[total];
+        iSuccessor1 = new int[total];
+        iSuccessor2 = new int[total];
+        iX = new int[total];
+        iY = new int[total];
+        iZ = new float[total];
+        iSize = new int[total];
+        iWeight = new int[total];
+        iRweight = new int[total];
+        iRsum = new int[total];
+        iRcount = new int[total];
+        iIdTag = new char[total];
+        iRwraw = new int[total];
+        iRwcorr1 = new int[total];
+        iRwcorr2 = new int[total];
+        iRwcorr3 = new int[total];
+        iRwcorr4 = new int[total];
+
+        Hashtable<String, Integer> table = new Hashtable<String, Integer>();
+        Vector<String> names = new Vector<String>();
+        int p = 0;
+        for (int k=0; k < times; k++) {
+            Vector<Nucleus> v = record.get(k);
+            if (v == null) continue;
+            for (int j=0; j < v.size(); j++, p++) {
+                Nucleus n = v.get(j);
+                iIdentity[p] = intern(n.identity, table, names);
+                iAssignedID[p] = intern(n.assignedID, table, names);
+                iHashKey[p] = intern(n.hashKey, table, names);
+                iIndex[p] = n.index;
+                iStatus[p] = n.status;
+                iPredecessor[p] = n.predecessor;
+                iSuccessor1[p] = n.successor1;
+                iSuccessor2[p] = n.successor2;
+                iX[p] = n.x;
+                iY[p] = n.y;
+                iZ[p] = n.z;
+                iSize[p] = n.size;
+                iWeight[p] = n.weight;
+                iRweight[p] = n.rweight;
+                iRsum[p] = n.rsum;
+                iRcount[p] = n.rcount;
+                iIdTag[p] = n.id_tag;
+                iRwraw[p] = n.rwraw;
+                iRwcorr1[p] = n.rwcorr1;
+                iRwcorr2[p] = n.rwcorr2;
+                iRwcorr3[p] = n.rwcorr3;
+                iRwcorr4[p] = n.rwcorr4;
+            }
+        }
+        iNames = names.toArray(new String[names.size()]);
+    }
+
+    private static int intern(String s, Hashtable<String, Integer> table, Vector<String> names) {
+        if (s == null) return -1;
+        Integer id = table.get(s);
+        if (id == null) {
+            id = Integer.valueOf(names.size());
+            table.put(s, id);
+            names.add(s);
+        }
+        return id.intValue();
+    }
+
+    /**
+     * the number of time points, as nuclei_record.size()
+     */
+    public int getTimes() {
+        return iOffsets.length - 1;
+    }
+
+    /**
+     * the number of nuclei held
+     */
+    public int getTotal() {
+        return iOffsets[iOffsets.length - 1];
+    }
+
+    /**
+     * the position of the first nucleus of the (one based) time
+     */
+    public int offset(int time) {
+        return iOffsets[time - 1];
+    }
+
+    /**
+     * the number of nuclei at the (one based) time
+     */
+    public int count(int time) {
+        return iOffsets[time] - iOffsets[time - 1];
+    }
+
+    public int getStatus(int p) {
+        return iStatus[p];
+    }
+
+    public int getX(int p) {
+        return iX[p];
+    }
+
+    public int getY(int p) {
+        return iY[p];
+    }
+
+    public float getZ(int p) {
+        return iZ[p];
+    }
+
+    public int getSize(int p) {
+        return iSize[p];
+    }
+
+    public int getPredecessor(int p) {
+        return iPredecessor[p];
+    }
+
+    public int getSuccessor1(int p) {
+        return iSuccessor1[p];
+    }
+
+    public int getSuccessor2(int p) {
+        return iSuccessor2[p];
+    }
+
+    public int getRweight(int p) {
+        return iRweight[p];
+    }
+
+    public String getIdentity(int p) {
+        return name(iIdentity[p]);
+    }
+
+    public String getHashKey(int p) {
+        return name(iHashKey[p]);
+    }
+
+    private String name(int id) {
+        return id < 0 ? null : iNames[id];
+    }
+
+    /**
+     * fills n with the nucleus at position p
+     * @return n
+     */
+    public Nucleus get(int p, Nucleus n) {
+        n.identity = name(iIdentity[p]);
+        n.assignedID = name(iAssignedID[p]);
+        n.hashKey = name(iHashKey[p]);
+        n.index = iIndex[p];
+        n.status = iStatus[p];
+        n.predecessor = iPredecessor[p];
+        n.successor1 = iSuccessor1[p];
+        n.successor2 = iSuccessor2[p];
+        n.x = iX[p];
+        n.y = iY[p];
+        n.z = iZ[p];
+        n.size = iSize[p];
+        n.weight = iWeight[p];
+        n.rweight = iRweight[p];
+        n.rsum = iRsum[p];
+        n.rcount = iRcount[p];
+        n.id_tag = iIdTag[p];
+        n.rwraw = iRwraw[p];
+        n.rwcorr1 = iRwcorr1[p];
+        n.rwcorr2 = iRwcorr2[p];
+        n.rwcorr3 = iRwcorr3[p];
+        n.rwcorr4 = iRwcorr4[p];
+        return n;
+    }
+
+    /**
+     * the nuclei of the (one based) time as new Nucleus objects
+     */
+    public Vector<Nucleus> getNuclei(int time) {
+        if (iMissing.get(time - 1)) return null;
+        int p0 = offset(time);
+        int p1 = p0 + count(time);
+        Vector<Nucleus> v = new Vector<Nucleus>(p1 - p0);
+        for (int p=p0; p < p1; p++) v.add(get(p, new Nucleus()));
+        return v;
+    }
+
+    /**
+     * a nuclei_record holding what the store was made from
+     */
+    public Vector<Vector<Nucleus>> toRecord() {
+        int times = getTimes();
+        Vector<Vector<Nucleus>> record = new Vector<Vector<Nucleus>>(times);
+        for (int t=1; t <= times; t++) record.add(getNuclei(t));
+        return record;
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.snight;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Hashtable;
+import java.util.Vector;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * just enough of the zip format to copy entries between archives
+ * without inflating and deflating them again
+ * <br>java.util.zip has no way to hand over an entry's compressed bytes,
+ * so the central directory of the source is read here and a small
+ * writer lays out local headers, data and the central directory itself
+ * <br>only plain 32 bit archives are handled; zip64 or encrypted sources
+ * simply yield no copyable entries
+ */
+public class RawZip {
+
+    /**
+     * one entry of a central directory
+     */
+    public static class Entry {
+        public String   iName;
+        int             iFlags;
+        int             iMethod;
+        int             iDosTime;
+        long            iCrc;
+        long            iCompressedSize;
+        long            iSize;
+        long            iOffset;  // of the local header
+
+        public long getCrc() {
+            return iCrc;
+        }
+
+        public long getSize() {
+            return iSize;
+        }
+    }
+
+    /**
+     * reads the central directory of a zip file
+     * @return entries by name, or null if the file is not a zip we can copy from
+     */
+    public static Hashtable<String, Entry> readDirectory(File file) {
+        if (file == null || !file.exists()) return null;
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            long length = raf.length();
+            int tail = (int)Math.min(length, 0xffff + EOCDLEN);
+            byte [] b = new byte[tail];
+            raf.seek(length - tail);
+            raf.readFully(b);
+            int eocd = -1;
+            for (int i = tail - EOCDLEN; i >= 0; i--) {
+                if (getInt(b, i) == EOCDSIG) {
+                    eocd = i;
+                    break;
+                }
+            }
+            if (eocd < 0) return null;
+            int count = getShort(b, eocd + 10);
+            long cdSize = getInt(b, eocd + 12) & 0xffffffffL;
+            long cdOffset = getInt(b, eocd + 16) & 0xffffffffL;
+            if (count == 0xffff || cdOffset == 0xffffffffL) return null; // zip64
+
+            byte [] cd = new byte[(int)cdSize];
+            raf.seek(cdOffset);
+            raf.readFully(cd);
+            Hashtable<String, Entry> h = new Hashtable<String, Entry>();
+            int p = 0;
+            for (int i=0; i < count; i++) {
+                if (getInt(cd, p) != CENSIG) return null;
+                Entry e = new Entry();
+                e.iFlags = getShort(cd, p + 8);
+                e.iMethod = getShort(cd, p + 10);
+                e.iDosTime = getInt(cd, p + 12);
+                e.iCrc = getInt(cd, p + 16) & 0xffffffffL;
+                e.iCompressedSize = getInt(cd, p + 20) & 0xffffffffL;
+                e.iSize = getInt(cd, p + 24) & 0xffffffffL;
+                int nameLen = getShort(cd, p + 28);
+                int extraLen = getShort(cd, p + 30);
+                int commentLen = getShort(cd, p + 32);
+                e.iOffset = getInt(cd, p + 42) & 0xffffffffL;
+                e.iName = new String(cd, p + CENLEN, nameLen, "UTF-8");
+                p += CENLEN + nameLen + extraLen + commentLen;
+                if ((e.iFlags & 1) != 0) continue; // encrypted
+                h.put(e.iName, e);
+            }
+            return h;
+        } catch(Exception e) {
+            System.out.println("RawZip: cannot read directory of " + file + CS + e);
+            return null;
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch(IOException ioe) {
+                }
+            }
+        }
+    }
+
+    /**
+     * writes a zip file entry by entry
+     */
+    public static class Writer {
+        OutputStream        iOut;
+        long                iPos;
+        Vector<Entry>       iWritten;
+        Deflater            iDeflater;
+        byte []             iDeflated;
+        byte []             iCopy;
+        int                 iNow;
+
+        public Writer(File file) throws IOException {
+            iOut = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+            iWritten = new Vector<Entry>();
+            iDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            iDeflated = new byte[1 << 16];
+            iCopy = new byte[1 << 16];
+            iNow = dosTime(System.currentTimeMillis());
+        }
+
+        /**
+         * deflates and writes a new entry
+         */
+        public void addEntry(String name, byte [] data, int len, long crc) throws IOException {
+            iDeflater.reset();
+            iDeflater.setInput(data, 0, len);
+            iDeflater.finish();
+            int n = 0;
+            while (!iDeflater.finished()) {
+                if (n == iDeflated.length) {
+                    byte [] b = new byte[iDeflated.length * 2];
+                    System.arraycopy(iDeflated, 0, b, 0, n);
+                    iDeflated = b;
+                }
+                n += iDeflater.deflate(iDeflated, n, iDeflated.length - n);
+            }
+            Entry e = new Entry();
+            e.iName = name;
+            e.iMethod = ZipEntry.DEFLATED;
+            e.iDosTime = iNow;
+            e.iCrc = crc;
+            e.iCompressedSize = n;
+            e.iSize = len;
+            writeLocalHeader(e);
+            iOut.write(iDeflated, 0, n);
+            iPos += n;
+        }
+
+        /**
+         * copies the compressed bytes of an entry of another zip unchanged
+         */
+        public void copyEntry(Entry src, RandomAccessFile from) throws IOException {
+            byte [] lh = new byte[LOCLEN];
+            from.seek(src.iOffset);
+            from.readFully(lh);
+            if (getInt(lh, 0) != LOCSIG) throw new IOException("bad local header for " + src.iName);
+            long data = src.iOffset + LOCLEN + getShort(lh, 26) + getShort(lh, 28);
+            Entry e = new Entry();
+            e.iName = src.iName;
+            e.iMethod = src.iMethod;
+            e.iDosTime = src.iDosTime;
+            e.iCrc = src.iCrc;
+            e.iCompressedSize = src.iCompressedSize;
+            e.iSize = src.iSize;
+            writeLocalHeader(e);
+            from.seek(data);
+            long left = src.iCompressedSize;
+            while (left > 0) {
+                int r = from.read(iCopy, 0, (int)Math.min(iCopy.length, left));
+                if (r < 0) throw new IOException("truncated entry " + src.iName);
+                iOut.write(iCopy, 0, r);
+                left -= r;
+            }
+            iPos += src.iCompressedSize;
+        }
+
+        /**
+         * writes the central directory and closes the file
+         */
+        public void close() throws IOException {
+            try {
+                long cdStart = iPos;
+                for (int i=0; i < iWritten.size(); i++) {
+                    Entry e = iWritten.get(i);
+                    byte [] name = e.iName.getBytes("UTF-8");
+                    byte [] h = new byte[CENLEN];
+                    putInt(h, 0, CENSIG);
+                    putShort(h, 4, VERSION);
+                    putShort(h, 6, VERSION);
+                    putShort(h, 8, e.iFlags);
+                    putShort(h, 10, e.iMethod);
+                    putInt(h, 12, e.iDosTime);
+                    putInt(h, 16, (int)e.iCrc);
+                    putInt(h, 20, (int)e.iCompressedSize);
+                    putInt(h, 24, (int)e.iSize);
+                    putShort(h, 28, name.length);
+                    putInt(h, 42, (int)e.iOffset);
+                    iOut.write(h);
+                    iOut.write(name);
+                    iPos += h.length + name.length;
+                }
+                if (iWritten.size() >= 0xffff || iPos >= 0xffffffffL)
+                    throw new IOException("too large for a plain zip");
+                byte [] end = new byte[EOCDLEN];
+                putInt(end, 0, EOCDSIG);
+                putShort(end, 8, iWritten.size());
+                putShort(end, 10, iWritten.size());
+                putInt(end, 12, (int)(iPos - cdStart));
+                putInt(end, 16, (int)cdStart);
+                iOut.write(end);
+            } finally {
+                iOut.close();
+                iDeflater.end();
+            }
+        }
+
+        private void writeLocalHeader(Entry e) throws IOException {
+            byte [] name = e.iName.getBytes("UTF-8");
+            for (int i=0; i < name.length; i++) {
+                if (name[i] < 0) e.iFlags |= UTF8FLAG;
+            }
+            e.iOffset = iPos;
+            byte [] h = new byte[LOCLEN];
+            putInt(h, 0, LOCSIG);
+            putShort(h, 4, VERSION);
+            putShort(h, 6, e.iFlags);
+            putShort(h, 8, e.iMethod);
+            putInt(h, 10, e.iDosTime);
+            putInt(h, 14, (int)e.iCrc);
+            putInt(h, 18, (int)e.iCompressedSize);
+            putInt(h, 22, (int)e.iSize);
+            putShort(h, 26, name.length);
+            iOut.write(h);
+            iOut.write(name);
+            iPos += h.length + name.length;
+            iWritten.add(e);
+        }
+    }
+
+    private static int dosTime(long millis) {
+        Calendar c = new GregorianCalendar();
+        c.setTimeInMillis(millis);
+        int year = c.get(Calendar.YEAR);
+        if (year < 1980) return (1 << 21) | (1 << 16);
+        return (year - 1980) << 25
+            | (c.get(Calendar.MONTH) + 1) << 21
+            | c.get(Calendar.DAY_OF_MONTH) << 16
+            | c.get(Calendar.HOUR_OF_DAY) << 11
+            | c.get(Calendar.MINUTE) << 5
+            | c.get(Calendar.SECOND) >> 1;
+    }
+
+    private static int getShort(byte [] b, int i) {
+        return (b[i] & 0xff) | (b[i + 1] & 0xff) << 8;
+    }
+
+    private static int getInt(byte [] b, int i) {
+        return getShort(b, i) | getShort(b, i + 2) << 16;
+    }
+
+    private static void putShort(byte [] b, int i, int v) {
+        b[i] = (byte)v;
+        b[i + 1] = (byte)(v >> 8);
+    }
+
+    private static void putInt(byte [] b, int i, int v) {
+        putShort(b, i, v);
+        putShort(b, i + 2, v >> 16);
+    }
+
+    private static final int
+         LOCSIG = 0x04034b50
+        ,CENSIG = 0x02014b50
+        ,EOCDSIG = 0x06054b50
+        ,LOCLEN = 30
+        ,CENLEN = 46
+        ,EOCDLEN = 22
+        ,VERSION = 20
+        ,UTF8FLAG = 0x800
+        ;
+
+    private static final String CS = ", ";
+}
@@ -136,6 +136,12 @@ public class XMLConfig implements DocHandler {
         } else if (tag.equals("splitChannelImage")) {
         	String splitChannelImage = (String)h.get("type");
         	iConfig.iConfigHash.put("splitChannelImage", splitChannelImage);
+        } else if (tag.equals("nucleiCache")) {
+            String nucleiCache = (String)h.get("use");
+            iConfig.iConfigHash.put("nucleiCache", nucleiCache);
+        } else if (tag.equals("parkNuclei")) {
+            String parkNuclei = (String)h.get("use");
+            iConfig.iConfigHash.put("parkNuclei", parkNuclei);
         } else if (tag.equals("angle")) {
         	String degrees = (String)h.get("degrees");
         	iConfig.iConfigHash.put("angle", degrees);
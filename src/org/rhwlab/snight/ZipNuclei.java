@@ -14,6 +14,8 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipException;
 
+import org.rhwlab.utils.ZipPool;
+
 /**
  * Instantiated in AncesTree.
  * <br>Opens the zip file holding data and analyses files.
@@ -44,7 +46,7 @@ public class ZipNuclei {
         try {
             //println("ZipNuclei constructor, " + iZipName);
             //iZipFile = new ZipFile(iZipName);
-            iZipFile = new ZipFile(zipFile);
+            iZipFile = ZipPool.getZipFile(zipFile.getPath());
             //println(zipName+" has size "+iZipFile.size());
         } catch(IOException ioe) {
             if (ioe instanceof ZipException) {
@@ -67,17 +69,7 @@ public class ZipNuclei {
      * @return the ZipEntry object for the given name
      */
     public ZipEntry getZipEntry(String entryName) {
-        ZipEntry ze = null;
-        Enumeration entries = iZipFile.entries();
-        // list the contents of each zipped entry
-        while (entries.hasMoreElements()) {
-          ZipEntry e = (ZipEntry) entries.nextElement();
-          if (e.getName().equals(entryName)) {
-              ze = e;
-              break;
-          }
-        }
-        return ze;
+        return iZipFile.getEntry(entryName);
     }
 
     /**
@@ -123,12 +115,12 @@ public class ZipNuclei {
         }
     }
 
+    /**
+     * closes the zip file; it is shared through the ZipPool so
+     * any other reader of it opens it again
+     */
     public void close() {
-        try {
-            iZipFile.close();
-        } catch(IOException ioe) {
-            ioe.printStackTrace();
-        }
+        ZipPool.release(iZipName);
     }
 
     /**
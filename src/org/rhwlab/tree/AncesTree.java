@@ -65,6 +65,7 @@ public class AncesTree implements Comparator {
     private boolean iShowDeathsAndDivisions;
     private int []  iCellCounts;
     private Vector iRootCells;
+    private LineageIndex iLineageIndex;
     
     public boolean sulstonmode;
 
@@ -377,6 +378,71 @@ public class AncesTree implements Comparator {
         return iRootCells;
     }
 
+    /**
+     * tells if update can be used for edits starting at the given time;
+     * not if the time is the first one of the tree or if the edit
+     * could move one of the early sulston cells, whose start and end
+     * times are patched up after the whole tree is built
+     */
+    public boolean canUpdate(int time) {
+        if (time <= iStartingIndex || time > iEndingIndex) return false;
+        if (!sulstonmode) return true;
+        for (int i=0; i < DUMMYNAMES.length; i++) {
+            Cell c = (Cell)iCellsByName.get(DUMMYNAMES[i]);
+            if (c != null && c.getTime() >= time) return false;
+        }
+        return true;
+    }
+
+    /**
+     * rebuilds the tree from the given time on after the nuclei from
+     * that time were changed and renamed, instead of building a new tree
+     * <br>cells born at or after time are dropped, those living at time
+     * are cut back to time - 1, and the time points from time on are
+     * processed again as in the constructor; cells before time are left
+     * as they are so references to them stay good
+     * <br>root cells, including those that had already been moved to
+     * another root node, are collected again into getRootCells()
+     * @return false, doing nothing, if canUpdate(time) is false
+     */
+    @SuppressWarnings("unchecked")
+	public boolean update(int time) {
+        if (!canUpdate(time)) return false;
+        Vector keys = new Vector(iCells.keySet());
+        for (int i=0; i < keys.size(); i++) {
+            Object key = keys.get(i);
+            Cell c = (Cell)iCells.get(key);
+            if (c.getTime() >= time) {
+                c.removeFromParent();
+                iCells.remove(key);
+            } else {
+                c.rollBack(time, iEndingIndex);
+            }
+        }
+        Vector roots = new Vector();
+        for (int i=0; i < iRootCells.size(); i++) {
+            Cell c = (Cell)iRootCells.get(i);
+            if (c.getTime() < time) roots.add(c);
+        }
+        for (int i=time; i <= iEndingIndex; i++) {
+            int r = processEntry(i);
+            if (r != 0)
+            	break;
+            r = iCellCounts[i] = countAliveCellsAtIndex(i);
+            if (r < 0)
+            	break;
+        }
+        makeCellsByNameHash();
+        Enumeration e = iRoot.children();
+        while (e.hasMoreElements()) {
+            Object c = e.nextElement();
+            if (!roots.contains(c)) roots.add(c);
+        }
+        Collections.sort(roots, this);
+        iRootCells = roots;
+        return true;
+    }
+
     /**
      * loops through -nuclei file data after it has been
      * processed into the NucleiMgr object
@@ -689,6 +755,9 @@ public class AncesTree implements Comparator {
         int pct = 0;
         String key = null;
         iCellsByName = new Hashtable();
+        iLineageIndex = null;
+        // the cells were built or changed in place by update
+        Cell.treeChanged();
         String rname = iRoot.getName();
         //println("AncesTree.makeCellsByNameHash.put, " + rname);
         iCellsByName.put(iRoot.getName(), iRoot); //20051007
@@ -775,6 +844,20 @@ public class AncesTree implements Comparator {
         return iCellsByName;
     }
 
+    /**
+     * the lineage of the cells by name, made once per build of the tree
+     * <br>AceTree moves the root cells under its own root and lists that
+     * as ROOTNAME, so the index is made again if that root has changed
+     */
+    public LineageIndex getLineageIndex() {
+        Cell root = (Cell)iCellsByName.get(ROOTNAME);
+        if (root == null) root = iRoot;
+        if (iLineageIndex == null || iLineageIndex.getRoot() != root) {
+            iLineageIndex = new LineageIndex(root, iCellsByName);
+        }
+        return iLineageIndex;
+    }
+
     /**
      * make sure daughter cells are ordered in the Sulston standard way
      * so the first daughter is an a, l, d
@@ -1000,6 +1083,12 @@ public class AncesTree implements Comparator {
             ,"P2"
     };
 
+    // the cells made up by createDummyNodes
+    private static final String [] DUMMYNAMES = {
+             "P0", "AB", "P1", "ABa", "ABp", "ABal", "ABar", "ABpl", "ABpr"
+            ,"EMS", "P2", "MS", "E", "C", "P3"
+    };
+
     private static final String
          POLAR = "polar"
         ,CS = ", "
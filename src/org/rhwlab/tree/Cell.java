@@ -79,6 +79,21 @@ public class Cell extends DefaultMutableTreeNode {
         xsc = xScale;
     }
 
+    // counts changes to the cells that TreePanel would have to draw again
+    private static volatile int cTreeVersion;
+
+    /**
+     * to be called when cells are built, edited in place or bookmarked,
+     * so trees laid out and drawn earlier are done over
+     */
+    public static void treeChanged() {
+        cTreeVersion++;
+    }
+
+    public static int getTreeVersion() {
+        return cTreeVersion;
+    }
+
     public void setLateTime(int time) {
         iLateTime = time;// + iTimeIndex % 10;
     }
@@ -158,7 +173,7 @@ public class Cell extends DefaultMutableTreeNode {
         return getTheColor(getDiscrete(red));
     }
 
-    private Color getColor(int i, Vector v) {
+    Color getColor(int i, Vector v) {
         // next line is patch attempt for "canonical trees"
         if (v.size() == 0) 
         	return getTheColor(getDiscrete(0));
@@ -506,7 +521,7 @@ public class Cell extends DefaultMutableTreeNode {
 
     }
 
-    private Point myRotate(int x, int y) {
+    Point myRotate(int x, int y) {
         double h = Math.sqrt(x*x + y*y);
         double a = Math.atan((double)y/(double)x);
         double b = .375*Math.PI - a;
@@ -529,6 +544,23 @@ public class Cell extends DefaultMutableTreeNode {
         iCellData = cd;
     }
 
+    /**
+     * forgets what was recorded for this cell from time on, so the cell
+     * is again alive to endTime; a death before time is kept
+     * <br>used by AncesTree.update, which removes the daughters itself
+     * @return false if the cell was left as it was
+     */
+    boolean rollBack(int time, int endTime) {
+        if (iTimeIndex < 1 || iTimeIndex >= time) return false;
+        if (iEndTime < time - 1) return false;
+        if (iEndTime == time - 1 && iEndFate != DIVIDED) return false;
+        int keep = time - iTimeIndex;
+        if (iCellData.size() > keep) iCellData.setSize(keep);
+        iEndTime = endTime;
+        iEndFate = ALIVE;
+        return true;
+    }
+
     public Vector getCellData(int start, int end) {
         //System.out.println("getCellData: " + iName + CS + start + CS + end + CS + iTimeIndex + CS + iEndTime);
         if (start <= iTimeIndex && end > iEndTime) return iCellData;
@@ -566,7 +598,7 @@ public class Cell extends DefaultMutableTreeNode {
     public String getRedDataString(int first, int last, int separator, int [] count) {
         int k = 0;
         String sep = SEPARATORS[separator];
-        String s = "";
+        StringBuffer s = new StringBuffer();
         iCellData.elements();
         //while (e.hasMoreElements()) {
         int i = 0;
@@ -579,8 +611,9 @@ public class Cell extends DefaultMutableTreeNode {
             //double d = cd.iRweight - 35000;
             double d = cd.iNucleus.rweight - 35000;
             //System.out.println("getRedDataString: " + iName + CS + cd.iRweight + CS + k);
-            if (k == 0) s += sep + ONEDEC.format(d + 0.1);
-            else s += sep + NODEC.format(d);
+            s.append(sep);
+            if (k == 0) s.append(ONEDEC.format(d + 0.1));
+            else s.append(NODEC.format(d));
 
             //s += CS + cd.iRweight;
             k++;
@@ -592,7 +625,7 @@ public class Cell extends DefaultMutableTreeNode {
         }
         System.out.println("Cell " + iName + CS + k + CS + i);
         count[0] = k;
-        return s;
+        return s.toString();
     }
 
     private String [] blanks = {
@@ -620,7 +653,7 @@ public class Cell extends DefaultMutableTreeNode {
         //System.out.println("getReverseRedDataString: " + iName + CS + first + CS + last);
         String sep = SEPARATORS[separator];
         int k = 0;
-        String s = "";
+        StringBuffer s = new StringBuffer();
         String s1 = "";
         StringBuffer sb = new StringBuffer();
         //System.out.println("getReverse... size= " + iCellData.size());
@@ -634,14 +667,14 @@ public class Cell extends DefaultMutableTreeNode {
             if (k == 0) {
 
                 s1 = ONEDEC.format(d + 0.1);
-                s += sep + s1;
+                s.append(sep).append(s1);
                 sb.append(makeHeaderName(s1));
                 //sb.append(CS + iName + blanks[s1.length() - iName.length()]);
             }
             else {
                 s1 = NODEC.format(d);
                 //System.out.println("NODEC: " + s1);
-                s += sep + s1;
+                s.append(sep).append(s1);
                 sb.append(makeHeaderName(s1));
                 //sb.append(CS + iName + blanks[s1.length() - iName.length()]);
             }
@@ -651,7 +684,7 @@ public class Cell extends DefaultMutableTreeNode {
         System.out.println("Cell: " + iName + CS + k);
         iRedHeader = sb;
         count[0] = k;
-        return s;
+        return s.toString();
     }
 
     private String makeHeaderName(String num) {
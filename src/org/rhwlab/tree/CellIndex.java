@@ -0,0 +1,179 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.tree;
+
+import java.util.Arrays;
+
+/**
+ * the cells of a drawn tree, each with the span of screen positions it
+ * answers to across the time axis and the times it lives, so the cell
+ * under the mouse is found without looking at every cell
+ * <br>entries are kept sorted by the start of their span, as a balanced
+ * tree over the sorted arrays where each middle entry also holds the
+ * largest span end below it; a point is answered in about log(n) steps
+ * plus one per entry whose span holds it
+ * <br>the order entries are added in is kept, and decides between entries
+ * that match equally well
+ */
+public class CellIndex {
+    Cell []     iCells;
+    int []      iLo;       // the span of positions, both ends included
+    int []      iHi;
+    int []      iStart;    // the times, both ends included
+    int []      iEnd;
+    int []      iOrder;    // the order of add
+    int []      iMaxHi;    // by middle entry, the largest iHi of its range
+    int         iCount;
+    boolean     iSorted;
+
+    public CellIndex() {
+        iCells = new Cell[INITIAL];
+        iLo = new int[INITIAL];
+        iHi = new int[INITIAL];
+        iStart = new int[INITIAL];
+        iEnd = new int[INITIAL];
+        iOrder = new int[INITIAL];
+        iSorted = true;
+    }
+
+    public void add(Cell c, int lo, int hi, int start, int end) {
+        if (iCount == iCells.length) grow();
+        iCells[iCount] = c;
+        iLo[iCount] = lo;
+        iHi[iCount] = hi;
+        iStart[iCount] = start;
+        iEnd[iCount] = end;
+        iOrder[iCount] = iCount;
+        iCount++;
+        iSorted = false;
+    }
+
+    public int size() {
+        return iCount;
+    }
+
+    private void grow() {
+        int n = Math.max(INITIAL, iCells.length * 2);
+        Cell [] cells = new Cell[n];
+        System.arraycopy(iCells, 0, cells, 0, iCount);
+        iCells = cells;
+        iLo = copy(iLo, n);
+        iHi = copy(iHi, n);
+        iStart = copy(iStart, n);
+        iEnd = copy(iEnd, n);
+        iOrder = copy(iOrder, n);
+    }
+
+    private int [] copy(int [] a, int n) {
+        int [] b = new int[n];
+        System.arraycopy(a, 0, b, 0, iCount);
+        return b;
+    }
+
+    /**
+     * the cell whose span holds p and which lives at time t, and whose
+     * span is centered nearest p; the first added if several are as near
+     */
+    public Cell nearest(int p, int t) {
+        sort();
+        int [] best = {-1, Integer.MAX_VALUE};
+        nearest(0, iCount, p, t, best);
+        return best[0] < 0 ? null : iCells[best[0]];
+    }
+
+    private void nearest(int l, int r, int p, int t, int [] best) {
+        if (l >= r) return;
+        int m = (l + r) >>> 1;
+        if (iMaxHi[m] < p) return;
+        nearest(l, m, p, t, best);
+        if (iLo[m] > p) return;
+        if (p <= iHi[m] && iStart[m] <= t && t <= iEnd[m]) {
+            int d = Math.abs(2 * p - iLo[m] - iHi[m]);
+            if (d < best[1] || (d == best[1] && iOrder[m] < iOrder[best[0]])) {
+                best[0] = m;
+                best[1] = d;
+            }
+        }
+        nearest(m + 1, r, p, t, best);
+    }
+
+    /**
+     * the first added cell whose span holds p and which lives at time t
+     */
+    public Cell first(int p, int t) {
+        sort();
+        int [] best = {-1};
+        first(0, iCount, p, t, false, best);
+        return best[0] < 0 ? null : iCells[best[0]];
+    }
+
+    /**
+     * the last added cell whose span holds p, whatever its times
+     */
+    public Cell last(int p) {
+        sort();
+        int [] best = {-1};
+        first(0, iCount, p, 0, true, best);
+        return best[0] < 0 ? null : iCells[best[0]];
+    }
+
+    private void first(int l, int r, int p, int t, boolean last, int [] best) {
+        if (l >= r) return;
+        int m = (l + r) >>> 1;
+        if (iMaxHi[m] < p) return;
+        first(l, m, p, t, last, best);
+        if (iLo[m] > p) return;
+        if (p <= iHi[m] && (last || (iStart[m] <= t && t <= iEnd[m]))) {
+            if (best[0] < 0 || (last ? iOrder[m] > iOrder[best[0]] : iOrder[m] < iOrder[best[0]])) {
+                best[0] = m;
+            }
+        }
+        first(m + 1, r, p, t, last, best);
+    }
+
+    private void sort() {
+        if (iSorted) return;
+        // by iLo, then by position, packed so a primitive sort does it
+        long [] ix = new long[iCount];
+        for (int i=0; i < iCount; i++) ix[i] = ((long)iLo[i] << 32) | i;
+        Arrays.sort(ix);
+        Cell [] cells = new Cell[iCount];
+        int [] lo = new int[iCount];
+        int [] hi = new int[iCount];
+        int [] start = new int[iCount];
+        int [] end = new int[iCount];
+        int [] order = new int[iCount];
+        for (int i=0; i < iCount; i++) {
+            int k = (int)ix[i];
+            cells[i] = iCells[k];
+            lo[i] = iLo[k];
+            hi[i] = iHi[k];
+            start[i] = iStart[k];
+            end[i] = iEnd[k];
+            order[i] = iOrder[k];
+        }
+        iCells = cells;
+        iLo = lo;
+        iHi = hi;
+        iStart = start;
+        iEnd = end;
+        iOrder = order;
+        iMaxHi = new int[iCount];
+        maxHi(0, iCount);
+        iSorted = true;
+    }
+
+    private int maxHi(int l, int r) {
+        if (l >= r) return Integer.MIN_VALUE;
+        int m = (l + r) >>> 1;
+        int h = Math.max(iHi[m], Math.max(maxHi(l, m), maxHi(m + 1, r)));
+        iMaxHi[m] = h;
+        return h;
+    }
+
+    private static final int
+         INITIAL = 64
+        ;
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.tree;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * the cells of a built tree with what the lineage checks ask of them,
+ * worked out in one walk: the start, end, lifetime and fate of each cell,
+ * its parent and its sister, and the cell names in sorted order
+ * <br>cells get ids in breadth first order from the root, so a check
+ * walking the ids forward sees a parent before its daughters, and one
+ * walking them backward sees the daughters first
+ * <br>an index is a snapshot of the tree it was made from;
+ * AncesTree.getLineageIndex makes a new one when the tree is built again
+ */
+public class LineageIndex {
+    Cell                        iRoot;
+    Cell []                     iCells;      // by id
+    int []                      iParent;     // by id, NONE for the root
+    int []                      iSister;     // by id, the other daughter of the parent, NONE unless there are two
+    int []                      iStart;
+    int []                      iEnd;
+    int []                      iFate;
+    Hashtable<String, Integer>  iIds;        // the names of getCellsByName, for cells under the root
+    Vector<String>              iSortedNames;
+
+    public LineageIndex(Cell root, Hashtable cellsByName) {
+        iRoot = root;
+        Vector<Cell> cells = new Vector<Cell>();
+        cells.add(root);
+        for (int i=0; i < cells.size(); i++) {
+            Cell c = cells.get(i);
+            for (int j=0; j < c.getChildCount(); j++) {
+                cells.add((Cell)c.getChildAt(j));
+            }
+        }
+        int n = cells.size();
+        iCells = cells.toArray(new Cell[n]);
+        iParent = new int[n];
+        iSister = new int[n];
+        iStart = new int[n];
+        iEnd = new int[n];
+        iFate = new int[n];
+        // the daughters were given ids in the order of their parents
+        iParent[0] = NONE;
+        for (int k=0, next=1; k < n; k++) {
+            for (int j=0; j < iCells[k].getChildCount(); j++) iParent[next++] = k;
+        }
+        Hashtable<Cell, Integer> byCell = new Hashtable<Cell, Integer>();
+        for (int k=0; k < n; k++) {
+            Cell c = iCells[k];
+            byCell.put(c, k);
+            iSister[k] = NONE;
+            iStart[k] = c.getTime();
+            iEnd[k] = c.getEndTime();
+            iFate[k] = c.getFateInt();
+        }
+        // the daughters of a cell hold consecutive ids
+        for (int k=1; k < n; k++) {
+            if (iCells[iParent[k]].getChildCount() != 2) continue;
+            iSister[k] = iParent[k - 1] == iParent[k] ? k - 1 : k + 1;
+        }
+
+        iIds = new Hashtable<String, Integer>();
+        iSortedNames = new Vector<String>(cellsByName.size());
+        Enumeration e = cellsByName.keys();
+        while (e.hasMoreElements()) {
+            String name = (String)e.nextElement();
+            iSortedNames.add(name);
+            Integer id = byCell.get(cellsByName.get(name));
+            if (id != null) iIds.put(name, id);
+        }
+        Collections.sort(iSortedNames);
+    }
+
+    /**
+     * the root the index was made from
+     */
+    public Cell getRoot() {
+        return iRoot;
+    }
+
+    /**
+     * the number of cells, the root included
+     */
+    public int size() {
+        return iCells.length;
+    }
+
+    public Cell getCell(int id) {
+        return iCells[id];
+    }
+
+    public String getName(int id) {
+        return iCells[id].getName();
+    }
+
+    /**
+     * the id of the cell listed under name in getCellsByName, NONE if
+     * there is none under the root
+     */
+    public int getId(String name) {
+        Integer id = iIds.get(name);
+        return id == null ? NONE : id.intValue();
+    }
+
+    /**
+     * the keys of getCellsByName, sorted; shared, not to be changed
+     */
+    public Vector<String> getSortedNames() {
+        return iSortedNames;
+    }
+
+    public int getParent(int id) {
+        return iParent[id];
+    }
+
+    public int getSister(int id) {
+        return iSister[id];
+    }
+
+    public int getStart(int id) {
+        return iStart[id];
+    }
+
+    public int getEnd(int id) {
+        return iEnd[id];
+    }
+
+    /**
+     * the number of time points the cell lives, both ends included
+     */
+    public int getLifetime(int id) {
+        return iEnd[id] - iStart[id] + 1;
+    }
+
+    /**
+     * as Cell.getFateInt
+     */
+    public int getFate(int id) {
+        return iFate[id];
+    }
+
+    public static final int
+         NONE = -1
+        ;
+}
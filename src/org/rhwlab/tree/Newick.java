@@ -4,10 +4,15 @@
  */
 package org.rhwlab.tree;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.Vector;
 
 import javax.swing.JFileChooser;
@@ -20,9 +25,9 @@ import org.rhwlab.utils.C;
 //import forester.tree.Tree;
 
 /**
- * Creates a representation of the tree as a string in the
- * Newick file format and passes the string to the ATV
- * program for rendering as a Sulston style tree
+ * Creates a representation of the tree in the Newick file
+ * format and writes it to a file for rendering as a Sulston
+ * style tree, for instance by the ATV program
  * 
  * @author biowolp
  * @version 1.0 February 24, 2005
@@ -31,7 +36,6 @@ import org.rhwlab.utils.C;
 public class Newick extends JPanel {
         
     Cell iRoot;
-    Vector iBuffer;
     
     /**
      * Constructor where all the action is initiated
@@ -43,118 +47,107 @@ public class Newick extends JPanel {
      */
     public Newick(Cell root) {
         iRoot = root;
-        iBuffer = new Vector();
-        Vector v = null;
-        Cell x = iRoot;
-        Vector r = new Vector();
-        // the loop below treats each child of the "root" as the
-        // root of a subtree which is processed separately at first
-        // then the several (typically 4) parts are merged
-        int m = x.getChildCount();
+        saveNewickFile();
+    }
+
+    /**
+     * writes the newick representation of the tree under root to w
+     * <br>each child of the "root" is the root of a subtree written on
+     * its own line; several (typically 4) subtrees are enclosed in
+     * parentheses and separated by commas
+     * <br>does not touch the display, so it can be called headless
+     *
+     * @param root a cell treated as the root of a tree -- typically "start"
+     * @param w where the representation goes; it is not closed
+     */
+    public static void write(Cell root, Writer w) throws IOException {
+        int m = root.getChildCount();
+        if (m > 1) w.write("(");
         for (int i = 0; i < m; i++) {
-            Cell c = (Cell)x.getChildAt(i);
-            v = processTree(c);
-            String s = buildNewick(v) + C.NL;
-            r.add(s);
+            if (i > 0) w.write(",");
+            writeSubtree((Cell)root.getChildAt(i), w);
+            w.write(C.NL);
         }
-        int rs = r.size();
-        String s = null;
-        if (rs > 1) {
-            StringBuffer sb = new StringBuffer();
-            for (int i=0; i < rs; i++) {
-                if (i == 0) sb.append("(");
-                else if (i < (rs)) {
-                    sb.append(",");
-                }
-                sb.append((String)r.elementAt(i));
-                
-            }
-            sb.append(")");
-            s = sb.toString();
-            
-        } else s = (String)r.elementAt(0);
-        //System.out.println("Newick: " + s);
-        //showATVtree(s);
-        saveNewickFile(s);
+        if (m > 1) w.write(")");
+        w.flush();
     }
-    
 
     /**
-     * Create a vector containing the string parts of a newick
-     * representation of the tree rooted on Cell x
-     * 
-     * @param x the cell at the root of this "subtree"
-     * @return a vector of strings that are pieces of the newick
-     * subtree for x
+     * writes the newick representation of the tree under root to file
+     * <br>the tree is written to a temp file next to file, which takes
+     * the place of file only once complete; if the tree cannot be
+     * written an existing file is left as it was
      */
-    private Vector processTree(Cell x) {
-        Vector v = new Vector();
-        preorder(x, v);
-        //showVector(v, "result");
-        return v;
-        
+    public static void write(Cell root, File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile(file.getName(), ".tmp", dir);
+        boolean done = false;
+        try {
+            Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp)));
+            try {
+                write(root, w);
+            } finally {
+                w.close();
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            done = true;
+        } finally {
+            if (!done) temp.delete();
+        }
     }
-    
+
     /**
-     * Debugging function to show the Vector of strings created
-     * in processTree()
-     * 
-     * @param stack The Vector returned from preorder() treated as a staco
-     * @param s A string representation of the implied newick form
+     * a postorder walk with an explicit stack, so deep lineages cannot
+     * overflow the thread stack
+     * <br>a cell with children is written as (first,second) followed by
+     * its label; the order of branches was tinkered with to be well
+     * aligned with the Sulston tree for the 4to100Cells data
+     *
+     * @param x the cell at the root of this "subtree"
      */
-    private void showVector(Vector stack, String s) {
-        System.out.println(s);
-        int k = stack.size();
-        String s2 = null;
-        for(int i=0; i<k; i++) {
-            s2 = (String)stack.elementAt(i);
-            System.out.println(i + "\t" + s2);
+    private static void writeSubtree(Cell x, Writer w) throws IOException {
+        Vector<Cell> stack = new Vector<Cell>();
+        int [] visited = new int[INITIAL];    // children written so far, by stack position
+        stack.add(x);
+        visited[0] = -1;
+        while (stack.size() > 0) {
+            int top = stack.size() - 1;
+            Cell c = stack.elementAt(top);
+            int k = visited[top];
+            if (k < 0) {
+                if (c.getChildCount() == 0) {
+                    writeLabel(c, false, w);
+                    stack.remove(top);
+                    continue;
+                }
+                c.getChildAt(1);    // a cell with one child has no newick form
+                w.write("(");
+            } else if (k == 0) {
+                w.write(",");
+            } else {
+                w.write(")");
+                writeLabel(c, true, w);
+                stack.remove(top);
+                continue;
+            }
+            visited[top] = k + 1;
+            stack.add((Cell)c.getChildAt(k + 1));
+            if (top + 1 == visited.length) visited = Arrays.copyOf(visited, visited.length * 2);
+            visited[top + 1] = -1;
         }
-        
-    
     }
-    
+
     /**
-     * recursive function to do a traversal of the tree
-     * not sure about pre or post order -- this version
-     * was tinkered with to work on the 4to100Cells data
-     * where working means that the order of branches
-     * was well aligned with the Sulston tree
-     * when called from the AceTree tree of that data
-     * @param x Cell to visit next
-     * @param v Vector of results up to this point
+     * interior cells are named only if they are among the blastomeres,
+     * and then also carry the name as a species tag
      */
-    @SuppressWarnings("unused")
-	private void preorder(Cell x, Vector v) {
-        Cell p = (Cell)x.getParent();
+    private static void writeLabel(Cell x, boolean interior, Writer w) throws IOException {
         String name = x.toString();
         String vname = name;
-        String s = null;
-        boolean addSpecies = false;
-        int count = x.getChildCount();
-        if (count > 0) {
-            vname = validateName(name);
-        }
-        s = vname;
-        addSpecies = (count > 0) && (vname.length() == 0);
-        s += ":" + x.getLifeTime();
-        //if (addSpecies) s += ":S=" + name;
-        if (addSpecies) s += ":S=" + name + C.NL;
-        v.add(0,s);
-        if (x.getChildCount() == 0) {
-            return;
-        }
-        Cell c0 = (Cell)x.getChildAt(1);
-        if (c0 != null) { 
-            v.add(0, ")");
-            preorder(c0, v);
-        } 
-        Cell c1 = (Cell)x.getChildAt(0);
-        if (c1 != null) {
-            v.add(0, ",");
-            preorder(c1, v);
-            v.add(0, "(");
-        }
+        if (interior) vname = validateName(name);
+        w.write(vname);
+        w.write(":" + x.getLifeTime());
+        if (interior && vname.length() == 0) w.write(":S=" + name + C.NL);
     }
     
     /**
@@ -163,7 +156,7 @@ public class Newick extends JPanel {
      * @param name string name of a cell
      * @return
      */
-    private String validateName(String name) {
+    private static String validateName(String name) {
         String s = "";
         boolean found = false;
         if (name.length() < 4) {
@@ -177,24 +170,6 @@ public class Newick extends JPanel {
         return s;
     }
     
-    /**
-     * concatinate the elements of the Vector of Strings from preorder()
-     * 
-     * @param v A vector of strings produced by preorder()
-     * @return returns a string representation of Newick form
-     */
-    private String buildNewick(Vector v) {
-        String s;
-        StringBuffer sb = new StringBuffer();
-        for (int i = 0; i < v.size(); i++) {
-            s = (String)v.elementAt(i);
-            //if (s.lastIndexOf(",") == s.length() - 1) s += C.NL;
-            sb.append(s);
-            //sb.append((String)v.elementAt(i));
-        }
-        return sb.toString();
-    }
-    
     /**
      * essentially launches ATV with the string produced here
      * 
@@ -218,23 +193,14 @@ public class Newick extends JPanel {
     }
     */
     
-    @SuppressWarnings("unused")
-	private void saveNewickFile(String s) {
+    private void saveNewickFile() {
         JFileChooser fc = new JFileChooser(new File("."));
         int returnVal = fc.showSaveDialog(this);
 
         if (returnVal == JFileChooser.APPROVE_OPTION) {
-            String dir = fc.getCurrentDirectory().toString();
-            String name = fc.getName(fc.getSelectedFile());
-            //append(dir);
-            //append(name);
-            
+            File file = fc.getSelectedFile();
             try {
-                PrintStream ps = new PrintStream(new FileOutputStream(fc.getSelectedFile()));
-                ps.print(s);
-                ps.flush();
-                ps.close();
-            
+                write(iRoot, file);
             } catch(IOException ioe) {
                 ioe.printStackTrace();
             }
@@ -264,6 +230,10 @@ public class Newick extends JPanel {
             ,"D"
     };
     
+    private static final int
+         INITIAL = 64
+        ;
+
     public static void main(String[] args) {
     }
 }
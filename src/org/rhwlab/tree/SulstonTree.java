@@ -10,6 +10,8 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowFocusListener;
+import java.io.File;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import javax.imageio.ImageIO;
 import javax.swing.DefaultListModel;
@@ -280,7 +282,8 @@ public class SulstonTree extends JFrame implements ActionListener, WindowFocusLi
             //append(dir);
             //append(name);
             //println("SulstonTree.saveImage, " + iTreeCanvas + CS + iTitle);
-            iTreePanel.captureImage(name, dir);
+            if (name.toLowerCase().endsWith(".svg")) saveSVG(new File(dir, name));
+            else iTreePanel.captureImage(name, dir);
             /*
             Rectangle screenRect = this.getBounds();
             int topAdjust = 58;
@@ -306,6 +309,21 @@ public class SulstonTree extends JFrame implements ActionListener, WindowFocusLi
         }
     }
 
+    /**
+     * the tree as shown, as an SVG file
+     */
+    private void saveSVG(File f) {
+        try {
+            TreeExport te = new TreeExport(iCurrentCell, Integer.parseInt(iLateTimeField.getText()),
+                    Integer.parseInt(iMinRedField.getText()), Integer.parseInt(iMaxRedField.getText()),
+                    getSize().height - 89);
+            te.writeSVG(f);
+            System.out.println("file: " + f + " written");
+        } catch(IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+
     private static final String
     CS = ", "
    ,IMAGETYPE = "png"
@@ -22,6 +22,7 @@ class TreeCanvas extends Canvas {
     int         height;
     SulstonTree iSulstonTree;
     Hashtable   iCellXHash;
+    CellIndex   iCellIndex;
     int []      iInt;
     boolean     iCanInterrogate;
     int         iLateTime;
@@ -88,6 +89,7 @@ class TreeCanvas extends Canvas {
             Cell.setMaxRed(iMaxRed);
             System.out.println("TreeCanvas cell drawing...");
             c.draw(g, d.width, d.height, iSulstonTree.getWidth(), iCellXHash);
+            iCellIndex = null;
         }
         //displayHash();
     }
@@ -137,29 +139,19 @@ class TreeCanvas extends Canvas {
 
     @SuppressWarnings("unused")
 	private Cell findIt(int x, int y) {
-        Enumeration ev = iCellXHash.elements();
-        int xs = 10000;
-        Cell cs = null;
         double timex = (c.getTime() + (y - Cell.START1)/c.ysc);
         int time = (int)(timex + 0.5);
         //System.out.println("findIt: " + c + CS + time + CS + Cell.START1 + CS + c.yStartUse);
-        while (ev.hasMoreElements()) {
-            Cell c = (Cell)ev.nextElement();
-            //System.out.println(c + CS + c.getTime() + CS + c.getEndTime());
-            int cystart = c.yStartUse;
-            int cyend = cystart + (int)((c.getEndTime() - c.getTime() + 1) * this.c.ysc + 0.5);
-            //System.out.println(c + CS + cystart + CS + cyend);
-            //if (y < cystart || y > cyend) continue;
-            if (time < c.getTime() || time > c.getEndTime()) continue;
-            //System.out.println("candidate: " + c);
-            int xtest = Math.abs(x - c.xUse);
-            if (xtest < xs && xtest < Cell.xsc) {
-                xs = xtest;
-                cs = c;
+        if (iCellIndex == null) {
+            // a cell answers to clicks less than Cell.xsc either side of its line
+            iCellIndex = new CellIndex();
+            Enumeration ev = iCellXHash.elements();
+            while (ev.hasMoreElements()) {
+                Cell cx = (Cell)ev.nextElement();
+                iCellIndex.add(cx, cx.xUse - Cell.xsc + 1, cx.xUse + Cell.xsc - 1, cx.getTime(), cx.getEndTime());
             }
         }
-        //int time = 0;
-        //if (cs != null) time = c.getTime() + (int)((y - c.yStartUse)/this.c.ysc);
+        Cell cs = iCellIndex.nearest(x, time);
         //System.out.println("selected " + cs + " at " + time);
         return cs;
         
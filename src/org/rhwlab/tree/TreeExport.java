@@ -0,0 +1,501 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.tree;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import javax.imageio.ImageIO;
+
+import org.rhwlab.acetree.AceTreeBatch;
+import org.rhwlab.snight.NucleiMgr;
+import org.rhwlab.snight.NucleiMgrHeadless;
+
+/**
+ * the Sulston tree of a cell written to a file without a display, as SVG
+ * or as PNG
+ * <br>the tree is laid out once by Cell.draw, as TreePanel lays it out.
+ * The SVG is written from that layout in one walk, with the lines, dots
+ * and names Cell.draw would paint, so a figure of any size is vector
+ * output. The PNG is painted by Cell.draw a band of BAND rows at a time,
+ * as the encoder asks for them, so a tree too wide to hold as one image
+ * can still be written.
+ * <br>usage: TreeExport [-roots name,...] [-late time] [-minred r]
+ * [-maxred r] [-height h] [-png] [-dir d] config ...
+ * <br>each config is a config xml, or a list of them as AceTreeBatch
+ * reads it. Each root of each series is written to
+ * dir/series-root.svg, or .png
+ */
+public class TreeExport {
+    Cell        iRoot;
+    int         iLateTime;
+    int         iMinRed;
+    int         iMaxRed;
+    int         iScaleHeight;   // the height Cell.draw scales the times to
+    int         iWidth;
+    int         iHeight;
+
+    public TreeExport(Cell root, int lateTime, int minRed, int maxRed, int height) {
+        iRoot = root;
+        iLateTime = lateTime;
+        iMinRed = minRed;
+        iMaxRed = maxRed;
+        iScaleHeight = height;
+        Cell.setXScale(XSCALE);
+        // Cell.draw is the layout; drawn clipped to nothing it only places the cells
+        Hashtable cHash = new Hashtable();
+        Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+        g.setClip(0, 0, 0, 0);
+        drawTree(g, cHash);
+        g.dispose();
+        int xmax = iRoot.xUse;
+        Enumeration e = cHash.elements();
+        while (e.hasMoreElements()) xmax = Math.max(xmax, ((Cell)e.nextElement()).xUse);
+        iWidth = xmax + MARGIN;
+        iHeight = height + MARGIN;
+    }
+
+    public int getWidth() {
+        return iWidth;
+    }
+
+    public int getHeight() {
+        return iHeight;
+    }
+
+    private void drawTree(Graphics2D g, Hashtable cHash) {
+        // the late time and the red range are set each time, Cell shares them
+        iRoot.setLateTime(iLateTime);
+        Cell.setMinRed(iMinRed);
+        Cell.setMaxRed(iMaxRed);
+        iRoot.draw(g, iWidth, iScaleHeight, iWidth, cHash);
+    }
+
+    public void writeSVG(File f) throws IOException {
+        Writer w = new BufferedWriter(new FileWriter(f));
+        try {
+            writeSVG(w);
+        } finally {
+            w.close();
+        }
+    }
+
+    /**
+     * the tree as an SVG document, drawn as Cell.draw draws it
+     */
+    public void writeSVG(Writer w) throws IOException {
+        w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + NL);
+        w.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + iWidth
+                + "\" height=\"" + iHeight + "\">" + NL);
+        w.write("<rect width=\"100%\" height=\"100%\" fill=\"white\"/>" + NL);
+        w.write("<g stroke-width=\"" + Cell.LINEWIDTH + "\" stroke-linecap=\"square\""
+                + " font-family=\"sans-serif\" font-size=\"12\">" + NL);
+        writeCell(iRoot, w);
+        int x = iRoot.xUse;
+        dot(x, Cell.START1, w);
+        text(iRoot.toString(), x + 5, Cell.START1, Color.BLACK, w);
+        line(x, Cell.START0, x, Cell.START1, Color.YELLOW, w);
+        writeScale(iScaleHeight - Cell.START1 - Cell.BORDERS, w);
+        w.write("</g>" + NL);
+        w.write("</svg>" + NL);
+    }
+
+    // as the recursive Cell.draw
+    private void writeCell(Cell c, Writer w) throws IOException {
+        boolean done = c.getEndTime() > iLateTime;
+        int lastTime = done ? iLateTime : c.getEndTime();
+        int length = (int)((lastTime - c.getTime()) * iRoot.ysc + .5);
+        if (c.getChildCount() == 0 || done) {
+            coloredLine(c, c.xUse, c.yStartUse, c.xUse, c.yStartUse + length, w);
+            rotatedText(c.getName(), c.xUse, c.yStartUse + length + 5, Math.PI/2, w);
+            dot(c.xUse, c.yStartUse, w);
+            return;
+        }
+        Cell cLeft = (Cell)c.getChildAt(0);
+        Cell cRite = (Cell)c.getChildAt(1);
+        writeCell(cLeft, w);
+        if (!isLeaf(cLeft)) {
+            dot(cLeft.xUse, cLeft.yStartUse, w);
+            rotatedText(cLeft.getName(), cLeft.xUse, cLeft.yStartUse - 5, -Math.PI/8, w);
+        }
+        writeCell(cRite, w);
+        if (!isLeaf(cRite)) {
+            dot(cRite.xUse, cRite.yStartUse, w);
+            rotatedText(cRite.getName(), cRite.xUse, cRite.yStartUse - 5, -Math.PI/8, w);
+        }
+        coloredLine(c, cLeft.xUse, cLeft.yStartUse, cRite.xUse, cRite.yStartUse, w);
+        coloredLine(c, c.xUse, c.yStartUse, c.xUse, cLeft.yStartUse, w);
+    }
+
+    private boolean isLeaf(Cell c) {
+        return c.isLeaf() || c.getEndTime() > iLateTime;
+    }
+
+    // as Cell.drawColoredLine, without the bookmarks
+    private void coloredLine(Cell c, int x1, int y1, int x2, int y2, Writer w) throws IOException {
+        Vector use = c.getCellData();
+        if (x1 != x2) {
+            line(x1, y1, x2, y2, iRoot.getColor(use.size() - 1, use), w);
+            return;
+        }
+        int range = (int)Math.round((y2 - y1)/iRoot.ysc);
+        int k = Math.min(range, use.size());
+        if (k == 0) k = range;
+        // each segment is drawn to the end of the line and covered by the next
+        int y10 = y1;
+        for (int i=0; i < k; i++) {
+            line(x1, y1, x2, y2, iRoot.getColor(i, use), w);
+            y1 = y10 + (y2 - y10) * (i + 1) / k;
+        }
+    }
+
+    // as Cell.showScale
+    private void writeScale(int y, Writer w) throws IOException {
+        int x = 5;
+        int start = iRoot.getTime();
+        line(x, Cell.START1, x, y + Cell.START1, Color.BLUE, w);
+        int k = iLateTime - start;
+        double incOne = (double)y/(double)k;
+        double incTen = 10*incOne;
+        k = (k - (k%10))/10;
+        int inc = 5;
+        for (int i=0; i <= k; i++) {
+            int y0 = Cell.START1 + (int)Math.round(incTen * i);
+            line(x, y0, x + inc, y0, Color.BLUE, w);
+        }
+        text(String.valueOf(start), x + inc, Cell.START1, Color.BLUE, w);
+        text(String.valueOf(iLateTime), x + inc, Cell.START1 + y + 15, Color.BLUE, w);
+    }
+
+    private static void line(int x1, int y1, int x2, int y2, Color color, Writer w) throws IOException {
+        w.write("<line x1=\"" + x1 + "\" y1=\"" + y1 + "\" x2=\"" + x2 + "\" y2=\"" + y2
+                + "\" stroke=\"" + rgb(color) + "\"/>" + NL);
+    }
+
+    private static void dot(int x, int y, Writer w) throws IOException {
+        w.write("<circle cx=\"" + x + "\" cy=\"" + y + "\" r=\"2\"/>" + NL);
+    }
+
+    private static void text(String s, int x, int y, Color color, Writer w) throws IOException {
+        w.write("<text x=\"" + x + "\" y=\"" + y + "\" fill=\"" + rgb(color) + "\">"
+                + escape(s) + "</text>" + NL);
+    }
+
+    // as Cell.drawRotatedText: the text is placed in the rotated frame
+    private void rotatedText(String s, int x, int y, double angle, Writer w) throws IOException {
+        int tx = y;
+        int ty = -x;
+        if (angle <= 1.5) {
+            Point p = iRoot.myRotate(x, y);
+            tx = p.x;
+            ty = p.y;
+        }
+        w.write("<text x=\"" + tx + "\" y=\"" + ty + "\" transform=\"rotate("
+                + Math.toDegrees(angle) + ")\">" + escape(s) + "</text>" + NL);
+    }
+
+    private static String rgb(Color c) {
+        return "#" + hex(c.getRed()) + hex(c.getGreen()) + hex(c.getBlue());
+    }
+
+    private static String hex(int v) {
+        String s = Integer.toHexString(v);
+        return s.length() == 1 ? "0" + s : s;
+    }
+
+    private static String escape(String s) {
+        StringBuffer sb = new StringBuffer(s.length());
+        for (int i=0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch(c) {
+            case '&':
+                sb.append("&amp;");
+                break;
+            case '<':
+                sb.append("&lt;");
+                break;
+            case '>':
+                sb.append("&gt;");
+                break;
+            default:
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * the tree as a PNG, painted by Cell.draw in bands of BAND rows
+     */
+    public void writePNG(File f) throws IOException {
+        ImageIO.write(new Bands(), "png", f);
+    }
+
+    /**
+     * the image of the tree as the encoder reads it, a band at a time;
+     * only the band last painted is held
+     */
+    class Bands implements RenderedImage {
+        ColorModel      iColorModel;
+        SampleModel     iSampleModel;
+        int             iBand;
+        WritableRaster  iRaster;
+
+        Bands() {
+            iColorModel = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).getColorModel();
+            iSampleModel = iColorModel.createCompatibleSampleModel(iWidth, BAND);
+            iBand = -1;
+        }
+
+        private WritableRaster paint(int band) {
+            if (band != iBand) {
+                int y0 = band * BAND;
+                int h = Math.min(BAND, iHeight - y0);
+                BufferedImage image = new BufferedImage(iWidth, h, BufferedImage.TYPE_INT_RGB);
+                Graphics2D g = image.createGraphics();
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, iWidth, h);
+                g.setColor(Color.BLACK);
+                g.translate(0, -y0);
+                g.clipRect(0, y0, iWidth, h);
+                drawTree(g, new Hashtable());
+                g.dispose();
+                iRaster = image.getRaster().createWritableTranslatedChild(0, y0);
+                iBand = band;
+            }
+            return iRaster;
+        }
+
+        @Override
+        public Raster getData(Rectangle r) {
+            int b0 = r.y / BAND;
+            int b1 = (r.y + r.height - 1) / BAND;
+            if (b0 == b1) return paint(b0).createChild(r.x, r.y, r.width, r.height, r.x, r.y, null);
+            WritableRaster wr = iColorModel.createCompatibleWritableRaster(r.width, r.height)
+                    .createWritableTranslatedChild(r.x, r.y);
+            return copyData(wr);
+        }
+
+        @Override
+        public WritableRaster copyData(WritableRaster wr) {
+            if (wr == null) wr = iColorModel.createCompatibleWritableRaster(iWidth, iHeight);
+            Rectangle r = wr.getBounds().intersection(new Rectangle(0, 0, iWidth, iHeight));
+            if (r.isEmpty()) return wr;
+            for (int b=r.y / BAND; b <= (r.y + r.height - 1) / BAND; b++) {
+                Raster band = paint(b);
+                Rectangle s = band.getBounds().intersection(r);
+                wr.setRect(band.createChild(s.x, s.y, s.width, s.height, s.x, s.y, null));
+            }
+            return wr;
+        }
+
+        @Override
+        public Raster getData() {
+            return copyData(null);
+        }
+
+        @Override
+        public Raster getTile(int tileX, int tileY) {
+            return paint(tileY);
+        }
+
+        @Override
+        public Vector<RenderedImage> getSources() {
+            return null;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return Image.UndefinedProperty;
+        }
+
+        @Override
+        public String [] getPropertyNames() {
+            return null;
+        }
+
+        @Override
+        public ColorModel getColorModel() {
+            return iColorModel;
+        }
+
+        @Override
+        public SampleModel getSampleModel() {
+            return iSampleModel;
+        }
+
+        @Override
+        public int getWidth() {
+            return iWidth;
+        }
+
+        @Override
+        public int getHeight() {
+            return iHeight;
+        }
+
+        @Override
+        public int getMinX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinY() {
+            return 0;
+        }
+
+        @Override
+        public int getNumXTiles() {
+            return 1;
+        }
+
+        @Override
+        public int getNumYTiles() {
+            return (iHeight + BAND - 1) / BAND;
+        }
+
+        @Override
+        public int getMinTileX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinTileY() {
+            return 0;
+        }
+
+        @Override
+        public int getTileWidth() {
+            return iWidth;
+        }
+
+        @Override
+        public int getTileHeight() {
+            return BAND;
+        }
+
+        @Override
+        public int getTileGridXOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getTileGridYOffset() {
+            return 0;
+        }
+    }
+
+    /**
+     * loads and names each series, and writes the tree of each root
+     * @return the number of trees written
+     */
+    public static int exportAll(Vector<String> configs, String [] roots, int lateTime,
+            int minRed, int maxRed, int height, boolean png, String dir) {
+        int written = 0;
+        for (int i=0; i < configs.size(); i++) {
+            String configName = configs.get(i);
+            NucleiMgr nucMgr = new NucleiMgrHeadless(configName);
+            if (!nucMgr.iGoodNucleiMgr) {
+                println("TreeExport, " + configName + CS + "load failed");
+                continue;
+            }
+            int end = nucMgr.getConfig().iEndingIndex;
+            Cell.setEndingIndexS(end);
+            nucMgr.processNuclei(true, nucMgr.getConfig().iNamingMethod);
+            Hashtable cells = nucMgr.getAncesTree().getCellsByName();
+            String series = nucMgr.getConfig().getShortName();
+            int k = series.lastIndexOf(".");
+            if (k > 0) series = series.substring(0, k);
+            for (int j=0; j < roots.length; j++) {
+                Cell c = (Cell)cells.get(roots[j]);
+                if (c == null) {
+                    println("TreeExport, " + series + CS + roots[j] + CS + "no such cell");
+                    continue;
+                }
+                int late = lateTime > 0 ? lateTime : end;
+                File f = new File(dir, series + "-" + roots[j] + (png ? ".png" : ".svg"));
+                try {
+                    TreeExport te = new TreeExport(c, late, minRed, maxRed, height);
+                    if (png) te.writePNG(f);
+                    else te.writeSVG(f);
+                    written++;
+                    println("TreeExport, " + f.getPath() + CS + te.getWidth() + CS + te.getHeight());
+                } catch(IOException ioe) {
+                    println("TreeExport, " + f.getPath() + CS + ioe);
+                }
+            }
+        }
+        return written;
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        String [] roots = {"P0"};
+        int lateTime = 0;
+        int minRed = MINRED;
+        int maxRed = MAXRED;
+        int height = HEIGHT;
+        boolean png = false;
+        String dir = ".";
+        Vector<String> configs = new Vector<String>();
+        try {
+            for (int i=0; i < args.length; i++) {
+                if (args[i].equals("-roots")) roots = args[++i].split(",");
+                else if (args[i].equals("-late")) lateTime = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-minred")) minRed = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-maxred")) maxRed = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-height")) height = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-png")) png = true;
+                else if (args[i].equals("-dir")) dir = args[++i];
+                else configs.addAll(AceTreeBatch.readConfigs(args[i]));
+            }
+        } catch(Exception e) {
+            println("TreeExport, " + e);
+            configs.clear();
+        }
+        if (configs.size() == 0) {
+            println(USAGE);
+            System.exit(1);
+        }
+        int n = exportAll(configs, roots, lateTime, minRed, maxRed, height, png, dir);
+        println("TreeExport, " + n + " trees written");
+        System.exit(0);
+    }
+
+    private static void println(String s) {System.out.println(s);}
+    private static final String CS = ", ";
+    private static final String NL = "\n";
+
+    private static final int
+         XSCALE = 20
+        ,HEIGHT = 1000
+        ,MARGIN = 40
+        ,BAND = 256
+        ,MINRED = -500
+        ,MAXRED = 5000
+        ;
+
+    private static final String
+         USAGE = "usage: TreeExport [-roots name,...] [-late time] [-minred r] [-maxred r]"
+            + " [-height h] [-png] [-dir d] config ..."
+        ;
+}
@@ -9,6 +9,8 @@ package org.rhwlab.tree;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
@@ -25,6 +27,8 @@ import javax.swing.JPanel;
 import javax.swing.event.MouseInputAdapter;
 
 import javax.swing.ListModel;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
 
 /**
  * @author biowolp
@@ -45,12 +49,28 @@ public class TreePanel extends JPanel {
     int         iMaxRed;
     int         iNoPaint;
 
+    // the layout of the last drawing and the images made from it; see layoutTree
+    boolean     iLaidOut;
+    int         iTreeVersion;      // Cell.getTreeVersion when laid out
+    int         iLayoutWidth;
+    int         iLayoutHeight;
+    int         iLayoutScale;      // the height Cell.draw scales the times to
+    CellIndex   iCellIndex;        // the cells of iCellXHash, in its order
+    double      iYsc;
+    int         iRootTime;
+    Hashtable<Integer, BufferedImage>   iTiles;
+    Vector<Integer>                     iTileOrder;    // most recently used first
+    ListModel                           iBookmarkListModel;
+    ListDataListener                    iBookmarkListener;
+
     public TreePanel(Cell c, SulstonTree sulstonTree, boolean canInterrogate) {
     	//System.out.println("TreePanel constructor called.");
         this.c = c;
         iSulstonTree = sulstonTree;
         iCanInterrogate = canInterrogate;
         iCellXHash = new Hashtable();
+        iTiles = new Hashtable<Integer, BufferedImage>();
+        iTileOrder = new Vector<Integer>();
         width = XSCALE*c.getLeafCount();
         Cell.setXScale(XSCALE);
         //int frameWidth = iSulstonTree.getWidth();
@@ -73,21 +93,53 @@ public class TreePanel extends JPanel {
     public void setBookmarkListModel(ListModel listModel) {
     	if (c != null)
     		c.setBookmarkListModel(listModel);
+        // the cells read the bookmarks only while drawing, so a change to
+        // the list has to throw the tiles away
+        if (iBookmarkListModel != null) iBookmarkListModel.removeListDataListener(iBookmarkListener);
+        iBookmarkListModel = listModel;
+        if (listModel != null) {
+            if (iBookmarkListener == null) iBookmarkListener = new ListDataListener() {
+                @Override
+                public void intervalAdded(ListDataEvent e) {
+                    bookmarksChanged();
+                }
+                @Override
+                public void intervalRemoved(ListDataEvent e) {
+                    bookmarksChanged();
+                }
+                @Override
+                public void contentsChanged(ListDataEvent e) {
+                    bookmarksChanged();
+                }
+            };
+            listModel.addListDataListener(iBookmarkListener);
+        }
+        invalidateLayout();
+    }
+
+    private void bookmarksChanged() {
+        Cell.treeChanged();
+        repaint();
     }
 
     public void setLateTime(int time) {
+        if (time != iLateTime) invalidateLayout();
         iLateTime = time;
     }
 
     public void setMinRed(int min) {
+        if (min != iMinRed) invalidateLayout();
         iMinRed = min;
     }
 
     public void setMaxRed(int max) {
+        if (max != iMaxRed) invalidateLayout();
         iMaxRed = max;
     }
 
     public void setCell(Cell cSet) {
+        // the cell may be the same one with a lineage edited under it
+        invalidateLayout();
     	try {
 	        c = cSet;
 	        width = XSCALE*c.getLeafCount();
@@ -157,28 +209,101 @@ public class TreePanel extends JPanel {
             //System.out.println("TreePanel.paintComponent:\n " + System.currentTimeMillis()
                    //+CS + d + CS + iSulstonTree.getWidth() + CS + c.getName()
                     //+ "\n" + iLateTime + CS + iMinRed + CS + iMaxRed);
-            iCellXHash.clear();
-            c.setLateTime(iLateTime);
-            Cell.setMinRed(iMinRed);
-            Cell.setMaxRed(iMaxRed);
-            //System.out.println("TreePanel cell drawing...");
-            // Give Cell c reference to bookmark list
-            /*
-            if (iBookmarkListModel != null) {
-            	System.out.println("Setting cell bookmark list...");
-            	c.setBookmarkListModel(iBookmarkListModel);
-            }
-            else {
-            	c.setBookmarkListModel(null);
+            layoutTree(d.width, d.height, pd.height-89);
+            Rectangle r = g.getClipBounds();
+            if (r == null) r = new Rectangle(0, 0, d.width, d.height);
+            int k0 = Math.max(0, r.x / TILEWIDTH);
+            int k1 = Math.min((d.width - 1) / TILEWIDTH, (r.x + r.width - 1) / TILEWIDTH);
+            for (int k=k0; k <= k1; k++) {
+                g.drawImage(getTile(k), k * TILEWIDTH, 0, null);
             }
-            */
-            // Draws first yellow segment of root cell
-            c.draw(g, d.width, pd.height-89, iSulstonTree.getWidth(), iCellXHash);
         }
         //displayHash();
         //System.out.println("paintComponent2: " + getSize());
     }
 
+    /**
+     * drops the layout and the tiles, so the next paint lays out and draws
+     * the tree again
+     */
+    public void invalidateLayout() {
+        iLaidOut = false;
+        if (iTiles == null) return;
+        iTiles.clear();
+        iTileOrder.clear();
+    }
+
+    /**
+     * lays the tree out for a panel of the given size unless it already
+     * is; the cells and where they were put are kept in the CellIndex
+     * findIt searches
+     */
+    private void layoutTree(int w, int h, int scaleHeight) {
+        if (iLaidOut && w == iLayoutWidth && h == iLayoutHeight && scaleHeight == iLayoutScale
+                && iTreeVersion == Cell.getTreeVersion()) return;
+        invalidateLayout();
+        iTreeVersion = Cell.getTreeVersion();
+        iLayoutWidth = w;
+        iLayoutHeight = h;
+        iLayoutScale = scaleHeight;
+        iCellXHash.clear();
+        // Cell.draw is the layout; drawn clipped to nothing it only places the cells
+        Graphics g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).getGraphics();
+        g.setClip(0, 0, 0, 0);
+        drawTree(g, iCellXHash);
+        g.dispose();
+        // a cell answers to clicks less than Cell.xsc either side of its line
+        iCellIndex = new CellIndex();
+        Enumeration e = iCellXHash.elements();
+        while (e.hasMoreElements()) {
+            Cell cx = (Cell)e.nextElement();
+            iCellIndex.add(cx, cx.xUse - Cell.xsc + 1, cx.xUse + Cell.xsc - 1, cx.getTime(), cx.getEndTime());
+        }
+        iYsc = c.ysc;
+        iRootTime = c.getTime();
+        iLaidOut = true;
+    }
+
+    private void drawTree(Graphics g, Hashtable cHash) {
+        // the late time and the red range are set again each time, they
+        // are shared with other trees
+        c.setLateTime(iLateTime);
+        Cell.setMinRed(iMinRed);
+        Cell.setMaxRed(iMaxRed);
+        //System.out.println("TreePanel cell drawing...");
+        // Draws first yellow segment of root cell
+        c.draw(g, iLayoutWidth, iLayoutScale, iSulstonTree.getWidth(), cHash);
+    }
+
+    /**
+     * the image of the columns k * TILEWIDTH on, drawn when first asked
+     * for; at most MAXTILES are kept
+     */
+    private BufferedImage getTile(int k) {
+        Integer key = Integer.valueOf(k);
+        BufferedImage image = iTiles.get(key);
+        if (image == null) {
+            image = new BufferedImage(TILEWIDTH, iLayoutHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = image.createGraphics();
+            g.setColor(getBackground());
+            g.fillRect(0, 0, TILEWIDTH, iLayoutHeight);
+            g.setFont(getFont());
+            g.setColor(getForeground());
+            g.translate(-k * TILEWIDTH, 0);
+            g.clipRect(k * TILEWIDTH, 0, TILEWIDTH, iLayoutHeight);
+            drawTree(g, new Hashtable());
+            g.dispose();
+            iTiles.put(key, image);
+            if (iTileOrder.size() >= MAXTILES) {
+                iTiles.remove(iTileOrder.remove(iTileOrder.size() - 1));
+            }
+        } else {
+            iTileOrder.remove(key);
+        }
+        iTileOrder.add(0, key);
+        return image;
+    }
+
     @SuppressWarnings("unused")
 	private void displayHash() {
         Enumeration eKeys = iCellXHash.keys();
@@ -209,33 +334,21 @@ public class TreePanel extends JPanel {
         ,YSCALE = 70
         ,YFIXEDSCALE = 1000
         ,MINWIDTH = 400
+        ,TILEWIDTH = 512
+        ,MAXTILES = 16
     ;
 
-    @SuppressWarnings("unused")
-	private Cell findIt(int x, int y) {
-        Enumeration ev = iCellXHash.elements();
-        int xs = 10000;
-        Cell cs = null;
-        double timex = (c.getTime() + (y - Cell.START1)/c.ysc);
-        int time = (int)(timex + 0.5);
-        //System.out.println("findIt: " + c + CS + time + CS + Cell.START1 + CS + c.yStartUse);
-        while (ev.hasMoreElements()) {
-            Cell c = (Cell)ev.nextElement();
-            //System.out.println(c + CS + c.getTime() + CS + c.getEndTime());
-            int cystart = c.yStartUse;
-            int cyend = cystart + (int)((c.getEndTime() - c.getTime() + 1) * this.c.ysc + 0.5);
-            //System.out.println(c + CS + cystart + CS + cyend);
-            //if (y < cystart || y > cyend) continue;
-            if (time < c.getTime() || time > c.getEndTime()) continue;
-            //System.out.println("candidate: " + c);
-            int xtest = Math.abs(x - c.xUse);
-            if (xtest < xs && xtest < Cell.xsc) {
-                xs = xtest;
-                cs = c;
-            }
+    private Cell findIt(int x, int y) {
+        if (!iLaidOut) return null;
+        if (iTreeVersion != Cell.getTreeVersion()) {
+            // the cells changed since the last paint; find among the new ones
+            layoutTree(iLayoutWidth, iLayoutHeight, iLayoutScale);
+            repaint();
         }
-        //int time = 0;
-        //if (cs != null) time = c.getTime() + (int)((y - c.yStartUse)/this.c.ysc);
+        double timex = (iRootTime + (y - Cell.START1)/iYsc);
+        int time = (int)(timex + 0.5);
+        //System.out.println("findIt: " + c + CS + time + CS + Cell.START1);
+        Cell cs = iCellIndex.nearest(x, time);
         //System.out.println("selected " + cs + " at " + time);
         return cs;
     }
@@ -260,7 +373,7 @@ public class TreePanel extends JPanel {
 
         @Override
 		public void mouseClicked(MouseEvent e) {
-            double time = (c.getTime() + (e.getY() - Cell.START1)/c.ysc);
+            double time = (iRootTime + (e.getY() - Cell.START1)/iYsc);
             //System.out.println("TreeCanvas2.mouseClicked: " + e.getX() + CS + e.getY() + CS + time);
             Cell cs = findIt(e.getX(), e.getY());
             if (cs != null) {
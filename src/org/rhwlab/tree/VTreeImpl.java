@@ -813,6 +813,8 @@ public class VTreeImpl {
         private JFrame  iFrame;
         private boolean iWasDrawn;
         private String rootName;
+        private CellIndex iLineIndex;      // the CellLines findIt searches
+        private int iIndexedLines;
         int height;
         int width;
         public TestCanvas(String rName) {
@@ -916,18 +918,21 @@ public class VTreeImpl {
         }
 
         private Cell findIt(int xx, int yy) {
-            CellLine cL = null;
-            Cell c = null;
             int t = xx - OFFSET;
-            for (int i=0; i < iCellLines.size(); i++) {
-                Object o = iCellLines.get(i);
-                if (!(o instanceof CellLine)) continue;
-                cL = (CellLine)o;
-                if (yy < cL.y1 - DELTAY || yy > cL.y2 + DELTAY) continue;
-                c = cL.c;
-                if (t < c.getTime() - DELTAT || t > c.getEnd() + DELTAT) continue;
-                break;
+            if (iLineIndex == null || iIndexedLines != iCellLines.size()) {
+                iLineIndex = new CellIndex();
+                for (int i=0; i < iCellLines.size(); i++) {
+                    Object o = iCellLines.get(i);
+                    if (!(o instanceof CellLine)) continue;
+                    CellLine cL = (CellLine)o;
+                    Cell c = cL.c;
+                    iLineIndex.add(c, cL.y1 - DELTAY, cL.y2 + DELTAY, c.getTime() - DELTAT, c.getEnd() + DELTAT);
+                }
+                iIndexedLines = iCellLines.size();
             }
+            Cell c = iLineIndex.first(yy, t);
+            // with no line there at that time, the last line across yy, as the scan gave
+            if (c == null) c = iLineIndex.last(yy);
             return c;
         }
 
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.utils;
+
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * spreads the time points of a series over the cores for tools that
+ * treat each time point on its own, such as the red expression tools and
+ * the overlap checks
+ */
+public class TimePointRunner {
+
+    /**
+     * runs job.process for each time from start to end, on as many
+     * threads as there are cores, and hands the results to job.finished
+     * on the calling thread in time order
+     * <br>returns once no time point is being processed, after the last
+     * time or after finished returns false; time points not yet begun
+     * are then dropped
+     */
+    public static void run(int start, int end, final Job job) {
+        if (end < start) return;
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), end - start + 1);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 5, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "TimePointRunner");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        Vector<Future<Object>> futures = new Vector<Future<Object>>();
+        for (int time=start; time <= end; time++) {
+            final int t = time;
+            futures.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return job.process(t);
+                }
+            }));
+        }
+        try {
+            for (int i=0; i < futures.size(); i++) {
+                Object result = futures.get(i).get();
+                if (!job.finished(start + i, result)) break;
+            }
+        } catch(ExecutionException ee) {
+            ee.getCause().printStackTrace();
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (int i=0; i < futures.size(); i++) futures.get(i).cancel(false);
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.SECONDS));
+            } catch(InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * the work of one time point; process runs on a worker thread and
+     * must touch only that time point
+     */
+    public interface Job {
+        public Object process(int time);
+
+        /**
+         * @return false to stop the run
+         */
+        public boolean finished(int time, Object result);
+    }
+}
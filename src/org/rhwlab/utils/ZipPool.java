@@ -0,0 +1,138 @@
+/*
+ * Copyright 2005 University of Washington Genome Sciences
+ * All rights reserved
+ */
+package org.rhwlab.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipFile;
+
+/**
+ * the zip archives open for reading, shared by the image and nuclei
+ * readers so an archive is opened, and its directory read, once rather
+ * than for every image
+ * <br>ZipFile.getEntry looks an entry up in the directory read at open,
+ * so callers use it rather than enumerating the entries
+ * <br>at most MAXOPEN archives are kept open, the least recently used is
+ * closed first; an archive whose file changed on disk since it was
+ * opened is opened again
+ * <br>a reader that goes on to read entries takes the archive with
+ * acquire and gives it back with done; an archive dropped from the pool
+ * while taken, by another thread opening more archives or by release or
+ * closeAll, is closed only when the last reader gives it back
+ * <br>closeAll() is called when a series is brought up
+ */
+public class ZipPool {
+    private static LinkedHashMap<String, Archive> cArchives =
+        new LinkedHashMap<String, Archive>(16, 0.75f, true);
+    // every archive not yet closed, in the pool or dropped but taken
+    private static HashMap<ZipFile, Archive> cHandles =
+        new HashMap<ZipFile, Archive>();
+
+    /**
+     * for looking entries up; the archive may be closed once another
+     * archive is opened, so use acquire to read from it
+     * @param path path of the zip file
+     * @return the open archive
+     * @throws IOException as new ZipFile(path) would
+     */
+    public static synchronized ZipFile getZipFile(String path) throws IOException {
+        return open(path).iZipFile;
+    }
+
+    /**
+     * the open archive at path, kept open until it is given back with done
+     * @throws IOException as new ZipFile(path) would
+     */
+    public static synchronized ZipFile acquire(String path) throws IOException {
+        Archive a = open(path);
+        a.iUsers++;
+        return a.iZipFile;
+    }
+
+    /**
+     * gives back an archive from acquire
+     */
+    public static synchronized void done(ZipFile zipFile) {
+        Archive a = cHandles.get(zipFile);
+        if (a == null) return;
+        a.iUsers--;
+        if (a.iDropped && a.iUsers == 0) close(a);
+    }
+
+    private static Archive open(String path) throws IOException {
+        File f = new File(path);
+        String key = f.getAbsolutePath();
+        Archive a = cArchives.get(key);
+        if (a != null && (a.iModified != f.lastModified() || a.iLength != f.length())) {
+            cArchives.remove(key);
+            drop(a);
+            a = null;
+        }
+        if (a == null) {
+            a = new Archive();
+            a.iZipFile = new ZipFile(f);
+            a.iModified = f.lastModified();
+            a.iLength = f.length();
+            cArchives.put(key, a);
+            cHandles.put(a.iZipFile, a);
+            Iterator<Map.Entry<String, Archive>> it = cArchives.entrySet().iterator();
+            while (cArchives.size() > MAXOPEN && it.hasNext()) {
+                Archive old = it.next().getValue();
+                it.remove();
+                drop(old);
+            }
+        }
+        return a;
+    }
+
+    /**
+     * closes the archive at path if it is open; called before the file
+     * is replaced
+     */
+    public static synchronized void release(String path) {
+        Archive a = cArchives.remove(new File(path).getAbsolutePath());
+        if (a != null) drop(a);
+    }
+
+    public static synchronized void closeAll() {
+        for (Archive a : cArchives.values()) drop(a);
+        cArchives.clear();
+    }
+
+    // out of the pool; closed now, or by the done of its last reader
+    private static void drop(Archive a) {
+        a.iDropped = true;
+        if (a.iUsers == 0) close(a);
+    }
+
+    private static void close(Archive a) {
+        cHandles.remove(a.iZipFile);
+        a.close();
+    }
+
+    private static class Archive {
+        ZipFile     iZipFile;
+        long        iModified;
+        long        iLength;
+        int         iUsers;
+        boolean     iDropped;
+
+        void close() {
+            try {
+                iZipFile.close();
+            } catch(IOException ioe) {
+                ioe.printStackTrace();
+            }
+        }
+    }
+
+    private static final int
+         MAXOPEN = 8
+        ;
+}